@@ -11,6 +11,7 @@ import edu.wpi.first.math.trajectory.constraint.TrajectoryConstraint;
 import frc.robot.lib.ConfigReader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
 import org.strongback.components.PIDF;
 
 /**
@@ -427,6 +428,37 @@ public class Config {
      */
     public static class charting {
         public static final boolean enabled = getBoolean("charting/enabled", true);
+        // How the samples are stored. "csv" or the much cheaper to write binary formats "double"
+        // or "float", which need converting with './gradlew convertChart' before viewing.
+        public static final String format = getString("charting/format", "csv");
+
+        /**
+         * The binary formats are written in large blocks.
+         */
+        public static class binary {
+            public static final int blockBytes = 64 * 1024;
+            public static final double flushPeriodSec = 1; // Write at least this often.
+            // Only write values when they move by more than the column's deadband.
+            public static final boolean changesOnly = getBoolean("charting/changesOnly", true);
+        }
+
+        /**
+         * The executor copies rows into blocks which are written by a background thread.
+         */
+        public static class queue {
+            public static final int blocks = 2; // Double buffered.
+            public static final int rowsPerBlock = 64;
+            public static final double handoffPeriodSec = 0.5; // Hand over at least this often.
+            public static final double pollPeriodSec = 0.05;
+        }
+
+        /**
+         * Live streaming of the samples to websocket clients.
+         */
+        public static class stream {
+            public static final int capacity = 32; // Rows waiting to be sent.
+            public static final double pollPeriodSec = 0.02;
+        }
     }
 
     /**
@@ -448,7 +480,28 @@ public class Config {
      */
     public static class intervals {
         public static final long executorCycleMSec = 20; // 50Hz
+        // Spread the MEDIUM and LOW priority executables over the cycles by how long they take.
+        public static final boolean staggerExecutables =
+                getBoolean("intervals/staggerExecutables", true);
+        // Run the background lane (the data and event recorders) on its own thread, on the
+        // roboRIO's second core. Off as the robot doesn't turn those recorders on, so the lane
+        // would only add a handshake to each cycle.
+        public static final boolean executorLanes = getBoolean("intervals/executorLanes", false);
+        // Run the sheddable executables, eg the dashboard and the charts, less often when cycles
+        // keep overrunning.
+        public static final boolean executorShedLoad =
+                getBoolean("intervals/executorShedLoad", true);
+        // Read the clock once per executor cycle and give that time to everything run in it.
+        public static final boolean executorCycleTime =
+                getBoolean("intervals/executorCycleTime", true);
+        // How the executor waits for each cycle: SLEEP, PARK, PARK_THEN_SPIN or BUSY. Parking
+        // then spinning for the last part keeps the cycles steady without using a whole core.
+        public static final String executorWaitStrategy =
+                getString("intervals/executorWaitStrategy", "PARK_THEN_SPIN");
+        public static final int executorSpinMicros = getInt("intervals/executorSpinMicros", 200);
         public static final double dashboardUpdateSec = 0.5;
+        public static final Duration dashboardUpdatePeriod =
+                Duration.ofMillis(Math.round(dashboardUpdateSec * 1000));
     }
 
     /**
@@ -570,12 +623,55 @@ public class Config {
         public static final String dateExtension = "date";
         public static final String latestExtension = "latest";
         public static final String eventExtension = "event";
+        // Write the log as binary records instead of text. Much cheaper to write but needs to
+        // be decoded with './gradlew decodeLog' before it can be read.
+        public static final boolean binary = false;
 
         public static class webserver {
             public static final String path = flashDrive; // where web server's data lives
             public static final int port = 5800; // port for graph/log web server
         }
 
+        /**
+         * Which log messages are written. A default level and optional per subsystem levels, eg
+         * "Info,Drivebase=Debug". Can be changed while running in the Log network table.
+         */
+        public static class levels {
+            public static final String initial = getString("logging/levels", "Debug");
+        }
+
+        /**
+         * Log messages are queued and written to the flash drive by a background thread.
+         */
+        public static class queue {
+            public static final int size = 4096; // Max messages waiting to be written.
+            public static final long flushBytes = 16 * 1024; // Flush after this much is written
+            public static final double flushPeriodSec = 0.5; // or after this long.
+            public static final double pollPeriodSec = 0.01;
+        }
+
+        /**
+         * The recent log lines are kept in memory and sent to the live logging websocket clients.
+         */
+        public static class broadcast {
+            public static final int lines = 2000; // Lines kept for clients that fall behind.
+            public static final int backlogLines = 200; // Sent to each new client.
+            public static final int maxLinesPerPoll = 500; // Most sent to a client at once.
+            public static final double pollPeriodSec = 0.05;
+        }
+
+        /**
+         * The output of the JVM and WPILib is copied to the flash drive with our logs.
+         */
+        public static class frcLog {
+            public static final String path = "/home/lvuser/FRC_UserProgram.log";
+            // Lines of history to include when first copied at robot code start
+            public static final int firstTailLines = 2000;
+            // and on each restart of the logs.
+            public static final int tailLines = 20;
+            public static final long pollPeriodMSec = 100; // How often to check for new output.
+        }
+
         /**
          * Define parameters that govern the usage of the websocket logging server.
          */
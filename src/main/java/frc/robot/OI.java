@@ -263,7 +263,7 @@ public class OI {
 
         // Drive through supplied waypoints using splines.
         drivebase.registerDriveRoutine(DriveRoutineType.TRAJECTORY,
-                new TrajectoryDrive(location, clock));
+                new TrajectoryDrive(location, subsystems.cycleClock));
 
         // Automatically drives to a set distance in front of the vision target.
         drivebase.registerDriveRoutine(DriveRoutineType.VISION_DRIVE,
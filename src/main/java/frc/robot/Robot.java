@@ -10,6 +10,7 @@ import edu.wpi.first.net.PortForwarder;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.PowerDistribution;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import frc.robot.controller.Controller;
 import frc.robot.controller.Sequences;
 import frc.robot.interfaces.LogHelper;
@@ -17,19 +18,24 @@ import frc.robot.lib.ConfigServer;
 import frc.robot.lib.LEDColour;
 import frc.robot.lib.LogServer;
 import frc.robot.lib.PowerMonitor;
+import frc.robot.lib.TunableLogLevels;
 import frc.robot.lib.chart.Chart;
 import frc.robot.lib.log.Log;
 import frc.robot.lib.log.LogFileNumber;
 import frc.robot.subsystems.Subsystems;
 import java.io.File;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.Calendar;
 import java.util.function.Supplier;
 import org.jibble.simplewebserver.SimpleWebServer;
 import org.strongback.Executable;
+import org.strongback.ExecutionTimer;
 import org.strongback.Executor.Priority;
 import org.strongback.Strongback;
+import org.strongback.Strongback.WaitStrategy;
 import org.strongback.components.Clock;
+import org.strongback.components.NetworkTableHelperImpl;
 import org.strongback.components.ui.Dancepad;
 import org.strongback.components.ui.DiagnosticBox;
 import org.strongback.components.ui.FlightStick;
@@ -93,13 +99,19 @@ public class Robot extends TimedRobot implements Executable, LogHelper {
     public void init() {
         Strongback.logConfiguration();
         Strongback.setExecutionPeriod(Config.intervals.executorCycleMSec);
+        Strongback.setStaggered(Config.intervals.staggerExecutables);
+        Strongback.setUseLanes(Config.intervals.executorLanes);
+        Strongback.setLoadShedding(Config.intervals.executorShedLoad);
+        Strongback.setCycleTime(Config.intervals.executorCycleTime);
+        Strongback.setWaitStrategy(getWaitStrategy(Config.intervals.executorWaitStrategy),
+                Config.intervals.executorSpinMicros);
         startLogServer();
         info("initialization started");
 
         createInputDevices();
 
         // Setup the hardware/subsystems. Listed here so can be quickly jumped to.
-        subsystems = new Subsystems(clock, operatorGamepad);
+        subsystems = new Subsystems(clock, Strongback.cycleTime(), operatorGamepad);
         subsystems.createLEDStrip();
         subsystems.createPneumatics(); // Must be called before createDrivebase if using solenoids.
         subsystems.createDrivebase();
@@ -116,9 +128,28 @@ public class Robot extends TimedRobot implements Executable, LogHelper {
 
         createPowerMonitor();
         createCameraServers();
+        // Log messages that were logged faster than they could be written.
+        Chart.register(() -> (double) Log.getDroppedCount(), Chart.Rate.SLOW, "Log/Dropped");
+        // Chart rows that couldn't be written fast enough.
+        Chart.register(() -> (double) Chart.getDroppedCount(), Chart.Rate.SLOW, "Chart/Dropped");
+        Chart.register(() -> (double) Chart.getOverrunCount(), Chart.Rate.SLOW, "Chart/Overruns");
+        chartExecutionTimes();
+        TunableLogLevels.tuneLevels(new NetworkTableHelperImpl("Log"));
 
         // Create the brains of the robot. This runs the sequences.
         controller = new Controller(subsystems);
+        // Wake the controller after the subsystems have been updated on each cycle, while it
+        // has sequences waiting on them.
+        Strongback.executor().register(controller, Priority.HIGH);
+        Chart.register(() -> controller.getModeStartLatencySec() * 1000,
+                "Controller/modeStartLatencyMSec");
+        Chart.register(controller::getSubmitLatencyMSec, Chart.Rate.SLOW,
+                "Controller/submitLatencyMSec");
+        Chart.register(controller::getMaxSubmitLatencyMSec, Chart.Rate.SLOW,
+                "Controller/maxSubmitLatencyMSec");
+
+        // Build the sequences now so that pressing a button doesn't need to.
+        Sequences.init();
 
         // Setup the interface to the user, mapping buttons to sequences for the
         // controller.
@@ -128,11 +159,21 @@ public class Robot extends TimedRobot implements Executable, LogHelper {
         if (!Config.charting.enabled) {
             error("Chart sampling disabled");
         } else {
-            // Low priority means run every 20 * 4 = 80ms, or at 12.5Hz
-            // It polls almost everything on the CAN bus, so don't want it to be too fast.
-            Strongback.executor().register(new Chart(), Priority.LOW);
+            // Runs every cycle, but each column is only sampled at its own rate. Most are
+            // sampled every 20 * 4 = 80ms, or at 12.5Hz, as it polls almost everything on the
+            // CAN bus and we don't want that to be too fast. Registered with a period so it's
+            // sampled after the prioritised executables, including the drivebase, have been
+            // updated, and so it can be shed when the executor is overrunning. Stays in the main
+            // lane as the columns read the subsystems without any locking.
+            Chart chart = new Chart();
+            Strongback.executor().register(chart,
+                    Duration.ofMillis(Config.intervals.executorCycleMSec));
+            Strongback.executor().setSheddable(chart, true);
         }
-        Strongback.executor().register(this, Priority.LOW);
+        // Also reads the subsystems, so stays in the main lane. The biggest load that isn't
+        // controlling the robot, so it can be shed when the executor is overrunning.
+        Strongback.executor().register(this, Config.intervals.dashboardUpdatePeriod);
+        Strongback.executor().setSheddable(this, true);
 
         // Start the scheduler to keep all the subsystems working in the background.
         Strongback.start();
@@ -164,11 +205,16 @@ public class Robot extends TimedRobot implements Executable, LogHelper {
         PortForwarder.add(Config.logging.rsync.port, Config.logging.rsync.hostname, 22);
         maybeInit(); // Called before robotPeriodic().
         info("disabledInit");
+        dumpExecutionTimes();
 
         // Tell the controller to give up on whatever it was processing.
         controller.disable();
         // Disable all subsystems
         subsystems.disable();
+        // Create the files for the next enable in the background so that enabling only needs to
+        // switch to them.
+        Log.prepareRestart();
+        Chart.prepareRestart();
     }
 
     /**
@@ -184,13 +230,14 @@ public class Robot extends TimedRobot implements Executable, LogHelper {
      */
     @Override
     public void autonomousInit() {
+        double modeStartSec = clock.currentTime();
         PortForwarder.remove(Config.logging.rsync.port); // Stop forwarding port to stop rsync and
                                                          // save bandwidth.
         Log.restartLogs();
         Chart.restartCharts();
         createTimeEventSymlinks();
         info("auto has started");
-        controller.enable();
+        controller.enable(modeStartSec);
         subsystems.enable();
 
         controller.run(Sequences.getStartSequence());
@@ -212,13 +259,14 @@ public class Robot extends TimedRobot implements Executable, LogHelper {
      */
     @Override
     public void teleopInit() {
+        double modeStartSec = clock.currentTime();
         // Stop forwarding port to stop rsync and save bandwidth.
         PortForwarder.remove(Config.logging.rsync.port);
         Log.restartLogs();
         Chart.restartCharts();
         createTimeEventSymlinks();
         info("teleop has started");
-        controller.enable();
+        controller.enable(modeStartSec);
         subsystems.enable();
         controller.run(Sequences.setDrivebaseToDefault());
         subsystems.ledStrip.setAlliance(getAllianceLEDColour().get());
@@ -371,7 +419,7 @@ public class Robot extends TimedRobot implements Executable, LogHelper {
             oi.configureDDRPad(dancepad);
         }
         oi.registerDriveRoutines(driverLeftJoystick, driverRightJoystick, dancepad);
-        Chart.register(DriverStation::getMatchTime, "DriverStation/MatchTime");
+        Chart.register(DriverStation::getMatchTime, Chart.Rate.SLOW, "DriverStation/MatchTime");
     }
 
     /**
@@ -392,26 +440,63 @@ public class Robot extends TimedRobot implements Executable, LogHelper {
         Log.createDateFiles(Calendar.getInstance(), matchDescription);
     }
 
-    @Override
-    public void execute(long timeInMillis) {
-        // Logger.debug("Updating smartDashboard");
-        maybeUpdateSmartDashboard();
+    /**
+     * Chart how long each executable takes to find which one is making the executor overrun.
+     * The subsystems have been registered by now, add the ones registered later.
+     */
+    private void chartExecutionTimes() {
+        for (String name : new String[] {"Chart", "Robot", "Controller", "Scheduler",
+                "AsyncSwitchReactor"}) {
+            Strongback.executionTimer(name);
+        }
+        for (ExecutionTimer timer : Strongback.executionTimers()) {
+            String name = timer.getName();
+            Chart.register(() -> timer.getPercentileMSec(0.5), Chart.Rate.SLOW,
+                    "Executor/%s/p50MSec", name);
+            Chart.register(() -> timer.getPercentileMSec(0.99), Chart.Rate.SLOW,
+                    "Executor/%s/p99MSec", name);
+            Chart.register(timer::getMaxMSec, Chart.Rate.SLOW, "Executor/%s/maxMSec", name);
+            Chart.register(() -> (double) timer.getOverrunCount(), Chart.Rate.SLOW,
+                    "Executor/%s/Overruns", name);
+        }
+    }
+
+    /**
+     * @return the executor wait strategy with this name, or PARK_THEN_SPIN if there isn't one.
+     */
+    private WaitStrategy getWaitStrategy(String name) {
+        try {
+            return WaitStrategy.valueOf(name);
+        } catch (Exception e) {
+            error("Invalid executor wait strategy: %s. Using PARK_THEN_SPIN", name);
+            return WaitStrategy.PARK_THEN_SPIN;
+        }
     }
 
-    private double lastDashboardUpdateSec = 0;
+    /**
+     * Log how long each executable took and start again for the next period.
+     */
+    private void dumpExecutionTimes() {
+        for (ExecutionTimer timer : Strongback.executionTimers()) {
+            if (timer.getCount() > 0) {
+                info("Executor %s", timer);
+            }
+            timer.reset();
+        }
+    }
 
     /**
-     * Possibly update the smartdashboard. Don't do this too often due to the amount
-     * that is sent to the dashboard.
+     * Update the smartdashboard. Called once every dashboard update period, not every cycle, due
+     * to the amount that is sent to the dashboard.
      */
-    private void maybeUpdateSmartDashboard() {
-        double now = Strongback.timeSystem().currentTime();
-        if (now < lastDashboardUpdateSec + Config.intervals.dashboardUpdateSec)
-            return;
-        lastDashboardUpdateSec = now;
+    @Override
+    public void execute(long timeInMillis) {
         subsystems.updateDashboard();
         // pdp.updateDashboard();
         controller.updateDashboard();
+        for (ExecutionTimer timer : Strongback.executionTimers()) {
+            SmartDashboard.putString("Executor/" + timer.getName(), timer.toString());
+        }
     }
 
     private Supplier<LEDColour> getAllianceLEDColour() {
@@ -9,6 +9,10 @@ import frc.robot.subsystems.Subsystems;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.strongback.Executable;
 import org.strongback.components.Clock;
 
 /**
@@ -30,46 +34,223 @@ import org.strongback.components.Clock;
  *  - Arbitrary combinations of parallel and sequential commands aren't supported,
  *    only a series of parallel operations.
  * 
+ * The controller thread sleeps until a sequence is run. While sequences are running
+ * it tries to apply their states once per executor cycle, just after the subsystems
+ * have been updated, if it has been registered with the executor. Otherwise it
+ * checks them every 10ms.
+ *
+ * Sequences are handed to the controller thread through a lock-free queue, and
+ * only the controller thread touches the sequence runners, so calling run() from
+ * the executor thread (eg a button press via the switch reactor) never waits for
+ * a state to be applied.
+ *
  * @formatter:on
  */
-public class Controller implements Runnable, DashboardUpdater, LogHelper {
+public class Controller implements Runnable, Executable, DashboardUpdater, LogHelper {
+    // How often to check the running sequences when not woken by the executor.
+    private static final long kPollMSec = 10;
+    // Check anyway if the executor hasn't woken it for this long, eg it has stopped.
+    private static final long kMaxCycleWaitNanos = TimeUnit.MILLISECONDS.toNanos(100);
     private final Subsystems subsystems;
     private final Clock clock;
+    private final Thread thread;
+    // Set when there is something new for the controller thread to do.
+    private volatile boolean wakeRequested = false;
+    // There are sequences running or waiting to run.
+    private volatile boolean active = false;
+    // The executor is calling execute() each cycle.
+    private volatile boolean cycleDriven = false;
     private boolean isAlive = true; // For unit tests
-    private boolean enabled = false;
+    private volatile boolean enabled = false;
+    // Incremented each time the controller is disabled, so that a sequence run just as it was
+    // disabled is dropped rather than started after the abort.
+    private volatile int enableGeneration = 0;
+    // When the robot was last enabled, to measure how long until the first sequence is applied.
+    private volatile double modeStartSec = -1;
+    private volatile double modeStartLatencySec = 0;
+    // How long the last sequence and the slowest sequence waited in the queue.
+    private volatile long submitLatencyNanos = 0;
+    private volatile long maxSubmitLatencyNanos = 0;
+    // What's running, for the dashboard. Only rebuilt when the dashboard asks for it.
+    private volatile boolean namesRequested = true;
+    private volatile String runningNames = "";
+    private volatile String blockedByNames = "";
 
-    // The sequences that are either running or waiting to run.
+    // Sequences to run, and requests to abort them all, from any thread.
+    private final ConcurrentLinkedQueue<Submission> submissions = new ConcurrentLinkedQueue<>();
+    // The sequences that are either running or waiting to run. Only used by the controller
+    // thread.
     private ArrayList<SequenceRunner> runners = new ArrayList<>();
+    // The most recently added runner using each domain, indexed by the domain's bit number.
+    // Any earlier runner using that domain has already been told to abort. Only used by the
+    // controller thread.
+    private final SequenceRunner[] byDomain = new SequenceRunner[Domain.values().length];
+    // The runner that has started and is using each domain, until it finishes. Only used by
+    // the controller thread.
+    private final SequenceRunner[] startedByDomain = new SequenceRunner[Domain.values().length];
+
+    /**
+     * A sequence to run, or null to abort all the sequences.
+     */
+    private static class Submission {
+        final Sequence sequence;
+        final int generation;
+        final long submittedNanos = System.nanoTime();
+
+        Submission(Sequence sequence, int generation) {
+            this.sequence = sequence;
+            this.generation = generation;
+        }
+    }
 
     public Controller(Subsystems subsystems) {
         this.subsystems = subsystems;
         this.clock = subsystems.clock;
-        (new Thread(this)).start();
+        thread = new Thread(this);
+        thread.start();
+    }
+
+    /**
+     * Called by the executor each cycle. Wakes the controller thread to try to apply the
+     * states of the running sequences now that the subsystems have been updated. Never
+     * blocks the executor.
+     */
+    @Override
+    public void execute(long timeInMillis) {
+        cycleDriven = true;
+        if (active) {
+            wake();
+        }
+    }
+
+    private void wake() {
+        wakeRequested = true;
+        LockSupport.unpark(thread);
     }
 
-    synchronized public void run(Sequence sequence) {
+    /**
+     * Run a sequence, aborting any running sequences that conflict with it. Safe to call from
+     * any thread, it doesn't wait for the controller.
+     */
+    public void run(Sequence sequence) {
+        // Read before enabled so that if disable() happens in between this is dropped.
+        int generation = enableGeneration;
         if (!enabled) {
             return;
         }
-        for (SequenceRunner existing : runners) {
-            if (existing.sequence == sequence) {
-                // This sequence is already running, don't start it again.
-                return;
+        submissions.add(new Submission(sequence, generation));
+        // Start it now rather than on the next poll.
+        wake();
+    }
+
+    /**
+     * Take the submitted sequences off the queue in the order they were submitted. Only called
+     * by the controller thread.
+     */
+    private void drainSubmissions() {
+        Submission submission;
+        while ((submission = submissions.poll()) != null) {
+            long latency = System.nanoTime() - submission.submittedNanos;
+            submitLatencyNanos = latency;
+            if (latency > maxSubmitLatencyNanos) {
+                maxSubmitLatencyNanos = latency;
+            }
+            if (submission.sequence == null) {
+                for (SequenceRunner runner : runners) {
+                    runner.abort();
+                }
+            } else if (submission.generation != enableGeneration) {
+                // Run as the controller was being disabled, after the abort was queued.
+                debug("Dropping sequence %s run while disabling", submission.sequence.getName());
+            } else {
+                addRunner(submission.sequence);
             }
         }
+    }
+
+    private void addRunner(Sequence sequence) {
+        long mask = sequence.getDomainMask();
+        if (mask == 0) {
+            // Doesn't use any domains so it can't conflict, but it may already be running.
+            for (SequenceRunner existing : runners) {
+                if (existing.sequence == sequence && !existing.isAborting()) {
+                    return;
+                }
+            }
+        } else if (isRunning(sequence, mask)) {
+            // This sequence is already running, don't start it again.
+            return;
+        }
         SequenceRunner runner = new SequenceRunner(sequence, clock, subsystems);
-        // Check to see if this new sequence conflicts with any existing running
-        // sequences.
-        for (SequenceRunner existing : runners) {
-            if (existing.doesConflict(runner)) {
-                // These two sequences will conflict. Abort the existing one
-                // so the new one can start.
+        // Abort any existing running sequences that conflict with this new one so the new
+        // one can start, and make the new one the owner of its domains.
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            int domain = Long.numberOfTrailingZeros(bits);
+            SequenceRunner existing = byDomain[domain];
+            if (existing != null) {
                 existing.abort();
             }
+            byDomain[domain] = runner;
         }
         runners.add(runner);
     }
 
+    /**
+     * @return if a runner for this sequence owns all of its domains and hasn't been told to
+     *         abort.
+     */
+    private boolean isRunning(Sequence sequence, long mask) {
+        SequenceRunner owner = byDomain[Long.numberOfTrailingZeros(mask)];
+        if (owner == null || owner.sequence != sequence || owner.isAborting()) {
+            return false;
+        }
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            if (byDomain[Long.numberOfTrailingZeros(bits)] != owner) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return if none of the runner's domains are being used by another runner that has
+     *         started, so it can start without conflicting with them.
+     */
+    private boolean canStart(SequenceRunner runner) {
+        for (long bits = runner.sequence.getDomainMask(); bits != 0; bits &= bits - 1) {
+            SequenceRunner user = startedByDomain[Long.numberOfTrailingZeros(bits)];
+            if (user != null && user != runner) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start a runner, marking its domains as in use until it finishes.
+     */
+    private void startRunner(SequenceRunner runner) throws Exception {
+        for (long bits = runner.sequence.getDomainMask(); bits != 0; bits &= bits - 1) {
+            startedByDomain[Long.numberOfTrailingZeros(bits)] = runner;
+        }
+        runner.start();
+    }
+
+    /**
+     * Forget a runner that has finished so it no longer owns or uses any domains.
+     */
+    private void removeRunner(SequenceRunner runner) {
+        for (long bits = runner.sequence.getDomainMask(); bits != 0; bits &= bits - 1) {
+            int domain = Long.numberOfTrailingZeros(bits);
+            if (byDomain[domain] == runner) {
+                byDomain[domain] = null;
+            }
+            if (startedByDomain[domain] == runner) {
+                startedByDomain[domain] = null;
+            }
+        }
+    }
+
     /**
      * Main entry point which processes each Runner/Sequence is run.
      * 
@@ -79,40 +260,61 @@ public class Controller implements Runnable, DashboardUpdater, LogHelper {
     public void run() {
         try {
             while (true) {
-                synchronized (this) {
-                    // Check for any sequences that can now be run.
-                    // Do them in order that they were added.
-                    for (SequenceRunner runner : runners) {
-                        if (!runner.isWaitingToStart()) {
-                            continue; // Already running, skip this runner.
-                        }
-                        // Check it against the already running sequences
-                        boolean canStart = true;
-                        for (SequenceRunner other : runners) {
-                            if (runner.isRunning() && runner.doesConflict(other)) {
-                                // These two sequences will conflict, and the running one
-                                // will have been told to abort, so wait until is finishes.
-                                canStart = false;
-                            }
-                        }
-                        if (canStart) {
-                            // Doesn't conflict with any running sequences, start it.
-                            runner.start();
-                        }
+                wakeRequested = false;
+                drainSubmissions();
+                boolean started = false;
+                // Check for any sequences that can now be run.
+                // Do them in order that they were added.
+                for (SequenceRunner runner : runners) {
+                    if (!runner.isWaitingToStart()) {
+                        continue; // Already running, skip this runner.
                     }
-                    // Try to apply the current state for each running each sequence.
-                    Iterator<SequenceRunner> iter = runners.iterator();
-                    while (iter.hasNext()) {
-                        SequenceRunner runner = iter.next();
-                        if (!runner.run()) {
-                            // This runner/sequence is done.
-                            iter.remove();
-                        }
+                    // If it conflicts with a running sequence, the running one will have been
+                    // told to abort, so wait until it finishes.
+                    if (canStart(runner)) {
+                        // Doesn't conflict with any running sequences, start it.
+                        startRunner(runner);
+                        started = true;
                     }
                 }
-                // Sleep briefly so it don't use all of the cpu.
-                // 10 ms sleep = 100 updates / second.
-                clock.sleepMilliseconds(10);
+                // Try to apply the current state for each running each sequence.
+                Iterator<SequenceRunner> iter = runners.iterator();
+                while (iter.hasNext()) {
+                    SequenceRunner runner = iter.next();
+                    if (!runner.run()) {
+                        // This runner/sequence is done.
+                        iter.remove();
+                        removeRunner(runner);
+                    }
+                }
+                if (started && modeStartSec >= 0) {
+                    // The first state of the first sequence has now been applied.
+                    modeStartLatencySec = clock.currentTime() - modeStartSec;
+                    modeStartSec = -1;
+                    info("First sequence applied %.1fms after the mode started",
+                            modeStartLatencySec * 1000);
+                }
+                active = !runners.isEmpty();
+                if (namesRequested || !active) {
+                    updateNames();
+                }
+                if (!active) {
+                    // Nothing to do until a sequence is run.
+                    while (!wakeRequested) {
+                        LockSupport.park(this);
+                    }
+                } else if (cycleDriven) {
+                    // Sequences are waiting on the subsystems, try again after the next
+                    // executor cycle or when another sequence is run.
+                    long deadline = System.nanoTime() + kMaxCycleWaitNanos;
+                    while (!wakeRequested && System.nanoTime() < deadline) {
+                        LockSupport.parkNanos(this, deadline - System.nanoTime());
+                    }
+                } else {
+                    // Sleep briefly so it don't use all of the cpu.
+                    // 10 ms sleep = 100 updates / second.
+                    clock.sleepMilliseconds(kPollMSec);
+                }
             }
         } catch (Exception e) {
             // The controller is dying, write the exception to the logs.
@@ -127,20 +329,55 @@ public class Controller implements Runnable, DashboardUpdater, LogHelper {
     /**
      * Disable running new sequences and abort any currently running sequences.
      */
-    public synchronized void disable() {
+    public void disable() {
         enabled = false;
-        for (SequenceRunner runner : runners) {
-            runner.abort();
-        }
+        enableGeneration++;
+        // Queued behind any sequences already submitted so that they are aborted too.
+        submissions.add(new Submission(null, enableGeneration));
+        // Apply the end states now.
+        wake();
     }
 
     /**
      * Enable running new sequences.
      */
-    public synchronized void enable() {
+    public void enable() {
         enabled = true;
     }
 
+    /**
+     * Enable running new sequences and measure how long it takes from the mode starting until the
+     * first sequence is applied.
+     * 
+     * @param modeStartSec the time the mode started, eg on entry to autonomousInit().
+     */
+    public void enable(double modeStartSec) {
+        enable();
+        this.modeStartSec = modeStartSec;
+    }
+
+    /**
+     * @return how long it took from the mode starting to the first sequence being applied the last
+     *         time the robot was enabled.
+     */
+    public double getModeStartLatencySec() {
+        return modeStartLatencySec;
+    }
+
+    /**
+     * @return how long the last sequence run waited before the controller thread took it.
+     */
+    public double getSubmitLatencyMSec() {
+        return submitLatencyNanos / 1e6;
+    }
+
+    /**
+     * @return the longest any sequence run has waited before the controller thread took it.
+     */
+    public double getMaxSubmitLatencyMSec() {
+        return maxSubmitLatencyNanos / 1e6;
+    }
+
     /**
      * For use by unit tests only.
      * 
@@ -153,7 +390,24 @@ public class Controller implements Runnable, DashboardUpdater, LogHelper {
     /**
      * Print the status on the smart dashboard
      */
-    public synchronized void updateDashboard() {
+    public void updateDashboard() {
+        SmartDashboard.putString("Controller: Running sequences", runningNames);
+        SmartDashboard.putString("Controller: Blocked by", blockedByNames);
+        namesRequested = true;
+    }
+
+    /**
+     * Record what's running for the dashboard, which is updated from another thread. Only
+     * called by the controller thread, when the dashboard has asked for the names or nothing
+     * is running.
+     */
+    private void updateNames() {
+        namesRequested = false;
+        if (runners.isEmpty()) {
+            runningNames = "";
+            blockedByNames = "";
+            return;
+        }
         HashSet<String> names = new HashSet<>();
         HashSet<String> blockedBy = new HashSet<>();
         for (SequenceRunner runner : runners) {
@@ -162,8 +416,8 @@ public class Controller implements Runnable, DashboardUpdater, LogHelper {
                 blockedBy.add(runner.getBlockedBy());
             }
         }
-        SmartDashboard.putString("Controller: Running sequences", String.join(", ", names));
-        SmartDashboard.putString("Controller: Blocked by", String.join(", ", blockedBy));
+        runningNames = String.join(", ", names);
+        blockedByNames = String.join(", ", blockedBy);
     }
 
     @Override
@@ -15,8 +15,18 @@ package frc.robot.controller;
  * 
  * Note there is no time domain as two sequences using different delays aren't
  * going to conflict with each other.
+ * 
+ * Sequences hold their domains as a bitmask in a long, so there can be at most
+ * 64 domains.
  */
 enum Domain {
-    DRIVEBASE, INTAKE, CONVEYOR, FEEDER, SHOOTER, CLIMBER, LED
+    DRIVEBASE, INTAKE, CONVEYOR, FEEDER, SHOOTER, CLIMBER, LED;
     // Note the lack of non-subsystems, eg time.
-};
+
+    /**
+     * @return the bit for this domain in a sequence's domain mask.
+     */
+    long bit() {
+        return 1L << ordinal();
+    }
+}
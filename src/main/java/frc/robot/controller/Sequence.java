@@ -3,8 +3,9 @@ package frc.robot.controller;
 
 
 import java.util.ArrayList;
-import java.util.EnumSet;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * A list of State instances that the robot should go through and an end state
@@ -14,15 +15,22 @@ import java.util.Iterator;
  */
 public class Sequence implements Iterable<State> {
     private final String name;
-    private final ArrayList<State> states;
+    private final List<State> states;
     private final State endState;
-    private final EnumSet<Domain> domains;
+    private final long domainMask;
+    // The states compiled for the SequenceRunner.
+    private final StatePlan[] plans;
+    private final StatePlan endPlan;
 
     private Sequence(SequenceBuilder builder) {
         this.name = builder.name;
         this.endState = builder.endState;
-        this.states = builder.states;
-        this.domains = builder.domains;
+        // Copied so that using the builder again doesn't change this sequence, which may be
+        // shared.
+        this.states = Collections.unmodifiableList(new ArrayList<>(builder.states));
+        this.domainMask = builder.domainMask;
+        this.plans = builder.plans;
+        this.endPlan = builder.endPlan;
     }
 
     public String getName() {
@@ -37,6 +45,33 @@ public class Sequence implements Iterable<State> {
         return endState;
     }
 
+    /**
+     * @return the number of states, not counting the end state.
+     */
+    int size() {
+        return plans.length;
+    }
+
+    /**
+     * @param index which state, starting from zero.
+     * @return the compiled state.
+     */
+    StatePlan getPlan(int index) {
+        return plans[index];
+    }
+
+    StatePlan getEndPlan() {
+        return endPlan;
+    }
+
+    /**
+     * @return the domains/subsystems updated by this sequence, one bit per
+     *         {@link Domain}.
+     */
+    public long getDomainMask() {
+        return domainMask;
+    }
+
     /**
      * A sequence conflicts with another sequence if they share any
      * domains/subsystems that are updated.
@@ -45,9 +80,7 @@ public class Sequence implements Iterable<State> {
      * @return true if they share domains
      */
     public boolean doesConflict(Sequence other) {
-        EnumSet<Domain> copy = domains.clone();
-        copy.retainAll(other.domains);
-        return copy.size() > 0;
+        return (domainMask & other.domainMask) != 0;
     }
 
     /**
@@ -78,7 +111,9 @@ public class Sequence implements Iterable<State> {
         private boolean createInterrupt = false;
         private ArrayList<State> states = new ArrayList<State>();
         private State endState = new State();
-        private EnumSet<Domain> domains = EnumSet.noneOf(Domain.class);
+        private long domainMask = 0;
+        private StatePlan[] plans;
+        private StatePlan endPlan;
 
         /**
          * SequenceBuilder create a new sequence.
@@ -136,14 +171,24 @@ public class Sequence implements Iterable<State> {
         }
 
         public Sequence build() {
+            // Work out the domains once so conflict checks don't need to allocate.
+            domainMask = 0;
             for (State s : states) {
-                domains.addAll(s.getDomains());
+                for (Domain domain : s.getDomains()) {
+                    domainMask |= domain.bit();
+                }
             }
             if (createInterrupt) {
                 for (State s : states) {
                     endState.fillInterrupt(s);
                 }
             }
+            // Compile the states now so running them doesn't need to unbox or allocate.
+            plans = new StatePlan[states.size()];
+            for (int i = 0; i < plans.length; i++) {
+                plans[i] = new StatePlan(states.get(i));
+            }
+            endPlan = new StatePlan(endState);
             return new Sequence(this);
         }
 
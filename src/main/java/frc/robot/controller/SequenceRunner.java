@@ -5,7 +5,6 @@ package frc.robot.controller;
 import frc.robot.interfaces.LogHelper;
 import frc.robot.lib.LEDColour;
 import frc.robot.subsystems.Subsystems;
-import java.util.Iterator;
 import org.strongback.components.Clock;
 
 /**
@@ -14,16 +13,22 @@ import org.strongback.components.Clock;
  */
 public class SequenceRunner implements LogHelper {
     protected final Sequence sequence;
-    private Iterator<State> iterator;
+    // The index of the next state to apply.
+    private int nextIndex;
     protected RunStatus status = RunStatus.WAITING_TO_START;
-    private State desiredState;
+    private StatePlan desiredState;
     private final Clock clock;
     private final Subsystems subsystems;
     private double stateStartTimeSec = 0;
+    private double stateEndTimeSec = 0;
     private double nextLogTimeSec = 0;
     private double timeBetweenLogsSec = 0.25;
     private String blockedBy = "";
     private boolean firstApplyState = true;
+    // Which fields of the desired state have been written to the subsystems.
+    private long appliedFields = 0;
+    // How many writes were skipped because the field had already been applied.
+    private long suppressedWrites = 0;
 
     enum RunStatus {
         WAITING_TO_START, // Waiting for to be allowed to start
@@ -72,7 +77,7 @@ public class SequenceRunner implements LogHelper {
                 throw new Exception("Start called on sequence " + sequence.getName()
                         + " in unexpected state " + status);
         }
-        iterator = sequence.iterator();
+        nextIndex = 0;
         next();
     }
 
@@ -83,7 +88,7 @@ public class SequenceRunner implements LogHelper {
      * @return true if there is another step to be executed.
      */
     synchronized public boolean next() {
-        if (!iterator.hasNext()) {
+        if (nextIndex >= sequence.size()) {
             debug("Sequence %s is complete", sequence.getName());
             status = RunStatus.FINISHED;
             return false;
@@ -98,7 +103,7 @@ public class SequenceRunner implements LogHelper {
                 // The step that was running when the sequence was aborted
                 // has now finished applying. Apply the end state.
                 status = RunStatus.ABORTED;
-                setDesiredState(sequence.getEndState());
+                setDesiredState(sequence.getEndPlan());
                 return true;
             case ABORTED:
                 // The end state has been fully applied. Change status to finished.
@@ -106,7 +111,7 @@ public class SequenceRunner implements LogHelper {
                 return false;
             case RUNNING:
                 // Normal running, move to the next state.
-                setDesiredState(iterator.next());
+                setDesiredState(sequence.getPlan(nextIndex++));
                 break;
         }
         return true;
@@ -117,13 +122,17 @@ public class SequenceRunner implements LogHelper {
      * 
      * @param state the state to change to.
      */
-    private void setDesiredState(State state) {
+    private void setDesiredState(StatePlan state) {
         desiredState = state;
         blockedBy = "";
         stateStartTimeSec = clock.currentTime();
+        if ((state.waits & StatePlan.kWaitTime) != 0) {
+            stateEndTimeSec = state.timeAction.calculateEndTime(stateStartTimeSec);
+        }
         timeBetweenLogsSec = 0.25;
         nextLogTimeSec = stateStartTimeSec + timeBetweenLogsSec;
         firstApplyState = true;
+        appliedFields = 0;
     }
 
     /**
@@ -218,131 +227,146 @@ public class SequenceRunner implements LogHelper {
         }
 
         if (isFirstApplyState) {
-            debug("Applying requested state: %s", desiredState);
-            if (desiredState.logString != null) {
+            // State.toString() is expensive, only call it if the message will be logged.
+            debug(() -> "Applying requested state: " + desiredState);
+            if (desiredState.state.logString != null) {
                 info("State:");
-                info("State: %s ", desiredState.logString);
+                info("State: %s ", desiredState.state.logString);
                 info("State:");
             }
         }
 
-        // First we tell the subsystems what they should do so they can do it in parallel before
-        // checking that they have finished.
+        if (isFirstApplyState) {
+            // Tell the subsystems what they should do once, when the state is entered, so they
+            // can do it in parallel. After that only check whether they have finished.
+            applyState();
+        } else {
+            suppressedWrites += Long.bitCount(appliedFields);
+        }
+
+        // Check which subsystems have yet to finish applying the requested state.
+        int waits = desiredState.waits;
+
+        // Intake
+        if ((waits & StatePlan.kWaitIntake) != 0
+                && notFinished(subsystems.intake.isInPosition(), LEDColour.YELLOW, "intake")) {
+            return false; // It's not yet in position
+        }
+
+        // Shooter speed
+        if ((waits & StatePlan.kWaitShooter) != 0
+                && notFinished(subsystems.shooter.isAtTargetSpeed(), LEDColour.PURPLE,
+                        "shooter wheel")) {
+            return false;
+        }
+
+        // Shooter hood
+        if ((waits & StatePlan.kWaitHood) != 0
+                && notFinished(subsystems.shooter.isHoodAtTargetAngle(), LEDColour.MAGENTA,
+                        "shooter hood")) {
+            return false;
+        }
+
+        // Drivebase
+        if ((waits & StatePlan.kWaitDrive) != 0
+                && notFinished(subsystems.drivebase.hasFinished(), LEDColour.CYAN, "driving")) {
+            return false; // Still driving
+        }
+
+        // Last thing: wait for the delay time if it's set.
+        // The time beyond which we are allowed to move onto the next state was worked out
+        // when the state was entered.
+        if ((waits & StatePlan.kWaitTime) != 0
+                && notFinished(clock.currentTime() >= stateEndTimeSec, LEDColour.ORANGE,
+                        "time")) {
+            return false; // Waiting for the required amount of time.
+        }
+
+        blockedBy = "";
+        return true; // Not waiting on anything, can move to the next state.
+    }
+
+    /**
+     * Write each field that is set in the desired state to its subsystem.
+     */
+    private void applyState() {
+        StatePlan plan = desiredState;
+        long fields = plan.fields;
 
         // Start driving if necessary.
-        if (desiredState.drive != null) {
-            subsystems.drivebase.setDriveRoutine(desiredState.drive);
+        if ((fields & StatePlan.kDrive) != 0) {
+            subsystems.drivebase.setDriveRoutine(plan.drive);
         }
-        if (desiredState.currentPose != null) {
-            subsystems.location.setCurrentPose(desiredState.currentPose);
+        if ((fields & StatePlan.kCurrentPose) != 0) {
+            subsystems.location.setCurrentPose(plan.currentPose);
         }
 
         // Intake
-        if (desiredState.intakePosition != null) {
-            subsystems.intake.setPosition(desiredState.intakePosition);
+        if ((fields & StatePlan.kIntakePosition) != 0) {
+            subsystems.intake.setPosition(plan.intakePosition);
         }
-        if (desiredState.intakeRPS != null) {
-            subsystems.intake.setTargetRPS(desiredState.intakeRPS);
+        if ((fields & StatePlan.kIntakeRPS) != 0) {
+            subsystems.intake.setTargetRPS(plan.target(StatePlan.kIntakeRPS));
         }
-        if (desiredState.velcroDutyCycle != null) {
-            subsystems.velcroIntake.setDutyCycle(desiredState.velcroDutyCycle);
+        if ((fields & StatePlan.kVelcroDutyCycle) != 0) {
+            subsystems.velcroIntake.setDutyCycle(plan.target(StatePlan.kVelcroDutyCycle));
         }
 
         // Conveyor
-        if (desiredState.conveyorDutyCycle != null) {
-            subsystems.conveyor.setDutyCycle(desiredState.conveyorDutyCycle);
+        if ((fields & StatePlan.kConveyorDutyCycle) != 0) {
+            subsystems.conveyor.setDutyCycle(plan.target(StatePlan.kConveyorDutyCycle));
         }
 
         // Shooter
-        if (desiredState.shooterRPS != null) {
-            subsystems.shooter.setTargetRPS(desiredState.shooterRPS);
+        if ((fields & StatePlan.kShooterRPS) != 0) {
+            subsystems.shooter.setTargetRPS(plan.target(StatePlan.kShooterRPS));
         }
-        if (desiredState.feederLeftDutyCycle != null) {
-            subsystems.feederLeft.setDutyCycle(desiredState.feederLeftDutyCycle);
+        if ((fields & StatePlan.kFeederLeftDutyCycle) != 0) {
+            subsystems.feederLeft.setDutyCycle(plan.target(StatePlan.kFeederLeftDutyCycle));
         }
-        if (desiredState.feederRightDutyCycle != null) {
-            subsystems.feederRight.setDutyCycle(desiredState.feederRightDutyCycle);
+        if ((fields & StatePlan.kFeederRightDutyCycle) != 0) {
+            subsystems.feederRight.setDutyCycle(plan.target(StatePlan.kFeederRightDutyCycle));
         }
-        if (desiredState.hoodAngle != null) {
-            subsystems.shooter.setHoodTargetAngle(desiredState.hoodAngle);
+        if ((fields & StatePlan.kHoodAngle) != 0) {
+            subsystems.shooter.setHoodTargetAngle(plan.target(StatePlan.kHoodAngle));
         }
 
         // LED
-        if (desiredState.ledColour != null) {
-            subsystems.ledStrip.setColour(desiredState.ledColour);
+        if ((fields & StatePlan.kLEDColour) != 0) {
+            subsystems.ledStrip.setColour(plan.ledColour);
         }
 
         // Climber
-        if (desiredState.climberLeftDutyCycle != null) {
-            subsystems.climberLeft.setDutyCycle(desiredState.climberLeftDutyCycle);
+        if ((fields & StatePlan.kClimberLeftDutyCycle) != 0) {
+            subsystems.climberLeft.setDutyCycle(plan.target(StatePlan.kClimberLeftDutyCycle));
         }
-        if (desiredState.climberRightDutyCycle != null) {
-            subsystems.climberRight.setDutyCycle(desiredState.climberRightDutyCycle);
+        if ((fields & StatePlan.kClimberRightDutyCycle) != 0) {
+            subsystems.climberRight
+                    .setDutyCycle(plan.target(StatePlan.kClimberRightDutyCycle));
         }
 
         // Gamepad Rumble
-        if (desiredState.gamepadRumbleIntensity != null) {
-            this.subsystems.gamepad.setRumbleLeft(desiredState.gamepadRumbleIntensity);
-            this.subsystems.gamepad.setRumbleRight(desiredState.gamepadRumbleIntensity);
+        if ((fields & StatePlan.kGamepadRumble) != 0) {
+            double intensity = plan.target(StatePlan.kGamepadRumble);
+            this.subsystems.gamepad.setRumbleLeft(intensity);
+            this.subsystems.gamepad.setRumbleRight(intensity);
         }
 
         // subsystems.jevois.setCameraMode(desiredState.cameraMode);
-
-
-        // Check which subsystems have yet to finish applying the requested state.
-
-        // Intake
-        if (notFinished(desiredState.intakePosition, subsystems.intake.isInPosition(),
-                LEDColour.YELLOW, "intake")) {
-            return false; // It's not yet in position
-        }
-
-        // Shooter speed
-        if (notFinished(desiredState.shooterUpToSpeed, subsystems.shooter.isAtTargetSpeed(),
-                LEDColour.PURPLE, "shooter wheel")) {
-            return false;
-        }
-
-        // Shooter hood
-        if (notFinished(desiredState.hoodAtTarget,
-                subsystems.shooter.isHoodAtTargetAngle(),
-                LEDColour.MAGENTA, "shooter hood")) {
-            return false;
-        }
-
-        // Drivebase
-        if (notFinished(desiredState.drive, subsystems.drivebase.hasFinished(),
-                LEDColour.CYAN, "driving")) {
-            return false; // Still driving
-        }
-
-        // Last thing: wait for the delay time if it's set.
-        // The time beyond which we are allowed to move onto the next state
-        if (desiredState.timeAction != null) {
-            double endTime = desiredState.timeAction.calculateEndTime(stateStartTimeSec);
-            if (notFinished(desiredState.timeAction, clock.currentTime() >= endTime,
-                    LEDColour.ORANGE, "time")) {
-                return false; // Waiting for the required amount of time.
-            }
-        }
-
-        blockedBy = "";
-        return true; // Not waiting on anything, can move to the next state.
+        appliedFields = fields;
     }
 
     /**
      * Helper to check if a subsystem has finished applying a change.
      * 
-     * @param expected if null, then don't check this subsystem.
      * @param finished if the subsystem has finished applying any change
      * @param colour what colour to set the LED strip to if the subsystem hasn't finished
      * @param subsystem the name of the subsystem that is being checked
      * @return true if this subsystem is still applying the change and more time is needed
      */
-    private <T> boolean notFinished(T expected, boolean finished, LEDColour colour,
-            String subsystem) {
-        if (expected == null || finished) {
-            return false; // No change expected or finished applying change
+    private boolean notFinished(boolean finished, LEDColour colour, String subsystem) {
+        if (finished) {
+            return false; // Finished applying change
         }
         // We're waiting for the subsystem to finish the requested update.
 
@@ -373,6 +397,11 @@ public class SequenceRunner implements LogHelper {
                 || status == RunStatus.WAITING_TO_START_THEN_ABORT;
     }
 
+    // This Sequence has been told to abort, or has finished.
+    synchronized public boolean isAborting() {
+        return status != RunStatus.WAITING_TO_START && status != RunStatus.RUNNING;
+    }
+
     synchronized public boolean isRunning() {
         return status == RunStatus.RUNNING
                 || status == RunStatus.ABORTING
@@ -395,6 +424,22 @@ public class SequenceRunner implements LogHelper {
         return blockedBy;
     }
 
+    /**
+     * @return which fields of the current state have been written to the subsystems, as
+     *         StatePlan.kXxx bits.
+     */
+    synchronized public long getAppliedFields() {
+        return appliedFields;
+    }
+
+    /**
+     * @return how many subsystem writes have been skipped because the field had already been
+     *         applied when the state was entered.
+     */
+    synchronized public long getSuppressedWrites() {
+        return suppressedWrites;
+    }
+
     @Override
     public String getName() {
         return sequence.getName();
@@ -1,7 +1,8 @@
 /**
  * Sequences for doing most actions on the robot.
  * 
- * If you add a new sequence, add it to allSequences at the end of this file.
+ * If you add a new sequence, add it to allSequences at the end of this file, and to init()
+ * if it takes no parameters or only a boolean or an enum.
  */
 package frc.robot.controller;
 
@@ -11,40 +12,94 @@ import edu.wpi.first.math.geometry.Pose2d;
 import frc.robot.Config;
 import frc.robot.controller.Sequence.SequenceBuilder;
 import frc.robot.lib.LEDColour;
+import frc.robot.lib.log.Log;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Control sequences for most robot operations.
  */
 public class Sequences {
+    // Sequences that have already been built, keyed by the name of the factory method and any
+    // boolean or enum parameters. Sequences are immutable once built, so the same instance can
+    // be run by many buttons, and the controller can tell that it's already running. Those
+    // taking doubles aren't cached as they could take any number of values.
+    private static final Map<Object, Sequence> cache = new ConcurrentHashMap<>();
 
     /**
-     * Do nothing sequence.
+     * Return the sequence for key, building it the first time it's asked for.
+     * 
+     * @param key the factory method name, or a list of it and the parameters.
+     * @param factory builds the sequence if it's not in the cache.
      */
-    public static Sequence getEmptySequence() {
-        if (emptySeq == null) {
-            emptySeq = new SequenceBuilder("empty").build();
+    private static Sequence cached(Object key, Supplier<Sequence> factory) {
+        Sequence sequence = cache.get(key);
+        if (sequence == null) {
+            // Not computeIfAbsent() so that a factory can use other cached sequences.
+            sequence = factory.get();
+            Sequence existing = cache.putIfAbsent(key, sequence);
+            if (existing != null) {
+                sequence = existing;
+            }
         }
-        return emptySeq;
+        return sequence;
     }
 
-    private static Sequence emptySeq = null;
+    /**
+     * Build all the sequences that don't take parameters, or only take a boolean or
+     * an enum, so that pressing a button doesn't need to build one. Call once the
+     * config has been loaded.
+     * 
+     * @return the number of sequences in the cache.
+     */
+    public static int init() {
+        List<Supplier<Sequence>> factories = List.of(
+                Sequences::getEmptySequence, Sequences::getStartSequence,
+                Sequences::getResetSequence, Sequences::setDrivebaseToArcade,
+                Sequences::setDrivebaseToDefault, Sequences::startIntaking,
+                Sequences::reverseIntakingAndFeeder, () -> ejectSingleBall(true),
+                () -> ejectSingleBall(false), Sequences::stopIntaking,
+                Sequences::stopIntakingAndFeeder, Sequences::raiseIntake,
+                Sequences::startIntakingNoConveyor, Sequences::stopIntakingNoConveyor,
+                Sequences::reverseIntakingNoConveyor, Sequences::startConveyor,
+                Sequences::reverseConveyor, Sequences::stopConveyor,
+                Sequences::startShooting, Sequences::stopShooting,
+                Sequences::startDriveByVision, Sequences::visionAim, Sequences::visionAssist,
+                Sequences::unstickWheelsAfterClimb, () -> extendClimber(true),
+                () -> extendClimber(false), () -> retractClimber(true),
+                () -> retractClimber(false), () -> stopClimber(true), () -> stopClimber(false));
+        for (Supplier<Sequence> factory : factories) {
+            try {
+                factory.get();
+            } catch (Exception e) {
+                // Carry on so one bad sequence doesn't stop the robot from starting.
+                Log.exception("Sequences", "Failed to build sequence", e);
+            }
+        }
+        for (LEDColour colour : LEDColour.values()) {
+            setLEDColour(colour);
+        }
+        Log.info("Sequences", "Built %d sequences", cache.size());
+        return cache.size();
+    }
 
-    private static Sequence exclusiveSeq = null;
+    /**
+     * Do nothing sequence.
+     */
+    public static Sequence getEmptySequence() {
+        return cached("getEmptySequence", () -> new SequenceBuilder("empty").build());
+    }
 
     /**
      * The first sequence run in the autonomous period.
      */
     public static Sequence getStartSequence() {
-        if (startSeq == null) {
-            startSeq = new SequenceBuilder("start").build();
-        }
         // startbuilder.add().doArcadeVelocityDrive();
-        return startSeq;
+        return cached("getStartSequence", () -> new SequenceBuilder("start").build());
     }
 
-    private static Sequence startSeq = null;
-
     /**
      * Returns the sequence to reset the robot. Used to stop ejecting etc. The lift
      * is at intake height, the intake is stowed, all motors are off.
@@ -52,42 +107,41 @@ public class Sequences {
      * @return
      */
     public static Sequence getResetSequence() {
-        if (resetSeq == null) {
+        return cached("getResetSequence", () -> {
             SequenceBuilder builder = new SequenceBuilder("empty");
             builder.then().doDefaultDrive();
-            resetSeq = builder.build();
-        }
-        return resetSeq;
+            return builder.build();
+        });
     }
 
-    private static Sequence resetSeq = null;
-
     /**
      * Drive to a point on the field, relative to the starting point.
      * 
      * @param angle the final angle (relative to the field) in degrees.
      */
     public static Sequence getDriveToWaypointSequence(double x, double y, double angle) {
+        // Not cached, the drivebase only restarts a trajectory if it's a new one.
         Pose2d start = new Pose2d();
         Pose2d end = createPose2d(x, y, angle);
         SequenceBuilder builder = new SequenceBuilder(String.format("drive to %s", end));
         builder.then().driveRelativeWaypoints(start, List.of(), end, true);
-        driveToWaypointSeq = builder.build();
-        return driveToWaypointSeq;
+        return builder.build();
     }
 
-    private static Sequence driveToWaypointSeq = null;
-
     public static Sequence setDrivebaseToArcade() {
-        SequenceBuilder builder = new SequenceBuilder("Arcade Drive Routine");
-        builder.then().doArcadeDrive();
-        return builder.build();
+        return cached("setDrivebaseToArcade", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Arcade Drive Routine");
+            builder.then().doArcadeDrive();
+            return builder.build();
+        });
     }
 
     public static Sequence setDrivebaseToDefault() {
-        SequenceBuilder builder = new SequenceBuilder("Default Drive Routine");
-        builder.then().doDefaultDrive();
-        return builder.build();
+        return cached("setDrivebaseToDefault", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Default Drive Routine");
+            builder.then().doDefaultDrive();
+            return builder.build();
+        });
     }
 
     /**
@@ -97,104 +151,129 @@ public class Sequences {
      */
 
     public static Sequence startIntaking() {
-        SequenceBuilder builder = new SequenceBuilder("Start intaking");
-        // Wait for the intake to extend before turning motor
-        builder.then().deployIntake();
-        builder.then().setIntakeRPS(Config.intake.targetRPS)
-                .setVelcroDutyCycle(Config.velcro.dutyCycle)
-                .setConveyorDutyCycle(Config.conveyor.dutyCycle);
-        return builder.build();
+        return cached("startIntaking", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Start intaking");
+            // Wait for the intake to extend before turning motor
+            builder.then().deployIntake();
+            builder.then().setIntakeRPS(Config.intake.targetRPS)
+                    .setVelcroDutyCycle(Config.velcro.dutyCycle)
+                    .setConveyorDutyCycle(Config.conveyor.dutyCycle);
+            return builder.build();
+        });
     }
 
     public static Sequence reverseIntakingAndFeeder() {
-        SequenceBuilder builder = new SequenceBuilder("Reverse intaking");
-        // Wait for the intake to extend before turning motor
-        builder.then().deployIntake();
-        // Reverse one feeder early to release balls out of sync and reduce jams
-        builder.then().setConveyorDutyCycle(0).setFeederDutyCycle(-Config.feeder.dutyCycle, true);
-        builder.then().setDelayDelta(0.5);
-        builder.then().setIntakeRPS(-Config.intake.targetRPS)
-                .setVelcroDutyCycle(-Config.velcro.dutyCycle)
-                .setConveyorDutyCycle(-Config.conveyor.dutyCycle)
-                .setFeederDutyCycle(-Config.feeder.dutyCycle, false);
-        return builder.build();
+        return cached("reverseIntakingAndFeeder", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Reverse intaking");
+            // Wait for the intake to extend before turning motor
+            builder.then().deployIntake();
+            // Reverse one feeder early to release balls out of sync and reduce jams
+            builder.then().setConveyorDutyCycle(0)
+                    .setFeederDutyCycle(-Config.feeder.dutyCycle, true);
+            builder.then().setDelayDelta(0.5);
+            builder.then().setIntakeRPS(-Config.intake.targetRPS)
+                    .setVelcroDutyCycle(-Config.velcro.dutyCycle)
+                    .setConveyorDutyCycle(-Config.conveyor.dutyCycle)
+                    .setFeederDutyCycle(-Config.feeder.dutyCycle, false);
+            return builder.build();
+        });
     }
 
     public static Sequence ejectSingleBall(boolean ejectLeft) {
-        SequenceBuilder builder =
-                new SequenceBuilder("Eject " + (ejectLeft ? "left" : "right") + "side intaking");
-        builder.then().setHoodAngle(Config.shooter.hood.resetAngle)
-                .setShooterRPS(Config.shooter.speed.ejectRPS);
-        builder.then().waitForHood().waitForShooter();
-        builder.then().setConveyorDutyCycle(Config.conveyor.dutyCycle)
-                .setFeederDutyCycle(Config.feeder.dutyCycle, ejectLeft);
-        return builder.build();
+        return cached(List.of("ejectSingleBall", ejectLeft), () -> {
+            SequenceBuilder builder = new SequenceBuilder(
+                    "Eject " + (ejectLeft ? "left" : "right") + "side intaking");
+            builder.then().setHoodAngle(Config.shooter.hood.resetAngle)
+                    .setShooterRPS(Config.shooter.speed.ejectRPS);
+            builder.then().waitForHood().waitForShooter();
+            builder.then().setConveyorDutyCycle(Config.conveyor.dutyCycle)
+                    .setFeederDutyCycle(Config.feeder.dutyCycle, ejectLeft);
+            return builder.build();
+        });
     }
 
     public static Sequence stopIntaking() {
-        SequenceBuilder builder = new SequenceBuilder("Stop intaking");
-        builder.then().setIntakeRPS(0).setVelcroDutyCycle(0);
-        builder.then().setConveyorDutyCycle(Config.conveyor.idleDutyCycle);
-        builder.createInterruptState();
-        return builder.build();
+        return cached("stopIntaking", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Stop intaking");
+            builder.then().setIntakeRPS(0).setVelcroDutyCycle(0);
+            builder.then().setConveyorDutyCycle(Config.conveyor.idleDutyCycle);
+            builder.createInterruptState();
+            return builder.build();
+        });
     }
 
     // This is needed after reversing the intake + feeders, and should only be used when the
     // feeders were running so as to not interfere with the shooter when the driver stops intaking
     public static Sequence stopIntakingAndFeeder() {
-        SequenceBuilder builder = new SequenceBuilder("Stop intaking and feeder");
-        builder.then().setIntakeRPS(0).setVelcroDutyCycle(0).setFeederDutyCycle(0, true)
-                .setFeederDutyCycle(0, false);
-        builder.then().setConveyorDutyCycle(Config.conveyor.idleDutyCycle);
-        builder.createInterruptState();
-        return builder.build();
+        return cached("stopIntakingAndFeeder", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Stop intaking and feeder");
+            builder.then().setIntakeRPS(0).setVelcroDutyCycle(0).setFeederDutyCycle(0, true)
+                    .setFeederDutyCycle(0, false);
+            builder.then().setConveyorDutyCycle(Config.conveyor.idleDutyCycle);
+            builder.createInterruptState();
+            return builder.build();
+        });
     }
 
     public static Sequence raiseIntake() {
-        SequenceBuilder builder = new SequenceBuilder("Raise intake");
-        builder.then().stowIntake();
-        return builder.build();
+        return cached("raiseIntake", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Raise intake");
+            builder.then().stowIntake();
+            return builder.build();
+        });
     }
 
     // Testing methods
     public static Sequence startIntakingNoConveyor() {
-        SequenceBuilder builder = new SequenceBuilder("Start Intaking only");
-        builder.then().deployIntake();
-        builder.then().setIntakeRPS(Config.intake.targetRPS)
-                .setVelcroDutyCycle(Config.velcro.dutyCycle);
-        return builder.build();
+        return cached("startIntakingNoConveyor", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Start Intaking only");
+            builder.then().deployIntake();
+            builder.then().setIntakeRPS(Config.intake.targetRPS)
+                    .setVelcroDutyCycle(Config.velcro.dutyCycle);
+            return builder.build();
+        });
     }
 
     public static Sequence stopIntakingNoConveyor() {
-        SequenceBuilder builder = new SequenceBuilder("Stop intaking only");
-        builder.then().setIntakeRPS(0).setVelcroDutyCycle(0);
-        builder.createInterruptState();
-        return builder.build();
+        return cached("stopIntakingNoConveyor", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Stop intaking only");
+            builder.then().setIntakeRPS(0).setVelcroDutyCycle(0);
+            builder.createInterruptState();
+            return builder.build();
+        });
     }
 
     public static Sequence reverseIntakingNoConveyor() {
-        SequenceBuilder builder = new SequenceBuilder("Reverse intaking only");
-        builder.then().setIntakeRPS(-Config.intake.targetRPS)
-                .setVelcroDutyCycle(-Config.velcro.dutyCycle);
-        return builder.build();
+        return cached("reverseIntakingNoConveyor", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Reverse intaking only");
+            builder.then().setIntakeRPS(-Config.intake.targetRPS)
+                    .setVelcroDutyCycle(-Config.velcro.dutyCycle);
+            return builder.build();
+        });
     }
 
     public static Sequence startConveyor() {
-        SequenceBuilder builder = new SequenceBuilder("Start conveyor");
-        builder.then().setConveyorDutyCycle(Config.conveyor.dutyCycle);
-        return builder.build();
+        return cached("startConveyor", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Start conveyor");
+            builder.then().setConveyorDutyCycle(Config.conveyor.dutyCycle);
+            return builder.build();
+        });
     }
 
     public static Sequence reverseConveyor() {
-        SequenceBuilder builder = new SequenceBuilder("Reverse conveyor");
-        builder.then().setConveyorDutyCycle(-Config.conveyor.dutyCycle);
-        return builder.build();
+        return cached("reverseConveyor", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Reverse conveyor");
+            builder.then().setConveyorDutyCycle(-Config.conveyor.dutyCycle);
+            return builder.build();
+        });
     }
 
     public static Sequence stopConveyor() {
-        SequenceBuilder builder = new SequenceBuilder("Stop conveyor");
-        builder.then().setConveyorDutyCycle(0);
-        return builder.build();
+        return cached("stopConveyor", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Stop conveyor");
+            builder.then().setConveyorDutyCycle(0);
+            return builder.build();
+        });
     }
 
     /**
@@ -218,34 +297,41 @@ public class Sequences {
      * set to zero It sets the LEDs to purple if this happens
      */
     public static Sequence startShooting() {
-        SequenceBuilder builder = new SequenceBuilder("Start Shooting");
-        // Another sequence should have set the shooter speed and hood position already
-        builder.then().setConveyorDutyCycle(Config.conveyor.dutyCycle);
-        builder.then().setGamepadRumbleIntensity(0);
-        // Don't wait for shooter here. The hood is likely slower and we trust the operator to shoot
-        // at the right time. (Rumble on the gamepad will indicate when the shooter is ready.)
-        builder.then().waitForHood(); // .waitForShooter();
-        builder.then().setFeederDutyCycle(Config.feeder.dutyCycle, true);
-        builder.then().setDelayDelta(Config.feeder.leftRightDelay);
-        builder.then().setFeederDutyCycle(Config.feeder.dutyCycle, false);
-
-        return builder.build();
+        return cached("startShooting", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Start Shooting");
+            // Another sequence should have set the shooter speed and hood position already
+            builder.then().setConveyorDutyCycle(Config.conveyor.dutyCycle);
+            builder.then().setGamepadRumbleIntensity(0);
+            // Don't wait for shooter here. The hood is likely slower and we trust the operator to
+            // shoot at the right time. (Rumble on the gamepad will indicate when the shooter is
+            // ready.)
+            builder.then().waitForHood(); // .waitForShooter();
+            builder.then().setFeederDutyCycle(Config.feeder.dutyCycle, true);
+            builder.then().setDelayDelta(Config.feeder.leftRightDelay);
+            builder.then().setFeederDutyCycle(Config.feeder.dutyCycle, false);
+
+            return builder.build();
+        });
     }
 
     public static Sequence stopShooting() {
-        SequenceBuilder builder = new SequenceBuilder("Stop shooting");
-        // Turn off everything.
-        builder.then().setShooterRPS(0).setFeederDutyCycle(0, true).setFeederDutyCycle(0, false)
-                .setConveyorDutyCycle(Config.conveyor.idleDutyCycle)
-                .setHoodAngle(Config.shooter.hood.resetAngle).setGamepadRumbleIntensity(0);
-        builder.createInterruptState();
-        return builder.build();
+        return cached("stopShooting", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Stop shooting");
+            // Turn off everything.
+            builder.then().setShooterRPS(0).setFeederDutyCycle(0, true).setFeederDutyCycle(0, false)
+                    .setConveyorDutyCycle(Config.conveyor.idleDutyCycle)
+                    .setHoodAngle(Config.shooter.hood.resetAngle).setGamepadRumbleIntensity(0);
+            builder.createInterruptState();
+            return builder.build();
+        });
     }
 
     public static Sequence startDriveByVision() {
-        SequenceBuilder builder = new SequenceBuilder("Start drive by vision");
-        builder.then().doVisionDrive();
-        return builder.build();
+        return cached("startDriveByVision", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Start drive by vision");
+            builder.then().doVisionDrive();
+            return builder.build();
+        });
     }
 
     /**
@@ -253,11 +339,13 @@ public class Sequences {
      * Quits as soon as it's aimed.
      */
     public static Sequence visionAim() {
-        SequenceBuilder builder = new SequenceBuilder("Vision aim");
-        builder.then().doVisionAim();
-        // Will move on when the vision target is visible, otherwise it will
-        // give up quickly allowing the rest of the auto routine to run.
-        return builder.build();
+        return cached("visionAim", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Vision aim");
+            builder.then().doVisionAim();
+            // Will move on when the vision target is visible, otherwise it will
+            // give up quickly allowing the rest of the auto routine to run.
+            return builder.build();
+        });
     }
 
     /**
@@ -265,10 +353,12 @@ public class Sequences {
      * target is visible.
      */
     public static Sequence visionAssist() {
-        SequenceBuilder builder = new SequenceBuilder("Vision assist");
-        builder.then().doVisionAssist();
-        // Stay driving in vision assist mode.
-        return builder.build();
+        return cached("visionAssist", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Vision assist");
+            builder.then().doVisionAssist();
+            // Stay driving in vision assist mode.
+            return builder.build();
+        });
     }
 
     public static Sequence constantDrivePower(double power) {
@@ -283,37 +373,47 @@ public class Sequences {
      * This sequence runs the drivebase forwards for a brief moment allowing us to start swinging
      */
     public static Sequence unstickWheelsAfterClimb() {
-        SequenceBuilder builder = new SequenceBuilder("Unstick wheels after climb");
-        builder.then().setDrivebasePower(0.22);
-        builder.then().setDelayDelta(0.5); // Can't be too long otherwise we'll get stuck on the
-                                           // back wheels
-        builder.then().doDefaultDrive();
-        return builder.build();
+        return cached("unstickWheelsAfterClimb", () -> {
+            SequenceBuilder builder = new SequenceBuilder("Unstick wheels after climb");
+            builder.then().setDrivebasePower(0.22);
+            builder.then().setDelayDelta(0.5); // Can't be too long otherwise we'll get stuck on the
+                                               // back wheels
+            builder.then().doDefaultDrive();
+            return builder.build();
+        });
     }
 
     public static Sequence extendClimber(boolean left) {
-        SequenceBuilder builder = new SequenceBuilder("Extend climber");
-        builder.then().setClimberDutyCycle(Config.climber.dutyCycle, left);
-        return builder.build();
+        return cached(List.of("extendClimber", left), () -> {
+            SequenceBuilder builder = new SequenceBuilder("Extend climber");
+            builder.then().setClimberDutyCycle(Config.climber.dutyCycle, left);
+            return builder.build();
+        });
     }
 
     public static Sequence retractClimber(boolean left) {
-        SequenceBuilder builder = new SequenceBuilder("Retract climber");
-        builder.then().setClimberDutyCycle(-Config.climber.dutyCycle, left);
-        return builder.build();
+        return cached(List.of("retractClimber", left), () -> {
+            SequenceBuilder builder = new SequenceBuilder("Retract climber");
+            builder.then().setClimberDutyCycle(-Config.climber.dutyCycle, left);
+            return builder.build();
+        });
     }
 
     public static Sequence stopClimber(boolean left) {
-        SequenceBuilder builder = new SequenceBuilder("Stop climber");
-        builder.then().setClimberDutyCycle(0, left);
-        builder.createInterruptState();
-        return builder.build();
+        return cached(List.of("stopClimber", left), () -> {
+            SequenceBuilder builder = new SequenceBuilder("Stop climber");
+            builder.then().setClimberDutyCycle(0, left);
+            builder.createInterruptState();
+            return builder.build();
+        });
     }
 
     public static Sequence setLEDColour(LEDColour c) {
-        SequenceBuilder builder = new SequenceBuilder("set LEDS to " + c);
-        builder.then().setColour(c);
-        return builder.build();
+        return cached(List.of("setLEDColour", c), () -> {
+            SequenceBuilder builder = new SequenceBuilder("set LEDS to " + c);
+            builder.then().setColour(c);
+            return builder.build();
+        });
     }
 
     // For testing. Needs to be at the end of the file.
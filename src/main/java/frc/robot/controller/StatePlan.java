@@ -0,0 +1,128 @@
+package frc.robot.controller;
+
+
+
+import edu.wpi.first.math.geometry.Pose2d;
+import frc.robot.interfaces.Drivebase.DriveRoutineParameters;
+import frc.robot.lib.LEDColour;
+import frc.robot.lib.TimeAction;
+import org.strongback.components.Solenoid.Position;
+
+/**
+ * A State compiled into the form the SequenceRunner uses to apply it.
+ *
+ * Which fields are set is held in a bitmask, the numbers are unboxed into an
+ * array of doubles and what needs to be waited on is worked out up front, so
+ * applying a state and checking if it has finished doesn't need to unbox or
+ * allocate anything.
+ *
+ * Built once per state by SequenceBuilder.build().
+ */
+final class StatePlan {
+    // Bits in fields, one per field in State that is written to a subsystem.
+    static final long kDrive = 1L << 0;
+    static final long kCurrentPose = 1L << 1;
+    static final long kIntakePosition = 1L << 2;
+    static final long kIntakeRPS = 1L << 3;
+    static final long kVelcroDutyCycle = 1L << 4;
+    static final long kConveyorDutyCycle = 1L << 5;
+    static final long kShooterRPS = 1L << 6;
+    static final long kFeederLeftDutyCycle = 1L << 7;
+    static final long kFeederRightDutyCycle = 1L << 8;
+    static final long kHoodAngle = 1L << 9;
+    static final long kLEDColour = 1L << 10;
+    static final long kClimberLeftDutyCycle = 1L << 11;
+    static final long kClimberRightDutyCycle = 1L << 12;
+    static final long kGamepadRumble = 1L << 13;
+    private static final int kNumFields = 14;
+
+    // Bits in waits, one per thing that has to finish before the state is done.
+    static final int kWaitIntake = 1 << 0;
+    static final int kWaitShooter = 1 << 1;
+    static final int kWaitHood = 1 << 2;
+    static final int kWaitDrive = 1 << 3;
+    static final int kWaitTime = 1 << 4;
+
+    // The state this was compiled from, for logging.
+    final State state;
+    final long fields;
+    final int waits;
+    // The numeric fields, indexed by the field's bit number.
+    private final double[] targets = new double[kNumFields];
+    final DriveRoutineParameters drive;
+    final Pose2d currentPose;
+    final Position intakePosition;
+    final LEDColour ledColour;
+    // When to move on to the next state, only set if kWaitTime is set.
+    final TimeAction timeAction;
+
+    StatePlan(State state) {
+        this.state = state;
+        drive = state.drive;
+        currentPose = state.currentPose;
+        intakePosition = state.intakePosition;
+        ledColour = state.ledColour;
+        timeAction = state.timeAction;
+
+        long fields = 0;
+        fields |= set(kDrive, drive);
+        fields |= set(kCurrentPose, currentPose);
+        fields |= set(kIntakePosition, intakePosition);
+        fields |= set(kIntakeRPS, state.intakeRPS);
+        fields |= set(kVelcroDutyCycle, state.velcroDutyCycle);
+        fields |= set(kConveyorDutyCycle, state.conveyorDutyCycle);
+        fields |= set(kShooterRPS, state.shooterRPS);
+        fields |= set(kFeederLeftDutyCycle, state.feederLeftDutyCycle);
+        fields |= set(kFeederRightDutyCycle, state.feederRightDutyCycle);
+        fields |= set(kHoodAngle, state.hoodAngle);
+        fields |= set(kLEDColour, ledColour);
+        fields |= set(kClimberLeftDutyCycle, state.climberLeftDutyCycle);
+        fields |= set(kClimberRightDutyCycle, state.climberRightDutyCycle);
+        fields |= set(kGamepadRumble, state.gamepadRumbleIntensity);
+        this.fields = fields;
+
+        int waits = 0;
+        if (intakePosition != null) {
+            waits |= kWaitIntake;
+        }
+        if (state.shooterUpToSpeed != null) {
+            waits |= kWaitShooter;
+        }
+        if (state.hoodAtTarget != null) {
+            waits |= kWaitHood;
+        }
+        if (drive != null) {
+            waits |= kWaitDrive;
+        }
+        if (timeAction != null) {
+            waits |= kWaitTime;
+        }
+        this.waits = waits;
+    }
+
+    /**
+     * @return bit if value is set, storing it in targets if it's a number.
+     */
+    private long set(long bit, Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Double) {
+            targets[Long.numberOfTrailingZeros(bit)] = (Double) value;
+        }
+        return bit;
+    }
+
+    /**
+     * @param bit the field, eg kIntakeRPS.
+     * @return the value of a numeric field. Only valid if the field is set.
+     */
+    double target(long bit) {
+        return targets[Long.numberOfTrailingZeros(bit)];
+    }
+
+    @Override
+    public String toString() {
+        return state.toString();
+    }
+}
@@ -3,6 +3,7 @@ package frc.robot.interfaces;
 
 
 import frc.robot.lib.log.Log;
+import java.util.function.Supplier;
 
 public interface LogHelper {
     public String getName();
@@ -17,6 +18,15 @@ public interface LogHelper {
         Log.info(getName(), message, args);
     }
 
+    /**
+     * Logs to disk and console. Only builds the message if info is enabled.
+     * 
+     * @param message Supplies the message to log
+     */
+    public default void info(Supplier<String> message) {
+        Log.info(getName(), message);
+    }
+
     /**
      * Logs to disk only. For high volume debug messages
      *
@@ -27,6 +37,23 @@ public interface LogHelper {
         Log.debug(getName(), message, args);
     }
 
+    /**
+     * Logs to disk only. Only builds the message if debug is enabled, so use for expensive
+     * messages.
+     *
+     * @param message Supplies the message to log
+     */
+    public default void debug(Supplier<String> message) {
+        Log.debug(getName(), message);
+    }
+
+    /**
+     * @return true if debug messages from this subsystem will be logged.
+     */
+    public default boolean isDebugEnabled() {
+        return Log.isDebugEnabled(getName());
+    }
+
     /**
      * Logs to disk and console. For important errors Messages.
      * 
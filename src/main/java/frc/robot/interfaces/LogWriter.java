@@ -2,6 +2,7 @@ package frc.robot.interfaces;
 
 
 
+import frc.robot.lib.log.Log;
 import java.nio.file.Path;
 
 /**
@@ -17,6 +18,24 @@ public interface LogWriter {
      */
     public void write(String message);
 
+    /**
+     * Writes a single log message. By default the message is formatted as text, but writers can
+     * choose to store the unformatted arguments instead.
+     * 
+     * @param level type of the message.
+     * @param time seconds since the logs were restarted.
+     * @param system Name of the subsystem (used for logging identification)
+     * @param message format string for the message.
+     * @param args arguments to the message format string
+     * @return the number of bytes written.
+     */
+    public default int write(Log.Level level, double time, String system, String message,
+            Object[] args) {
+        String text = level.format(time, system, message, args);
+        write(text);
+        return text.length();
+    }
+
     /**
      * Flush any writes to disk.
      */
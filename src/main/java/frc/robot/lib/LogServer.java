@@ -3,14 +3,14 @@ package frc.robot.lib;
 
 
 import frc.robot.interfaces.LogHelper;
+import frc.robot.lib.chart.Chart;
+import frc.robot.lib.chart.ChartStream;
 import frc.robot.lib.log.Log;
-import java.io.File;
+import frc.robot.lib.log.LogBroadcast;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
-import org.apache.commons.io.input.Tailer;
-import org.apache.commons.io.input.TailerListener;
-import org.apache.commons.io.input.TailerListenerAdapter;
 import org.java_websocket.WebSocket;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
@@ -19,33 +19,28 @@ import org.java_websocket.server.WebSocketServer;
  * A websocket server to publish new latest log messages to all websocket
  * clients. This is used to provide a live feed of the latest log messages for live debugging
  * purposes. Otherwise, the log messages are only available in the log file.
+ *
+ * The lines come from the LogBroadcast in memory rather than reading the log file back, so any
+ * number of clients can connect without reading the flash drive. Each new client is sent the
+ * last few lines first. Clients can send a text message to only get some of the lines, eg
+ * "level=Info Drivebase Shooter*". No subsystems means all of them.
+ *
+ * Clients that connect to /chart (eg ws://10.31.32.2:5803/chart) are instead sent the chart
+ * samples live as binary frames. They send a text message saying which columns they want and how
+ * often, eg "Drive/* TrajectoryDrive/* rate=10". See ChartStream for the frame format.
  */
 public class LogServer extends WebSocketServer implements LogHelper {
     /**
-     * Create a map that stores the Java location of the client connection as a
-     * string stores and also the Tailer thread so that it can be referenced if it needs to be
-     * closed.
+     * The log subscription for each client, by the client's connection.
      */
-    Map<String, Tailer> tailers = new HashMap<String, Tailer>();
+    Map<String, LogBroadcast.Subscription> logClients =
+            new HashMap<String, LogBroadcast.Subscription>();
 
     /**
-     * Class is used to read and broadcast new lines in log files for every new
-     * client that connects.
+     * The chart subscription for each client connected to the chart endpoint.
      */
-    class ConnectionListener extends TailerListenerAdapter {
-        WebSocket conn;
-
-        public ConnectionListener(WebSocket conn) {
-            this.conn = conn;
-        }
-
-        /**
-         * Gets called on every new line detected by the Tailer instance
-         */
-        public void handle(String line) {
-            conn.send(line);
-        }
-    }
+    Map<String, ChartStream.Subscription> chartClients =
+            new HashMap<String, ChartStream.Subscription>();
 
     public LogServer(InetSocketAddress address) {
         super(address);
@@ -56,30 +51,92 @@ public class LogServer extends WebSocketServer implements LogHelper {
 
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
-        File logFile = Log.writer.getLinkPath("latest", "Latest").toFile();
-        if (logFile.exists()) {
-            TailerListener connListener = new ConnectionListener(conn);
-            Tailer tailer = Tailer.create(logFile, connListener);
-            tailers.put(conn.toString(), tailer);
-        } else {
-            conn.send(
-                    "Log file does not yet exist. Please wait for the log file to be created and then reconnect.");
-            info("Log file does not yet exist");
+        if (handshake.getResourceDescriptor().startsWith("/chart")) {
+            ChartStream.Subscription subscription =
+                    Chart.getStream().subscribe(new ChartStream.Client() {
+                        @Override
+                        public boolean isBusy() {
+                            // Skip samples rather than queue them up for a slow client.
+                            return conn.hasBufferedData();
+                        }
+
+                        @Override
+                        public void send(ByteBuffer frame) {
+                            if (conn.isOpen()) {
+                                conn.send(frame);
+                            }
+                        }
+                    });
+            synchronized (chartClients) {
+                chartClients.put(conn.toString(), subscription);
+            }
+            return;
+        }
+        LogBroadcast.Subscription subscription =
+                Log.getBroadcast().subscribe(new LogBroadcast.Client() {
+                    @Override
+                    public boolean isBusy() {
+                        // Wait for the last lines to go rather than queue up more.
+                        return conn.hasBufferedData();
+                    }
+
+                    @Override
+                    public void send(String line) {
+                        if (conn.isOpen()) {
+                            conn.send(line);
+                        }
+                    }
+                });
+        synchronized (logClients) {
+            logClients.put(conn.toString(), subscription);
         }
     }
 
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        if (!tailers.containsKey(conn.toString())) {
-            error("Tried to remove a non-existent socket");
-            return;
+        synchronized (chartClients) {
+            ChartStream.Subscription subscription = chartClients.remove(conn.toString());
+            if (subscription != null) {
+                Chart.getStream().unsubscribe(subscription);
+                return;
+            }
         }
-        tailers.get(conn.toString()).stop();
-        tailers.remove(conn.toString());
+        synchronized (logClients) {
+            LogBroadcast.Subscription subscription = logClients.remove(conn.toString());
+            if (subscription != null) {
+                Log.getBroadcast().unsubscribe(subscription);
+                return;
+            }
+        }
+        error("Tried to remove a non-existent socket");
     }
 
+    /**
+     * Clients say which lines or chart columns they want, eg "level=Info Drivebase" or
+     * "Drive/* rate=10".
+     */
     @Override
-    public void onMessage(WebSocket conn, String message) {}
+    public void onMessage(WebSocket conn, String message) {
+        try {
+            ChartStream.Subscription chartSubscription;
+            synchronized (chartClients) {
+                chartSubscription = chartClients.get(conn.toString());
+            }
+            if (chartSubscription != null) {
+                chartSubscription.request(message);
+                return;
+            }
+            LogBroadcast.Subscription logSubscription;
+            synchronized (logClients) {
+                logSubscription = logClients.get(conn.toString());
+            }
+            if (logSubscription != null) {
+                logSubscription.request(message);
+            }
+        } catch (IllegalArgumentException e) {
+            conn.close(1003, "Bad subscription: " + e.getMessage());
+        }
+    }
 
     /**
      * When the server closes unexpectedly onError is called in addition to onClose.
@@ -38,11 +38,11 @@ public class PowerMonitor implements DashboardUpdater, LogHelper { // no interfa
             return;
         }
         info("PDP enabled");
-        Chart.register(pdp::getTotalEnergy, "%s/totalEnergy", name);
+        Chart.register(pdp::getTotalEnergy, Chart.Rate.SLOW, "%s/totalEnergy", name);
         Chart.register(pdp::getTotalPower, "%s/totalPower", name);
         Chart.register(pdp::getTotalCurrent, "%s/totalCurrent", name);
-        Chart.register(pdp::getTemperature, "%s/temperature", name);
-        Chart.register(pdp::getVoltage, "%s/inputVoltage", name);
+        Chart.register(pdp::getTemperature, Chart.Rate.SLOW, 0.5, "%s/temperature", name);
+        Chart.register(pdp::getVoltage, Chart.Rate.NORMAL, 0.05, "%s/inputVoltage", name);
 
         for (int i = 0; i < channelsToMonitor.length; i++) {
             final int channel = channelsToMonitor[i];
@@ -0,0 +1,41 @@
+package frc.robot.lib;
+
+
+
+import frc.robot.Config;
+import frc.robot.lib.log.Log;
+import org.strongback.Executable;
+import org.strongback.Strongback;
+import org.strongback.components.NetworkTableHelper;
+
+/**
+ * Allows the log levels to be changed on the fly by editing the "levels" value in the Log network
+ * table, eg "Info,Drivebase=Debug" to only log debug messages from the drivebase. The starting
+ * value comes from the config file. See Log.setLevels() for the format.
+ */
+public class TunableLogLevels implements Executable {
+    private final NetworkTableHelper networkTable;
+    private String levels;
+
+    public static void tuneLevels(NetworkTableHelper networkTable) {
+        var tunable = new TunableLogLevels(networkTable);
+        Strongback.executor().register(tunable, Config.intervals.dashboardUpdatePeriod);
+    }
+
+    public TunableLogLevels(NetworkTableHelper networkTable) {
+        this.networkTable = networkTable;
+        levels = Config.logging.levels.initial;
+        Log.setLevels(levels);
+    }
+
+    // Checks for changes once every dashboard update period.
+    @Override
+    public void execute(long timeInMillis) {
+        String newLevels = networkTable.get("levels", levels);
+        if (newLevels.equals(levels)) {
+            return;
+        }
+        levels = newLevels;
+        Log.setLevels(levels);
+    }
+}
@@ -4,7 +4,6 @@ package frc.robot.lib;
 
 import frc.robot.Config;
 import org.strongback.Executable;
-import org.strongback.Executor.Priority;
 import org.strongback.Strongback;
 import org.strongback.components.Motor;
 import org.strongback.components.NetworkTableHelper;
@@ -22,13 +21,12 @@ import org.strongback.components.PIDF;
 class TunableMotor implements Executable {
     private final Motor motor;
     private final NetworkTableHelper networkTable;
-    private double lastUpdateSec = 0;
     private final PIDF pidf;
 
     public static void tuneMotor(Motor motor, PIDF pidf, NetworkTableHelper networkTable) {
         var tunable = new TunableMotor(motor, pidf, networkTable);
         pidf.saveTo(networkTable);
-        Strongback.executor().register(tunable, Priority.LOW);
+        Strongback.executor().register(tunable, Config.intervals.dashboardUpdatePeriod);
     }
 
     public TunableMotor(Motor motor, PIDF pidf, NetworkTableHelper networkTable) {
@@ -37,17 +35,9 @@ class TunableMotor implements Executable {
         this.networkTable = networkTable;
     }
 
-    // Executes the command 1 time every 1 second.
+    // Called once every dashboard update period.
     @Override
     public void execute(long timeInMillis) {
-        double now = Strongback.timeSystem().currentTime();
-        if (now < lastUpdateSec + Config.intervals.dashboardUpdateSec)
-            return;
-        update();
-        lastUpdateSec = now;
-    }
-
-    private void update() {
         pidf.readFrom(networkTable);
         motor.setPIDF(0, pidf);
     }
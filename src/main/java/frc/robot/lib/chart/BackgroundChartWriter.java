@@ -0,0 +1,252 @@
+package frc.robot.lib.chart;
+
+
+
+import frc.robot.lib.log.Log;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes the encoding and writing of chart rows off the executor thread.
+ *
+ * The executor thread only copies each row of values into a preallocated block. When the block
+ * is full, or has been filling for long enough, it's handed to this thread, which passes the rows
+ * to the real ChartWriter, and the executor starts filling a spare block. With two blocks this
+ * thread writes one while the executor fills the other.
+ *
+ * If this thread falls behind (eg the USB flash drive is slow) and there is no spare block the
+ * row is dropped and counted rather than making the executor wait. A warning is logged once
+ * this thread catches up.
+ */
+class BackgroundChartWriter extends Thread implements ChartWriter {
+    private final ChartWriter writer;
+    private final int blockCount;
+    private final int rowsPerBlock;
+    private final long handoffNanos;
+    private final long pollNanos;
+    // Blocks waiting to be written, in order, and blocks that can be filled.
+    private final ArrayBlockingQueue<Block> full;
+    private final ArrayBlockingQueue<Block> spare;
+    // The header, until it has been written by this thread.
+    private volatile Header header = null;
+    private volatile boolean closing = false;
+
+    // Only used by the thread calling writeRow().
+    private Block filling = null;
+    private long fillingStartNanos = 0;
+    private volatile boolean overrunning = false;
+
+    // Only used by this thread.
+    private double[] row = new double[0];
+    private long droppedReported = 0;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong overrunCount = new AtomicLong();
+
+    /**
+     * @param writer the writer to encode and write the rows.
+     * @param blockCount how many blocks of rows, two to double buffer.
+     * @param rowsPerBlock how many rows are copied into a block before handing it over.
+     * @param handoffPeriodSec hand over a block that isn't full after this long so that the rows
+     *        get to the file.
+     * @param pollPeriodSec how long to wait before checking for a block again.
+     */
+    BackgroundChartWriter(ChartWriter writer, int blockCount, int rowsPerBlock,
+            double handoffPeriodSec, double pollPeriodSec) {
+        this.writer = writer;
+        this.blockCount = blockCount;
+        this.rowsPerBlock = rowsPerBlock;
+        this.handoffNanos = (long) (handoffPeriodSec * 1e9);
+        this.pollNanos = (long) (pollPeriodSec * 1e9);
+        full = new ArrayBlockingQueue<>(blockCount);
+        spare = new ArrayBlockingQueue<>(blockCount);
+        setName("ChartWriter");
+        setDaemon(true); // Don't stop the JVM from exiting.
+        setPriority(Thread.MIN_PRIORITY);
+        start();
+    }
+
+    /**
+     * Allocates the blocks now the number of columns is known. The header is written by this
+     * thread before any rows.
+     */
+    @Override
+    public void writeHeader(String[] names, double[] deadbands, ChartSchedule schedule) {
+        for (int i = 0; i < blockCount; i++) {
+            spare.add(new Block(rowsPerBlock, names.length));
+        }
+        header = new Header(names, deadbands, schedule);
+    }
+
+    /**
+     * Copy the row into the current block. Never blocks.
+     */
+    @Override
+    public void writeRow(long cycle, double time, double[] values) {
+        if (filling == null) {
+            filling = spare.poll();
+            if (filling == null) {
+                // Every block is waiting to be written.
+                droppedCount.incrementAndGet();
+                if (!overrunning) {
+                    overrunning = true;
+                    overrunCount.incrementAndGet();
+                }
+                return;
+            }
+            overrunning = false;
+            filling.rows = 0;
+            fillingStartNanos = System.nanoTime();
+        }
+        filling.add(cycle, time, values);
+        if (filling.rows == rowsPerBlock
+                || System.nanoTime() - fillingStartNanos >= handoffNanos) {
+            handoff();
+        }
+    }
+
+    /**
+     * Hand over the rows copied so far to be written. Doesn't wait for them to be written.
+     */
+    @Override
+    public void flush() {
+        if (filling != null && filling.rows > 0) {
+            handoff();
+        }
+    }
+
+    private void handoff() {
+        // Can't fail, there are only blockCount blocks.
+        full.add(filling);
+        filling = null;
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * Write everything handed over, then close the file. Waits for this thread to finish.
+     * Call flush() first from the thread calling writeRow() to include the last rows.
+     */
+    @Override
+    public void close() {
+        closing = true;
+        LockSupport.unpark(this);
+        try {
+            join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void createSymbolicLink(String dir, String prefix) {
+        writer.createSymbolicLink(dir, prefix);
+    }
+
+    /**
+     * @return the number of rows thrown away because they were sampled faster than they could
+     *         be written.
+     */
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return the number of times all the blocks were waiting to be written.
+     */
+    @Override
+    public long getOverrunCount() {
+        return overrunCount.get();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                writeFull();
+                if (closing) {
+                    writeFull(); // Anything handed over while checking.
+                    writeHeaderIfNeeded();
+                    writer.close();
+                    return;
+                }
+                LockSupport.parkNanos(pollNanos);
+            } catch (Throwable e) {
+                // Don't let the thread die, otherwise every row will be dropped.
+                System.err.println("Exception while writing chart rows:");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Write out all the blocks that have been handed over and make them available again.
+     */
+    private void writeFull() {
+        Block block;
+        while ((block = full.poll()) != null) {
+            writeHeaderIfNeeded();
+            for (int i = 0; i < block.rows; i++) {
+                System.arraycopy(block.values, i * row.length, row, 0, row.length);
+                writer.writeRow(block.cycles[i], block.times[i], row);
+            }
+            block.rows = 0;
+            spare.add(block);
+        }
+        long dropped = droppedCount.get();
+        if (!overrunning && dropped != droppedReported) {
+            // Caught up again, record how many rows were lost.
+            Log.warning("Chart", "Chart writer fell behind, dropped %d rows (%d in total)",
+                    dropped - droppedReported, dropped);
+            droppedReported = dropped;
+        }
+    }
+
+    private void writeHeaderIfNeeded() {
+        Header pending = header;
+        if (pending == null) {
+            return;
+        }
+        header = null;
+        row = new double[pending.names.length];
+        writer.writeHeader(pending.names, pending.deadbands, pending.schedule);
+    }
+
+    /**
+     * Preallocated rows of samples.
+     */
+    private static class Block {
+        final long[] cycles;
+        final double[] times;
+        final double[] values; // rowsPerBlock rows of columns values.
+        final int columns;
+        int rows = 0;
+
+        Block(int rowsPerBlock, int columns) {
+            this.cycles = new long[rowsPerBlock];
+            this.times = new double[rowsPerBlock];
+            this.values = new double[rowsPerBlock * columns];
+            this.columns = columns;
+        }
+
+        void add(long cycle, double time, double[] row) {
+            cycles[rows] = cycle;
+            times[rows] = time;
+            System.arraycopy(row, 0, values, rows * columns, columns);
+            rows++;
+        }
+    }
+
+    private static class Header {
+        final String[] names;
+        final double[] deadbands;
+        final ChartSchedule schedule;
+
+        Header(String[] names, double[] deadbands, ChartSchedule schedule) {
+            this.names = names;
+            this.deadbands = deadbands;
+            this.schedule = schedule;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package frc.robot.lib.chart;
+
+
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a chart written by BinaryChartWriter.
+ *
+ * Whichever encoding the file uses, next() gives a dense row of every column's value at each
+ * sample time. Columns that weren't written in a row keep the last value read.
+ */
+class BinaryChartReader {
+    private final DataInputStream in;
+    private final int version;
+    private final boolean singlePrecision;
+    private final boolean changesOnly;
+    private final String[] names;
+    private final double[] deadbands;
+    // Which cycles each column was sampled on. Null for version 1 files where every column is in
+    // every row.
+    private final ChartSchedule schedule;
+    private final ByteBuffer row;
+    private double time;
+    private long cycle;
+
+    BinaryChartReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        int magic = read(4).getInt();
+        if (magic != BinaryChartWriter.MAGIC) {
+            throw new IOException(String.format("Not a binary chart file (magic %08x)", magic));
+        }
+        version = Byte.toUnsignedInt(read(1).get());
+        if (version < 1 || version > BinaryChartWriter.VERSION) {
+            throw new IOException("Unsupported binary chart version " + version);
+        }
+        int type = Byte.toUnsignedInt(read(1).get());
+        if (type != BinaryChartWriter.DOUBLE && type != BinaryChartWriter.FLOAT) {
+            throw new IOException("Unknown value type " + type);
+        }
+        singlePrecision = type == BinaryChartWriter.FLOAT;
+        int encoding = version >= 3 ? Byte.toUnsignedInt(read(1).get()) : BinaryChartWriter.DENSE;
+        if (encoding != BinaryChartWriter.DENSE && encoding != BinaryChartWriter.CHANGES) {
+            throw new IOException("Unknown row encoding " + encoding);
+        }
+        changesOnly = encoding == BinaryChartWriter.CHANGES;
+        double cyclePeriodSec = version >= 2 ? read(8).getDouble() : 0;
+        names = new String[read(4).getInt()];
+        int[] periods = new int[names.length];
+        int[] phases = new int[names.length];
+        deadbands = new double[names.length];
+        for (int i = 0; i < names.length; i++) {
+            int length = Short.toUnsignedInt(read(2).getShort());
+            names[i] = new String(read(length).array(), StandardCharsets.UTF_8);
+            if (version >= 2) {
+                ByteBuffer timebase = read(8);
+                periods[i] = timebase.getInt();
+                phases[i] = timebase.getInt();
+                if (periods[i] <= 0 || phases[i] < 0 || phases[i] >= periods[i]) {
+                    throw new IOException(String.format("Bad timebase for column %s: %d/%d",
+                            names[i], periods[i], phases[i]));
+                }
+            }
+            if (version >= 3) {
+                deadbands[i] = read(8).getDouble();
+            }
+        }
+        schedule = version >= 2 ? new ChartSchedule(periods, phases, cyclePeriodSec) : null;
+        row = ByteBuffer.allocate(4 + 8 + 2 + names.length * (2 + type))
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return the name of each column.
+     */
+    String[] getNames() {
+        return names;
+    }
+
+    /**
+     * @return true if the values were stored as floats.
+     */
+    boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    /**
+     * @return the time of the row last read by next().
+     */
+    double getTime() {
+        return time;
+    }
+
+    /**
+     * @return how far each column had to move before it was written again. Zero if every change
+     *         was written, or the file wasn't written with the changes only encoding.
+     */
+    double[] getDeadbands() {
+        return deadbands;
+    }
+
+    /**
+     * @return true if values were only written when they changed.
+     */
+    boolean isChangesOnly() {
+        return changesOnly;
+    }
+
+    /**
+     * @return the cycle of the row last read by next(). Counts rows in version 1 files.
+     */
+    long getCycle() {
+        return cycle;
+    }
+
+    /**
+     * @return the schedule the columns were sampled on, or null if every column was sampled on
+     *         every row.
+     */
+    ChartSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Read the next row.
+     *
+     * @param values one value per column. The columns sampled on this row are updated, the rest
+     *        are left as they are so they hold the last value read. Callers should start with
+     *        NaN so that columns not yet sampled are blank.
+     * @return false at the end of the file. A file that was cut short (eg the robot lost power)
+     *         ends at the last whole row.
+     */
+    boolean next(double[] values) throws IOException {
+        if (schedule == null) {
+            return nextDense(values);
+        }
+        if (changesOnly) {
+            return nextChanges(values);
+        }
+        try {
+            in.readFully(row.array(), 0, 4 + 8);
+            row.clear();
+            long rowCycle = Integer.toUnsignedLong(row.getInt());
+            int due = 0;
+            for (int i = 0; i < names.length; i++) {
+                if (schedule.isDue(i, rowCycle)) {
+                    due++;
+                }
+            }
+            in.readFully(row.array(), 4 + 8, due * (singlePrecision ? 4 : 8));
+            time = row.getDouble();
+            cycle = rowCycle;
+        } catch (EOFException e) {
+            return false;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (schedule.isDue(i, cycle)) {
+                values[i] = singlePrecision ? row.getFloat() : row.getDouble();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * CHANGES rows: the time and the columns that changed.
+     */
+    private boolean nextChanges(double[] values) throws IOException {
+        int valueBytes = singlePrecision ? 4 : 8;
+        long rowCycle;
+        double rowTime;
+        int count;
+        try {
+            in.readFully(row.array(), 0, 4 + 8 + 2);
+            row.clear();
+            rowCycle = Integer.toUnsignedLong(row.getInt());
+            rowTime = row.getDouble();
+            count = Short.toUnsignedInt(row.getShort());
+            if (count > names.length) {
+                throw new IOException("Corrupt binary chart, row has " + count + " values");
+            }
+            in.readFully(row.array(), 4 + 8 + 2, count * (2 + valueBytes));
+        } catch (EOFException e) {
+            return false;
+        }
+        cycle = rowCycle;
+        time = rowTime;
+        for (int i = 0; i < count; i++) {
+            int column = Short.toUnsignedInt(row.getShort());
+            if (column >= names.length) {
+                throw new IOException("Corrupt binary chart, unknown column " + column);
+            }
+            values[column] = singlePrecision ? row.getFloat() : row.getDouble();
+        }
+        return true;
+    }
+
+    /**
+     * Version 1 rows: the time and every column.
+     */
+    private boolean nextDense(double[] values) throws IOException {
+        int length = 8 + names.length * (singlePrecision ? 4 : 8);
+        try {
+            in.readFully(row.array(), 0, length);
+        } catch (EOFException e) {
+            return false;
+        }
+        row.clear();
+        time = row.getDouble();
+        for (int i = 0; i < names.length; i++) {
+            values[i] = singlePrecision ? row.getFloat() : row.getDouble();
+        }
+        cycle++;
+        return true;
+    }
+
+    /**
+     * Reads the next few bytes of the header.
+     */
+    private ByteBuffer read(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
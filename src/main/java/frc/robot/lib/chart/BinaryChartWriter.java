@@ -0,0 +1,258 @@
+package frc.robot.lib.chart;
+
+
+
+import frc.robot.lib.FileUtil;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes the chart as fixed width binary rows instead of text. Much cheaper than formatting
+ * every value as text on the robot. Convert to the CSV file that the plotly html pages load with
+ * ChartConverter.
+ *
+ * Rows are copied into a preallocated direct buffer which is written to the file when it fills
+ * up or, so that not much is lost if the power is cut, at least every flushPeriodSec.
+ *
+ * Each column records its timebase (period and phase in cycles) in the header and each row only
+ * has the values of the columns sampled on that cycle, so slow columns take less space.
+ *
+ * With the CHANGES encoding a value is only written when it has moved by more than the
+ * column's deadband since it was last written. Most columns (override modes, switches, flags)
+ * are constant for long stretches so this makes the file several times smaller. Each row lists
+ * which columns changed. Rows are still written when nothing has changed so the converted file
+ * has a row for every sample time and steps stay square.
+ *
+ * <pre>
+ * File:   MAGIC VERSION type:u8 encoding:u8 cyclePeriodSec:f64 count:i32 column* row*
+ * column: length:u16 utf8-name period:i32 phase:i32 deadband:f64
+ * row:    cycle:i32 time:f64 value*     if encoding is DENSE, only columns where
+ *                                       cycle % period == phase
+ *       | cycle:i32 time:f64 count:u16 (column:u16 value)*   if encoding is CHANGES
+ * value:  f64 if type is DOUBLE, f32 if type is FLOAT
+ * </pre>
+ *
+ * Everything is little endian.
+ */
+class BinaryChartWriter implements ChartWriter {
+    static final int MAGIC = 0x31544843; // "CHT1" when read as little endian bytes.
+    static final int VERSION = 3;
+    // Value types, the number of bytes in each value.
+    static final int DOUBLE = 8;
+    static final int FLOAT = 4;
+    // Row encodings.
+    static final int DENSE = 0;
+    static final int CHANGES = 1;
+
+    private final String name; // eg data
+    private final String extn; // eg bin
+    private final String baseDir; // All logs are below this directory
+    private final Path filePath;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final boolean singlePrecision;
+    private final boolean changesOnly;
+    private final long flushPeriodNanos;
+    private long lastFlushNanos = System.nanoTime();
+    private ChartSchedule schedule;
+    // For the CHANGES encoding, each column's deadband and the last value written.
+    private double[] deadbands;
+    private double[] written;
+    private int[] changed; // Preallocated list of columns that changed this row.
+    private int changedCount = 0;
+
+    /**
+     * Creates baseDir/data/name_filenum.extn, in the same layout as TimestampedLogWriter.
+     *
+     * @param baseDir Where on the file system to put the logging directories.
+     * @param name the type of data, eg "data"
+     * @param filenum the number of the file. Incremented every start of the code.
+     * @param extn the file extension
+     * @param singlePrecision store values as floats instead of doubles to halve the size.
+     * @param changesOnly only store values that have moved by more than the column's deadband.
+     * @param blockBytes how much to buffer before writing to the file.
+     * @param flushPeriodSec write the buffer to the file at least this often.
+     * @param createLatestLink if false, the file is being created ahead of time and the caller
+     *        will create the Latest symlink when the file starts being used.
+     * @throws IOException
+     */
+    BinaryChartWriter(String baseDir, String name, long filenum, String extn,
+            boolean singlePrecision, boolean changesOnly, int blockBytes, double flushPeriodSec,
+            boolean createLatestLink) throws IOException {
+        this.baseDir = baseDir;
+        this.name = name;
+        this.extn = extn;
+        this.singlePrecision = singlePrecision;
+        this.changesOnly = changesOnly;
+        this.flushPeriodNanos = (long) (flushPeriodSec * 1e9);
+        filePath = Paths.get(baseDir, "data", String.format("%s_%05d.%s", name, filenum, extn));
+        // Ensure the parent directory exists.
+        Files.createDirectories(filePath.getParent());
+        channel = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(blockBytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (createLatestLink) {
+            createSymbolicLink("latest", "Latest");
+        }
+    }
+
+    @Override
+    public void writeHeader(String[] names, double[] deadbands, ChartSchedule schedule) {
+        this.schedule = schedule;
+        this.deadbands = deadbands;
+        written = new double[names.length];
+        Arrays.fill(written, Double.NaN);
+        changed = new int[names.length];
+        int size = 4 + 1 + 1 + 1 + 8 + 4;
+        byte[][] encoded = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            size += 2 + encoded[i].length + 4 + 4 + 8;
+        }
+        ByteBuffer header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.put((byte) VERSION);
+        header.put((byte) (singlePrecision ? FLOAT : DOUBLE));
+        header.put((byte) (changesOnly ? CHANGES : DENSE));
+        header.putDouble(schedule.getCyclePeriodSec());
+        header.putInt(names.length);
+        for (int i = 0; i < names.length; i++) {
+            header.putShort((short) encoded[i].length);
+            header.put(encoded[i]);
+            header.putInt(schedule.getPeriod(i));
+            header.putInt(schedule.getPhase(i));
+            header.putDouble(deadbands[i]);
+        }
+        header.flip();
+        flush();
+        write(header);
+    }
+
+    @Override
+    public void writeRow(long cycle, double time, double[] values) {
+        int valueBytes = singlePrecision ? FLOAT : DOUBLE;
+        int rowBytes;
+        if (changesOnly) {
+            rowBytes = 4 + 8 + 2 + findChanges(cycle, values) * (2 + valueBytes);
+        } else {
+            int due = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (schedule.isDue(i, cycle)) {
+                    due++;
+                }
+            }
+            rowBytes = 4 + 8 + due * valueBytes;
+        }
+        if (buffer.remaining() < rowBytes) {
+            flush();
+            if (buffer.remaining() < rowBytes) {
+                // Bigger than the buffer, write it straight out.
+                ByteBuffer row = ByteBuffer.allocate(rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+                putRow(row, cycle, time, values);
+                row.flip();
+                write(row);
+                return;
+            }
+        }
+        putRow(buffer, cycle, time, values);
+        if (System.nanoTime() - lastFlushNanos >= flushPeriodNanos) {
+            flush();
+        }
+    }
+
+    /**
+     * Works out which of the columns sampled this cycle have moved by more than their deadband
+     * since they were last written, and remembers them as written.
+     *
+     * @return the number of changed columns, listed at the start of changed[].
+     */
+    private int findChanges(long cycle, double[] values) {
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (!schedule.isDue(i, cycle)) {
+                continue;
+            }
+            double value = values[i];
+            double last = written[i];
+            if (Double.doubleToLongBits(value) == Double.doubleToLongBits(last)) {
+                continue; // Exactly the same, including both NaN.
+            }
+            // Always written when changing to or from NaN.
+            if (Math.abs(value - last) <= deadbands[i]) {
+                continue;
+            }
+            written[i] = value;
+            changed[count++] = i;
+        }
+        changedCount = count;
+        return count;
+    }
+
+    private void putRow(ByteBuffer out, long cycle, double time, double[] values) {
+        out.putInt((int) cycle);
+        out.putDouble(time);
+        if (changesOnly) {
+            out.putShort((short) changedCount);
+            for (int i = 0; i < changedCount; i++) {
+                out.putShort((short) changed[i]);
+                putValue(out, values[changed[i]]);
+            }
+            return;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (schedule.isDue(i, cycle)) {
+                putValue(out, values[i]);
+            }
+        }
+    }
+
+    private void putValue(ByteBuffer out, double value) {
+        if (singlePrecision) {
+            out.putFloat((float) value);
+        } else {
+            out.putDouble(value);
+        }
+    }
+
+    @Override
+    public void flush() {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+        lastFlushNanos = System.nanoTime();
+    }
+
+    private void write(ByteBuffer data) {
+        try {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } catch (IOException e) {
+            // nothing to do. If we can't write to the log file it's not a disaster.
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void createSymbolicLink(String dir, String prefix) {
+        FileUtil.createSymbolicLink(
+                Paths.get(baseDir, dir, String.format("%s_%s.%s", prefix, name, extn)), filePath);
+    }
+}
@@ -7,13 +7,16 @@ import frc.robot.interfaces.LogWriter;
 import frc.robot.lib.RobotName;
 import frc.robot.lib.log.Log;
 import frc.robot.lib.log.LogFileNumber;
+import frc.robot.lib.log.LogFileTasks;
 import frc.robot.lib.log.NullLogWriter;
 import frc.robot.lib.log.TimestampedLogWriter;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.concurrent.Future;
 import java.util.function.DoubleSupplier;
 import java.util.function.IntSupplier;
 import org.strongback.Executable;
@@ -24,9 +27,31 @@ import org.strongback.components.ui.DirectionalAxis;
 /**
  * Writes data out in a CSV file for charting. Creates html files for
  * viewing the data via the web server.
+ *
+ * Chart is run every executor cycle. Each column is sampled at its own rate (NORMAL unless
+ * asked otherwise) and the slow columns are spread across the cycles so they aren't all read on
+ * the same cycle.
+ *
+ * The executor only copies the sampled values, the rows are encoded and written to the file by
+ * a BackgroundChartWriter.
  */
 public class Chart implements Executable {
 
+    /**
+     * How often a column is sampled.
+     */
+    public enum Rate {
+        FAST(1), // Every executor cycle, 50Hz.
+        NORMAL(4), // Every fourth cycle, 12.5Hz. What all columns used to be sampled at.
+        SLOW(52); // About once a second, for values that change slowly like temperatures.
+
+        private final int cycles;
+
+        private Rate(int cycles) {
+            this.cycles = cycles;
+        }
+    }
+
     /**
      * Register a data stream for collection to the log.
      * The sample needs to have a method that returns a double which is the data element.
@@ -36,14 +61,65 @@ public class Chart implements Executable {
      * @param format a VarArgs string which evaluates to the name of the data stream
      * @param args Any arguments required for the format varargs
      */
-    public static synchronized void register(DoubleSupplier sample, String format, Object... args) {
+    public static void register(DoubleSupplier sample, String format, Object... args) {
+        register(sample, Rate.NORMAL, format, args);
+    }
+
+    /**
+     * Register a data stream that is sampled at a different rate to the other columns.
+     * 
+     * @param sample An object that returns a double value when called
+     * @param rate how often to sample it.
+     * @param format a VarArgs string which evaluates to the name of the data stream
+     * @param args Any arguments required for the format varargs
+     */
+    public static void register(DoubleSupplier sample, Rate rate, String format,
+            Object... args) {
+        addColumn(sample, rate.cycles, 0, format, args);
+    }
+
+    /**
+     * Register a noisy data stream that only needs to be recorded when it moves by more than
+     * the deadband. Only used by the binary chart formats, which only write values that have
+     * changed since they were last written.
+     * 
+     * @param sample An object that returns a double value when called
+     * @param rate how often to sample it.
+     * @param deadband how far it has to move from the last value written to be written again.
+     * @param format a VarArgs string which evaluates to the name of the data stream
+     * @param args Any arguments required for the format varargs
+     */
+    public static void register(DoubleSupplier sample, Rate rate, double deadband,
+            String format, Object... args) {
+        addColumn(sample, rate.cycles, deadband, format, args);
+    }
+
+    /**
+     * Register a data stream that is sampled every periodSec seconds.
+     * 
+     * The period is rounded to a whole number of executor cycles. Periods longer than the NORMAL
+     * rate are rounded up to a multiple of it so the column is sampled on the same cycles as
+     * the other columns.
+     * 
+     * @param sample An object that returns a double value when called
+     * @param periodSec how long between samples.
+     * @param format a VarArgs string which evaluates to the name of the data stream
+     * @param args Any arguments required for the format varargs
+     */
+    public static void register(DoubleSupplier sample, double periodSec, String format,
+            Object... args) {
+        addColumn(sample, toCycles(periodSec), 0, format, args);
+    }
+
+    private static synchronized void addColumn(DoubleSupplier sample, int period,
+            double deadband, String format, Object... args) {
         if (state == State.ERRORED) {
             // The log system is very broken, possibly because of a missing or faulty USB
             // flash drive.
             return;
         }
         if (state == State.CREATED) {
-            columns.add(new Column(sample, String.format(format, args)));
+            columns.add(new Column(sample, period, deadband, String.format(format, args)));
             return;
         }
         // Invalid state. Create a stack trace to help with debugging.
@@ -94,6 +170,19 @@ public class Chart implements Executable {
         register(() -> (double) (sample.isTriggered() ? 1 : 0), format, args);
     }
 
+    /**
+     * @return the number of executor cycles closest to periodSec.
+     */
+    static int toCycles(double periodSec) {
+        int cycles = (int) Math.max(1,
+                Math.round(periodSec * 1000 / Config.intervals.executorCycleMSec));
+        int normal = Rate.NORMAL.cycles;
+        if (cycles > normal && cycles % normal != 0) {
+            cycles += normal - cycles % normal;
+        }
+        return cycles;
+    }
+
     /**
      * Call when all registrations have been done and recording should start.
      */
@@ -104,16 +193,85 @@ public class Chart implements Executable {
         Log.debug("Chart", "Column additions completed");
     }
 
+    /**
+     * Create the files for the next restart in the background so restartCharts() only has to
+     * swap them in. Call while disabled. Does nothing if they have already been prepared.
+     */
+    public synchronized static void prepareRestart() {
+        if (nextFiles != null || !isOnRobot()) {
+            return;
+        }
+        nextFiles =
+                LogFileTasks.submit(() -> new ChartFiles(LogFileNumber.reserveNext(), false));
+    }
+
     /**
      * Restarts logging, called each time robot is enabled or initialised.
+     * 
+     * Must be called after Log.restartLogs() so the new files get the new log number. If
+     * prepareRestart() has been called this doesn't touch the file system.
      */
     public synchronized static void restartCharts() {
-        csvWriter.flush();
-        init();
+        if (isOnRobot()) {
+            ChartFiles files;
+            try {
+                // Only create them now if they weren't prepared.
+                files = nextFiles != null ? nextFiles.get()
+                        : new ChartFiles(LogFileNumber.get(), false);
+            } catch (Exception e) {
+                e.printStackTrace();
+                System.err.printf("Failed to create log files in %s: %s\n",
+                        Config.logging.basePath, e.getMessage());
+                state = State.ERRORED;
+                return;
+            } finally {
+                nextFiles = null;
+            }
+            final ChartFiles oldFiles = current;
+            // Hand over the last rows now, nothing else will be written to these files.
+            oldFiles.data.flush();
+            previousDropped += oldFiles.data.getDroppedCount();
+            previousOverruns += oldFiles.data.getOverrunCount();
+            current = files;
+            // Finish with the old files and point the Latest links at the new ones in the
+            // background.
+            LogFileTasks.run("restart charts", () -> {
+                oldFiles.data.close();
+                files.createSymbolicLinks(Config.logging.latestExtension, "Latest");
+            });
+        }
+        createdDateFiles = false;
+        timeOffset = Strongback.timeSystem().currentTime();
         // Jump straight to configured as all the columns have already been registered.
         state = State.CONFIGURED;
     }
 
+    /**
+     * @return the live stream of samples, for clients to subscribe to.
+     */
+    public synchronized static ChartStream getStream() {
+        if (stream.getState() == Thread.State.NEW) {
+            // Only needed once somebody is listening.
+            stream.start();
+        }
+        return stream;
+    }
+
+    /**
+     * @return the number of rows thrown away because they were sampled faster than they could be
+     *         written to the file.
+     */
+    public synchronized static long getDroppedCount() {
+        return previousDropped + current.data.getDroppedCount();
+    }
+
+    /**
+     * @return the number of times writing fell behind and rows started being dropped.
+     */
+    public synchronized static long getOverrunCount() {
+        return previousOverruns + current.data.getOverrunCount();
+    }
+
     // Implementation
 
     private enum State {
@@ -133,22 +291,109 @@ public class Chart implements Executable {
     private static class Column {
         public String name;
         public DoubleSupplier sample;
+        public int period; // Number of executor cycles between samples.
+        public double deadband; // How far it has to move to be written again.
 
-        public Column(DoubleSupplier sample, String name, Object... args) {
+        public Column(DoubleSupplier sample, int period, double deadband, String name,
+                Object... args) {
             this.name = String.format(name, args);
             this.sample = sample;
+            this.period = period;
+            this.deadband = deadband;
         }
     }
 
-    // Log file.
-    private static LogWriter csvWriter = new NullLogWriter();
-    private static LogWriter chartHTMLWriter = new NullLogWriter();
-    private static LogWriter locationHTMLWriter = new NullLogWriter();
+    /**
+     * The set of files written for each run of the robot.
+     */
+    private static class ChartFiles {
+        public final ChartWriter data;
+        public final LogWriter chartHTML;
+        public final LogWriter locationHTML;
+
+        /**
+         * Files that are thrown away, eg when running unit tests.
+         */
+        public ChartFiles() {
+            data = new CsvChartWriter(new NullLogWriter());
+            chartHTML = new NullLogWriter();
+            locationHTML = new NullLogWriter();
+        }
+
+        /**
+         * Open all files for this log number.
+         * 
+         * @param createLatestLink false if the files are being created ahead of time and the
+         *        Latest links will be created later.
+         */
+        public ChartFiles(long logNum, boolean createLatestLink) throws IOException {
+            String baseDir = Paths.get(Config.logging.basePath, RobotName.get()).toString();
+            data = createDataWriter(baseDir, logNum, createLatestLink);
+            chartHTML = new TimestampedLogWriter(baseDir, "chart", logNum, "html", true,
+                    createLatestLink);
+            locationHTML = new TimestampedLogWriter(baseDir, "location", logNum, "html", true,
+                    createLatestLink);
+        }
+
+        /**
+         * Creates the writer for the sampled values in the configured format. The values are
+         * encoded and written on a background thread.
+         */
+        private static ChartWriter createDataWriter(String baseDir, long logNum,
+                boolean createLatestLink) throws IOException {
+            return new BackgroundChartWriter(createFormatWriter(baseDir, logNum, createLatestLink),
+                    Config.charting.queue.blocks, Config.charting.queue.rowsPerBlock,
+                    Config.charting.queue.handoffPeriodSec, Config.charting.queue.pollPeriodSec);
+        }
+
+        private static ChartWriter createFormatWriter(String baseDir, long logNum,
+                boolean createLatestLink) throws IOException {
+            switch (Config.charting.format) {
+                case "double":
+                case "float":
+                    return new BinaryChartWriter(baseDir, "data", logNum, "bin",
+                            Config.charting.format.equals("float"),
+                            Config.charting.binary.changesOnly,
+                            Config.charting.binary.blockBytes,
+                            Config.charting.binary.flushPeriodSec, createLatestLink);
+                default:
+                    if (!Config.charting.format.equals("csv")) {
+                        System.err.printf("Unknown chart format '%s', using csv\n",
+                                Config.charting.format);
+                    }
+                    return new CsvChartWriter(new TimestampedLogWriter(baseDir, "data", logNum,
+                            "csv", true, createLatestLink));
+            }
+        }
+
+        public void createSymbolicLinks(String dir, String prefix) {
+            data.createSymbolicLink(dir, prefix);
+            chartHTML.createSymbolicLink(dir, prefix);
+            locationHTML.createSymbolicLink(dir, prefix);
+        }
+    }
+
+    // Log files.
+    private static ChartFiles current = new ChartFiles();
+    // The files for the next restart, being created in the background. Null if not prepared.
+    private static Future<ChartFiles> nextFiles = null;
     // Internal state.
     private static State state = State.INVALID;
     private static String matchDescription = "Invalid";
     // Registered samples/columns.
     private static ArrayList<Column> columns = new ArrayList<Column>();
+    // The columns being written, when each is sampled and a preallocated row of their last
+    // values, set once configured.
+    private static Column[] activeColumns = new Column[0];
+    private static ChartSchedule schedule = ChartSchedule.spread(new int[0], 1, 0);
+    private static double[] values = new double[0];
+    private static long cycle = 0; // Number of times update() has run since configured.
+    // Sends the rows to live clients.
+    private static final ChartStream stream = new ChartStream(Config.charting.stream.capacity,
+            Config.charting.stream.pollPeriodSec);
+    // Rows dropped by the previous files because they couldn't be written fast enough.
+    private static long previousDropped = 0;
+    private static long previousOverruns = 0;
     private static Double timeOffset = 0.0; // Make the graphs always start at zero.
     private static boolean createdDateFiles = false;
 
@@ -168,14 +413,10 @@ public class Chart implements Executable {
         // Get time since robot boot, so chart starts at time = 0.
         timeOffset = Strongback.timeSystem().currentTime();
         try {
-            if (System.getProperty("user.name").equals("lvuser")) {
+            if (isOnRobot()) {
                 // Running on the robot. Write for real.
-                String baseDir = Paths.get(Config.logging.basePath, RobotName.get()).toString();
-                long logNum = LogFileNumber.get();
                 // Open all files. Also creates Latest symlink.
-                csvWriter = new TimestampedLogWriter(baseDir, "data", logNum, "csv");
-                chartHTMLWriter = new TimestampedLogWriter(baseDir, "chart", logNum, "html");
-                locationHTMLWriter = new TimestampedLogWriter(baseDir, "location", logNum, "html");
+                current = new ChartFiles(LogFileNumber.get(), true);
             }
 
             // Everything was successfully created, we're good to go.
@@ -188,6 +429,10 @@ public class Chart implements Executable {
         }
     }
 
+    private static boolean isOnRobot() {
+        return System.getProperty("user.name").equals("lvuser");
+    }
+
     /**
      * execute is called periodically.
      */
@@ -201,14 +446,36 @@ public class Chart implements Executable {
      */
     private static synchronized void update() {
         if (state == State.CONFIGURED) {
+            activeColumns = columns.stream().filter(c -> c.name != null).toArray(Column[]::new);
+            int[] periods = new int[activeColumns.length];
+            for (int i = 0; i < activeColumns.length; i++) {
+                periods[i] = activeColumns[i].period;
+            }
+            schedule = ChartSchedule.spread(periods, Rate.NORMAL.cycles,
+                    Config.intervals.executorCycleMSec / 1000.0);
+            values = new double[activeColumns.length];
+            Arrays.fill(values, Double.NaN);
+            cycle = 0;
             String csvColumns = getGraphHeaders();
-            initCSVFile(csvColumns);
+            initDataFile();
             initChartFile(csvColumns);
             initLocationFile();
             state = State.ACTIVE;
         }
         if (state == State.ACTIVE) {
-            csvWriter.write(getGraphValues());
+            long thisCycle = cycle++;
+            if (!schedule.anyDue(thisCycle)) {
+                return;
+            }
+            // Subtracts time offset from current time so graph starts at time = 0
+            double time = Strongback.timeSystem().currentTime() - timeOffset;
+            for (int i = 0; i < activeColumns.length; i++) {
+                if (schedule.isDue(i, thisCycle)) {
+                    values[i] = activeColumns[i].sample.getAsDouble();
+                }
+            }
+            current.data.writeRow(thisCycle, time, values);
+            stream.offer(time, values);
             if (createdDateFiles)
                 return;
             // If there is a valid date and time from the drivers station,
@@ -222,10 +489,17 @@ public class Chart implements Executable {
     }
 
     /**
-     * Insert the header row into the CSV file now that all the columns are known.
+     * Write the column names to the data file now that all the columns are known.
      */
-    private static void initCSVFile(String csvColumns) {
-        csvWriter.write(csvColumns + "\n");
+    private static void initDataFile() {
+        String[] names = new String[activeColumns.length];
+        double[] deadbands = new double[activeColumns.length];
+        for (int i = 0; i < activeColumns.length; i++) {
+            names[i] = activeColumns[i].name;
+            deadbands[i] = activeColumns[i].deadband;
+        }
+        current.data.writeHeader(names, deadbands, schedule);
+        stream.setColumns(names);
     }
 
     /**
@@ -234,7 +508,7 @@ public class Chart implements Executable {
     private static void initChartFile(String csvColumns) {
         String title = "Run " + LogFileNumber.get();
         String file = String.format("data_%05d", LogFileNumber.get());
-        chartHTMLWriter.write(String.format("<html>\n" + "<head><title>%1$s plot.ly chart</title>\n"
+        current.chartHTML.write(String.format("<html>\n" + "<head><title>%1$s plot.ly chart</title>\n"
                 + "</head>\n"
                 + "<body>\n" + "<script>\n" + "var fn = '../data/%2$s.csv';\n"
                 + "var baseLabelsStr = '%3$s';\n"
@@ -249,7 +523,7 @@ public class Chart implements Executable {
                 + "<pre>\n" + " python3 -m http.server\n" + "</pre>\n" + "<p>\n"
                 + "Then go to <a href='http://localhost:8000/%4$s/latest/Latest_chart.html'>http://localhost:8000/%4$s/latest/Latest_chart.html</a>\n"
                 + "</body>\n", title, file, csvColumns, RobotName.get()));
-        chartHTMLWriter.close();
+        current.chartHTML.close();
     }
 
     /**
@@ -258,7 +532,7 @@ public class Chart implements Executable {
     private static void initLocationFile() {
         String title = "Instance " + LogFileNumber.get();
         String file = String.format("data_%05d", LogFileNumber.get());
-        locationHTMLWriter.write(String.format("<html><title>%1$s</title><head>\n"
+        current.locationHTML.write(String.format("<html><title>%1$s</title><head>\n"
                 + "<script src='../../scripts/plotly.js'></script><script src='../../scripts/plotLocation.js'></script>\n"
                 + "<body><div id='myDiv' style='width: 480px; height: 400px;'>\n"
                 + "<!-- Plotly chart will be drawn inside this DIV --></div>\n"
@@ -268,7 +542,7 @@ public class Chart implements Executable {
                 + "<pre>\n" + " python3 -m http.server\n" + "</pre>\n" + "<p>\n"
                 + "Then go to <a href='http://localhost:8000/%3$s/latest/Latest_chart.html'>http://localhost:8000/%3$s/latest/Latest_chart.html</a>\n"
                 + "</body>\n", title, file, RobotName.get()));
-        locationHTMLWriter.close();
+        current.locationHTML.close();
     }
 
     private static String getGraphHeaders() {
@@ -281,20 +555,6 @@ public class Chart implements Executable {
         return headers;
     }
 
-    public static String getGraphValues() {
-        StringBuffer s = new StringBuffer();
-        // Subtracts time offset from current time so graph starts at time = 0
-        s.append(String.format("%.3f", Strongback.timeSystem().currentTime() - timeOffset));
-        for (Column e : columns) {
-            if (e.name != null) {
-                s.append(",");
-                s.append(e.sample.getAsDouble());
-            }
-        }
-        s.append("\n");
-        return s.toString();
-    }
-
     /**
      * Create the date based symbolic links. These create symbolic links from date
      * stamped version of the file to the actual file. This is a separate method as
@@ -304,21 +564,16 @@ public class Chart implements Executable {
      */
     public static void createDateFiles(Calendar timestamp) {
         String timestampStr = new SimpleDateFormat("yyyyMMdd't'hhmmss").format(timestamp.getTime());
-        try {
+        final ChartFiles files = current;
+        final String event = matchDescription;
+        // Creating the links is slow, don't hold up the executor.
+        LogFileTasks.run("create chart symlinks", () -> {
             // Create links based on the timestamp.
-            csvWriter.createSymbolicLink(Config.logging.dateExtension, timestampStr);
-            chartHTMLWriter.createSymbolicLink(Config.logging.dateExtension, timestampStr);
-            locationHTMLWriter.createSymbolicLink(Config.logging.dateExtension, timestampStr);
+            files.createSymbolicLinks(Config.logging.dateExtension, timestampStr);
             // And on event name, match type, match number, replay number, alliance and
             // position. These details should be available at the same time now that the
             // drivers station is able to talk to the robot.
-            csvWriter.createSymbolicLink(Config.logging.eventExtension, matchDescription);
-            chartHTMLWriter.createSymbolicLink(Config.logging.eventExtension, matchDescription);
-            locationHTMLWriter.createSymbolicLink(Config.logging.eventExtension, matchDescription);
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.out.printf("Error creating symlinks in %s: %s\n", Config.logging.basePath,
-                    e.getMessage());
-        }
+            files.createSymbolicLinks(Config.logging.eventExtension, event);
+        });
     }
 }
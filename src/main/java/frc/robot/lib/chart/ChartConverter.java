@@ -0,0 +1,62 @@
+package frc.robot.lib.chart;
+
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Converts a binary chart (data_00123.bin) into the CSV file (data_00123.csv) that the plotly
+ * html pages load.
+ *
+ * Runs on the desktop, either directly or with:
+ *
+ * <pre>
+ * ./gradlew convertChart --args="data_00123.bin [data_00123.csv]"
+ * </pre>
+ *
+ * If no output file is given the CSV is written next to the binary file.
+ */
+public class ChartConverter {
+
+    /**
+     * Write the binary chart as CSV text.
+     */
+    public static void convert(InputStream in, Writer out) throws IOException {
+        BinaryChartReader reader = new BinaryChartReader(in);
+        out.write(CsvChartWriter.getHeader(reader.getNames()) + "\n");
+        double[] values = new double[reader.getNames().length];
+        // Slow columns are written as their last value until they are next sampled.
+        Arrays.fill(values, Double.NaN);
+        StringBuilder row = new StringBuilder();
+        while (reader.next(values)) {
+            out.write(CsvChartWriter.formatRow(row, reader.getTime(), values,
+                    reader.isSinglePrecision()));
+        }
+        out.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: ChartConverter <data.bin> [data.csv]");
+            System.exit(1);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = args.length > 1 ? Paths.get(args[1])
+                : input.resolveSibling(input.getFileName().toString().replaceAll("\\.bin$", "")
+                        + ".csv");
+        try (InputStream in = Files.newInputStream(input);
+                Writer out = new BufferedWriter(Files.newBufferedWriter(output,
+                        StandardCharsets.UTF_8))) {
+            convert(in, out);
+        }
+        System.out.printf("Wrote %s\n", output);
+    }
+}
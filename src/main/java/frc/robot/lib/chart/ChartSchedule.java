@@ -0,0 +1,121 @@
+package frc.robot.lib.chart;
+
+
+
+import java.util.HashMap;
+
+/**
+ * Which chart columns are sampled on which cycle of the chart.
+ *
+ * Column i is sampled on the cycles where cycle % period[i] == phase[i]. Columns that are sampled
+ * less often than the normal rate are given different phases so that they are spread across
+ * cycles instead of all being read on the same cycle.
+ */
+class ChartSchedule {
+    private final int[] periods;
+    private final int[] phases;
+    private final double cyclePeriodSec;
+    // Each different period and phase, to quickly check if anything is due.
+    private final int[] distinctPeriods;
+    private final int[] distinctPhases;
+
+    /**
+     * @param periods how many cycles between samples for each column.
+     * @param phases which cycle in the period each column is sampled on.
+     * @param cyclePeriodSec the time between cycles.
+     */
+    ChartSchedule(int[] periods, int[] phases, double cyclePeriodSec) {
+        this.periods = periods;
+        this.phases = phases;
+        this.cyclePeriodSec = cyclePeriodSec;
+        long[] distinct = new long[periods.length];
+        int count = 0;
+        for (int i = 0; i < periods.length; i++) {
+            long key = ((long) periods[i] << 32) | phases[i];
+            boolean found = false;
+            for (int j = 0; j < count && !found; j++) {
+                found = distinct[j] == key;
+            }
+            if (!found) {
+                distinct[count++] = key;
+            }
+        }
+        distinctPeriods = new int[count];
+        distinctPhases = new int[count];
+        for (int i = 0; i < count; i++) {
+            distinctPeriods[i] = (int) (distinct[i] >> 32);
+            distinctPhases[i] = (int) distinct[i];
+        }
+    }
+
+    /**
+     * Chooses a phase for each column so that the slow columns are spread evenly across the
+     * cycles. Columns with a period that is a multiple of the normal period are only sampled on
+     * the same cycles as the normal columns so they don't cause extra rows to be written.
+     *
+     * @param periods how many cycles between samples for each column.
+     * @param normalPeriod the period of most columns.
+     * @param cyclePeriodSec the time between cycles.
+     */
+    static ChartSchedule spread(int[] periods, int normalPeriod, double cyclePeriodSec) {
+        int[] phases = new int[periods.length];
+        // How many columns have been given each phase, by period.
+        HashMap<Integer, int[]> load = new HashMap<>();
+        for (int i = 0; i < periods.length; i++) {
+            int period = periods[i];
+            if (period <= normalPeriod) {
+                continue; // Phase zero, sampled with the normal columns.
+            }
+            // Stay on the normal cycles if the period allows it, otherwise any cycle will do.
+            int step = period % normalPeriod == 0 ? normalPeriod : 1;
+            int[] counts = load.computeIfAbsent(period, p -> new int[p]);
+            int best = 0;
+            for (int phase = step; phase < period; phase += step) {
+                if (counts[phase] < counts[best]) {
+                    best = phase;
+                }
+            }
+            counts[best]++;
+            phases[i] = best;
+        }
+        return new ChartSchedule(periods, phases, cyclePeriodSec);
+    }
+
+    /**
+     * @return the number of columns.
+     */
+    int size() {
+        return periods.length;
+    }
+
+    int getPeriod(int column) {
+        return periods[column];
+    }
+
+    int getPhase(int column) {
+        return phases[column];
+    }
+
+    double getCyclePeriodSec() {
+        return cyclePeriodSec;
+    }
+
+    /**
+     * @return true if this column is sampled on this cycle.
+     */
+    boolean isDue(int column, long cycle) {
+        return cycle % periods[column] == phases[column];
+    }
+
+    /**
+     * @return true if any column is sampled on this cycle.
+     */
+    boolean anyDue(long cycle) {
+        for (int i = 0; i < distinctPeriods.length; i++) {
+            if (cycle % distinctPeriods[i] == distinctPhases[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,360 @@
+package frc.robot.lib.chart;
+
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streams the chart samples live to clients (eg websockets) as binary frames, so the pit can
+ * watch signals without pulling the chart files off the robot.
+ *
+ * Each client chooses which columns it wants by name or name prefix and how often it wants
+ * samples. The executor only copies each row into a small preallocated ring, and only while
+ * somebody is subscribed. This thread picks the subscribed columns out of each row and sends
+ * them.
+ *
+ * A client that still has data waiting to go out is skipped, so it gets the latest sample once
+ * it catches up and a slow client never holds up the others or the executor.
+ *
+ * Subscriptions are text messages, the patterns and the rate separated by spaces or commas:
+ *
+ * <pre>
+ * Drive/* TrajectoryDrive/* rate=10
+ * </pre>
+ *
+ * A pattern ending in '*' matches every column starting with the rest of the pattern, otherwise
+ * it has to match the whole name. No patterns subscribes to every column. Without a rate every
+ * row is sent.
+ *
+ * Frames, little endian like the binary chart files:
+ *
+ * <pre>
+ * HEADER  type:u8 count:u16 (length:u16 utf8-name)*   the subscribed columns, sent before the
+ *                                                     first samples and when they change.
+ * SAMPLES type:u8 time:f64 value:f32*                 one value per subscribed column.
+ * </pre>
+ */
+public class ChartStream extends Thread {
+    static final int HEADER = 1;
+    static final int SAMPLES = 2;
+
+    /**
+     * Where the frames are sent, eg a websocket connection.
+     */
+    public interface Client {
+        /**
+         * @return true if the last frames haven't been sent yet, so this one should be skipped.
+         */
+        public boolean isBusy();
+
+        /**
+         * Send a frame without waiting for it to be sent. The frame isn't reused.
+         */
+        public void send(ByteBuffer frame);
+    }
+
+    private final int capacity;
+    private final long pollNanos;
+    // The columns and the queue of rows for them. Replaced when the columns change.
+    private volatile Rows rows = null;
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * @param capacity the number of rows that can be waiting to be sent.
+     * @param pollPeriodSec how long to wait before checking for new rows again.
+     */
+    ChartStream(int capacity, double pollPeriodSec) {
+        this.capacity = capacity;
+        this.pollNanos = (long) (pollPeriodSec * 1e9);
+        setName("ChartStream");
+        setDaemon(true); // Don't stop the JVM from exiting.
+        setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Start sending rows to a new client. Nothing is sent until it asks for some columns with
+     * request().
+     */
+    public Subscription subscribe(Client client) {
+        Subscription subscription = new Subscription(client);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * @return the number of rows not sent because the queue was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Called from the executor thread when the columns are known.
+     */
+    void setColumns(String[] names) {
+        rows = new Rows(names, capacity);
+    }
+
+    /**
+     * Called from the executor thread with each row of samples. Never blocks.
+     */
+    void offer(double time, double[] values) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        Rows current = rows;
+        if (current == null || values.length != current.names.length) {
+            return;
+        }
+        if (!current.offer(time, values)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                sendQueued();
+                LockSupport.parkNanos(pollNanos);
+            } catch (Throwable e) {
+                // Keep going, the clients may still be there.
+                System.err.println("Exception while streaming chart rows:");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Send everything in the queue to the subscribed clients.
+     */
+    void sendQueued() {
+        Rows current = rows;
+        if (current == null) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.resolve(current);
+        }
+        while (current.peek()) {
+            for (Subscription subscription : subscriptions) {
+                subscription.maybeSend(current.time, current.row);
+            }
+            current.remove();
+        }
+    }
+
+    /**
+     * What one client has asked for.
+     */
+    public static class Subscription {
+        private final Client client;
+        // The latest request from the client.
+        private volatile Request request = null;
+        // Only used by the ChartStream thread.
+        private Request resolvedRequest = null;
+        private Rows resolvedRows = null;
+        private int[] columns = new int[0];
+        private double nextTime = Double.NEGATIVE_INFINITY;
+        private long skippedCount = 0;
+
+        Subscription(Client client) {
+            this.client = client;
+        }
+
+        /**
+         * Change which columns are sent and how often.
+         *
+         * @param message the patterns and optional rate, eg "Drive/* rate=10"
+         * @throws IllegalArgumentException if the rate isn't a positive number.
+         */
+        public void request(String message) {
+            request = Request.parse(message);
+        }
+
+        /**
+         * @return the number of samples not sent because the client was busy.
+         */
+        long getSkippedCount() {
+            return skippedCount;
+        }
+
+        /**
+         * Work out which columns match if the request or the columns have changed and tell the
+         * client.
+         */
+        private void resolve(Rows current) {
+            Request latest = request;
+            if (latest == null || (latest == resolvedRequest && current == resolvedRows)) {
+                return;
+            }
+            resolvedRequest = latest;
+            resolvedRows = current;
+            ArrayList<Integer> matches = new ArrayList<>();
+            for (int i = 0; i < current.names.length; i++) {
+                if (latest.matches(current.names[i])) {
+                    matches.add(i);
+                }
+            }
+            columns = matches.stream().mapToInt(Integer::intValue).toArray();
+            nextTime = Double.NEGATIVE_INFINITY;
+            // Always sent, even if the client is busy.
+            client.send(encodeHeader(current.names, columns));
+        }
+
+        private void maybeSend(double time, double[] row) {
+            if (resolvedRequest == null) {
+                return;
+            }
+            if (time < nextTime - 1e-6) { // Allow for rounding in the times.
+                return;
+            }
+            if (client.isBusy()) {
+                // Try again with the next row, so it gets the latest sample once it catches up.
+                skippedCount++;
+                return;
+            }
+            // Stay in step with the requested rate rather than drifting later, so the average
+            // rate is right even when the rows don't line up with it.
+            double period = resolvedRequest.periodSec;
+            nextTime = nextTime + period > time ? nextTime + period : time + period;
+            client.send(encodeSamples(time, row, columns));
+        }
+    }
+
+    /**
+     * A parsed subscription message.
+     */
+    static class Request {
+        final String[] patterns;
+        final double periodSec; // Zero for every row.
+
+        Request(String[] patterns, double periodSec) {
+            this.patterns = patterns;
+            this.periodSec = periodSec;
+        }
+
+        static Request parse(String message) {
+            ArrayList<String> patterns = new ArrayList<>();
+            double periodSec = 0;
+            for (String token : message.trim().split("[\\s,]+")) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                if (token.startsWith("rate=")) {
+                    double rate = Double.parseDouble(token.substring("rate=".length()));
+                    if (!(rate > 0)) {
+                        throw new IllegalArgumentException("Rate must be positive: " + token);
+                    }
+                    periodSec = 1 / rate;
+                    continue;
+                }
+                patterns.add(token);
+            }
+            return new Request(patterns.toArray(new String[0]), periodSec);
+        }
+
+        boolean matches(String name) {
+            if (patterns.length == 0) {
+                return true;
+            }
+            for (String pattern : patterns) {
+                if (pattern.endsWith("*")) {
+                    if (name.startsWith(pattern.substring(0, pattern.length() - 1))) {
+                        return true;
+                    }
+                } else if (name.equals(pattern)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static ByteBuffer encodeHeader(String[] names, int[] columns) {
+        byte[][] encoded = new byte[columns.length][];
+        int size = 1 + 2;
+        for (int i = 0; i < columns.length; i++) {
+            encoded[i] = names[columns[i]].getBytes(StandardCharsets.UTF_8);
+            size += 2 + encoded[i].length;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        frame.put((byte) HEADER);
+        frame.putShort((short) columns.length);
+        for (byte[] name : encoded) {
+            frame.putShort((short) name.length);
+            frame.put(name);
+        }
+        frame.flip();
+        return frame;
+    }
+
+    static ByteBuffer encodeSamples(double time, double[] row, int[] columns) {
+        ByteBuffer frame =
+                ByteBuffer.allocate(1 + 8 + 4 * columns.length).order(ByteOrder.LITTLE_ENDIAN);
+        frame.put((byte) SAMPLES);
+        frame.putDouble(time);
+        for (int column : columns) {
+            frame.putFloat((float) row[column]);
+        }
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * The column names and a single producer, single consumer queue of rows.
+     */
+    private static class Rows {
+        final String[] names;
+        private final double[] times;
+        private final double[] values;
+        private volatile long added = 0; // Only changed by the executor thread.
+        private volatile long removed = 0; // Only changed by the ChartStream thread.
+        // The row at the head of the queue, copied out by peek().
+        double time;
+        final double[] row;
+
+        Rows(String[] names, int capacity) {
+            this.names = names;
+            times = new double[capacity];
+            values = new double[capacity * names.length];
+            row = new double[names.length];
+        }
+
+        boolean offer(double time, double[] row) {
+            if (added - removed >= times.length) {
+                return false;
+            }
+            int slot = (int) (added % times.length);
+            times[slot] = time;
+            System.arraycopy(row, 0, values, slot * names.length, names.length);
+            added++; // Publishes the row.
+            return true;
+        }
+
+        boolean peek() {
+            if (removed == added) {
+                return false;
+            }
+            int slot = (int) (removed % times.length);
+            time = times[slot];
+            System.arraycopy(values, slot * names.length, row, 0, names.length);
+            return true;
+        }
+
+        void remove() {
+            removed++;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package frc.robot.lib.chart;
+
+
+
+/**
+ * Writes the sampled chart values to a file, one row per sample time.
+ */
+interface ChartWriter {
+    /**
+     * Called once all the columns are known, before any rows are written.
+     *
+     * @param names the name of each column, in the same order as the values in each row.
+     * @param deadbands how far each column has to move before a writer that only writes changes
+     *        writes it again.
+     * @param schedule which cycles each column is sampled on.
+     */
+    public void writeHeader(String[] names, double[] deadbands, ChartSchedule schedule);
+
+    /**
+     * Write a row of samples. Only called on cycles where at least one column was sampled.
+     *
+     * @param cycle the number of the chart cycle, used with the schedule to know which columns
+     *        were sampled.
+     * @param time seconds since the chart was started.
+     * @param values one value per column. Columns not sampled this cycle hold their last value.
+     *        Not kept after this returns.
+     */
+    public void writeRow(long cycle, double time, double[] values);
+
+    /**
+     * Write anything buffered to disk.
+     */
+    public void flush();
+
+    /**
+     * Flush and close the file.
+     */
+    public void close();
+
+    /**
+     * Create a symbolic link to the file.
+     *
+     * @param dir sub directory relative to logging base dir to put link in.
+     * @param prefix as in <prefix>_data.csv
+     */
+    public void createSymbolicLink(String dir, String prefix);
+
+    /**
+     * @return the number of rows thrown away because they couldn't be written fast enough.
+     */
+    public default long getDroppedCount() {
+        return 0;
+    }
+
+    /**
+     * @return the number of times the writer fell behind and started dropping rows.
+     */
+    public default long getOverrunCount() {
+        return 0;
+    }
+}
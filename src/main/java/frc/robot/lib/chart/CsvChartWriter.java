@@ -0,0 +1,80 @@
+package frc.robot.lib.chart;
+
+
+
+import frc.robot.interfaces.LogWriter;
+
+/**
+ * Writes the chart as a CSV file that can be loaded directly by the plotly html pages.
+ *
+ * Every row has every column. Columns that weren't sampled that cycle repeat their last value.
+ */
+class CsvChartWriter implements ChartWriter {
+    private final LogWriter writer;
+    private final StringBuilder row = new StringBuilder();
+
+    /**
+     * @param writer where to write the text, eg a TimestampedLogWriter for data_00123.csv
+     */
+    CsvChartWriter(LogWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void writeHeader(String[] names, double[] deadbands, ChartSchedule schedule) {
+        writer.write(getHeader(names) + "\n");
+    }
+
+    @Override
+    public void writeRow(long cycle, double time, double[] values) {
+        writer.write(formatRow(row, time, values, false));
+    }
+
+    @Override
+    public void flush() {
+        writer.flush();
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+
+    @Override
+    public void createSymbolicLink(String dir, String prefix) {
+        writer.createSymbolicLink(dir, prefix);
+    }
+
+    /**
+     * @return the header line without the newline, eg "date,Drivebase/speed"
+     */
+    static String getHeader(String[] names) {
+        return "date," + String.join(",", names);
+    }
+
+    /**
+     * Format a row of values as a line of the CSV file, the same way for all writers so that
+     * converted files match.
+     *
+     * @param row reused to build the line.
+     * @param singlePrecision the values were stored as floats, print them as floats.
+     * @return the line including the newline.
+     */
+    static String formatRow(StringBuilder row, double time, double[] values,
+            boolean singlePrecision) {
+        row.setLength(0);
+        row.append(String.format("%.3f", time));
+        for (double value : values) {
+            row.append(',');
+            if (Double.isNaN(value)) {
+                // Not sampled yet, leave it blank so the graph has a gap.
+            } else if (singlePrecision) {
+                row.append((float) value);
+            } else {
+                row.append(value);
+            }
+        }
+        row.append('\n');
+        return row.toString();
+    }
+}
@@ -0,0 +1,244 @@
+package frc.robot.lib.log;
+
+
+
+import frc.robot.interfaces.LogWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes the formatting and writing of log messages off the threads that log them.
+ *
+ * Callers only add the unformatted message to a preallocated ring buffer. This thread formats the
+ * messages, prints them to the console and writes them to the LogWriter. The writer is only
+ * flushed when enough has been written or enough time has passed, instead of on every message.
+ *
+ * If the queue fills up the message is dropped and counted, and a warning is written to the log
+ * once there is room again.
+ *
+ * Messages are only formatted as text when something needs the text (the console, the text log
+ * file or the LogBroadcast's clients). A binary LogWriter is given the unformatted arguments.
+ */
+class BackgroundLogWriter extends Thread {
+    private final LogRingBuffer queue;
+    private final long flushBytes;
+    private final long flushPeriodNanos;
+    private final long pollNanos;
+    private LogWriter writer;
+    // Writer to change to once everything queued before the change was asked for is written.
+    private final AtomicReference<Switch> pendingSwitch = new AtomicReference<>();
+    // Keeps the recent lines for websocket clients. May be null.
+    private final LogBroadcast broadcast;
+
+    // Counters for messages that couldn't be queued.
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private volatile boolean overflowing = false;
+    private long droppedReported = 0;
+
+    private long bytesSinceFlush = 0;
+    private long lastFlushNanos = System.nanoTime();
+
+    /**
+     * @param writer where to write the log messages.
+     * @param capacity maximum number of messages that can be waiting to be written.
+     * @param flushBytes flush the writer once this many characters have been written.
+     * @param flushPeriodSec flush the writer at least this often if anything has been written.
+     * @param pollPeriodSec how long to wait before checking an empty queue again.
+     */
+    BackgroundLogWriter(LogWriter writer, int capacity, long flushBytes, double flushPeriodSec,
+            double pollPeriodSec) {
+        this(writer, capacity, flushBytes, flushPeriodSec, pollPeriodSec, null);
+    }
+
+    /**
+     * @param broadcast is given every formatted line to send to clients.
+     */
+    BackgroundLogWriter(LogWriter writer, int capacity, long flushBytes, double flushPeriodSec,
+            double pollPeriodSec, LogBroadcast broadcast) {
+        this.writer = writer;
+        this.broadcast = broadcast;
+        this.queue = new LogRingBuffer(capacity);
+        this.flushBytes = flushBytes;
+        this.flushPeriodNanos = (long) (flushPeriodSec * 1e9);
+        this.pollNanos = (long) (pollPeriodSec * 1e9);
+        setName("LogWriter");
+        setDaemon(true); // Don't stop the JVM from exiting.
+        setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Queue a message to be formatted and written. Never blocks.
+     */
+    void add(Log.Level level, double time, String system, String message, Object[] args) {
+        if (queue.offer(level, time, system, message, args)) {
+            return;
+        }
+        droppedCount.incrementAndGet();
+        if (!overflowing) {
+            overflowing = true;
+            overflowCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Write out and flush everything that has been queued. Runs on the calling thread so it is
+     * guaranteed to be done when this returns.
+     */
+    synchronized void drain() {
+        writeQueued();
+        flush();
+    }
+
+    /**
+     * Change to a new writer without waiting for anything to be written. Everything queued
+     * before this call is written to the current writer, which is then flushed and closed by
+     * this thread.
+     *
+     * @param newWriter where to write all future messages.
+     */
+    void switchWriter(LogWriter newWriter) {
+        Switch previous = pendingSwitch.getAndSet(new Switch(newWriter, queue.getAddedCount()));
+        if (previous != null) {
+            // Switched again before the last switch happened, that writer was never used.
+            LogFileTasks.run("close unused log file", previous.writer::close);
+        }
+    }
+
+    /**
+     * @return the number of messages thrown away because the queue was full.
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return the number of times the queue has filled up.
+     */
+    long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                writeQueued();
+                maybeFlush();
+                LockSupport.parkNanos(pollNanos);
+            } catch (Throwable e) {
+                // Never let the log writer die, otherwise the queue will fill and all logging
+                // will stop.
+                System.err.println("Exception while writing log messages:");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Format and write everything currently in the queue.
+     */
+    private synchronized void writeQueued() {
+        LogRingBuffer.Record record;
+        while ((record = queue.peek()) != null) {
+            maybeSwitchWriter();
+            try {
+                write(record.level, record.time, record.system, record.message, record.args);
+            } catch (Exception e) {
+                // Most likely a bad format string. Don't lose the message entirely.
+                write(Log.Level.ERROR, record.time, record.system,
+                        "Failed to format log message '%s': %s",
+                        new Object[] {record.message, e.toString()});
+            }
+            queue.remove();
+            if (bytesSinceFlush >= flushBytes) {
+                flush();
+            }
+        }
+        maybeSwitchWriter();
+        if (overflowing) {
+            // Space is available again, record how many messages were lost.
+            overflowing = false;
+            long dropped = droppedCount.get();
+            write(Log.Level.WARNING, Log.currentTime(), "Log",
+                    "Log queue full, dropped %d messages (%d in total)",
+                    new Object[] {dropped - droppedReported, dropped});
+            droppedReported = dropped;
+        }
+    }
+
+    private void write(Log.Level level, double time, String system, String message,
+            Object[] args) {
+        if (level != Log.Level.DEBUG || (broadcast != null && broadcast.hasClients())) {
+            String text = level.format(time, system, message, args);
+            switch (level) {
+                case DEBUG:
+                    // Don't print it to the console.
+                    break;
+                case INFO:
+                case OUTPUT:
+                    System.out.print(text);
+                    break;
+                case WARNING:
+                case ERROR:
+                    System.err.print(text);
+                    break;
+            }
+            if (broadcast != null) {
+                broadcast.publish(level, time, system, text);
+            }
+        }
+        bytesSinceFlush += writer.write(level, time, system, message, args);
+    }
+
+    /**
+     * Change to the new writer if everything that was meant for the old writer has been written.
+     */
+    private void maybeSwitchWriter() {
+        Switch pending = pendingSwitch.get();
+        if (pending == null || queue.getRemovedCount() < pending.after) {
+            return;
+        }
+        if (!pendingSwitch.compareAndSet(pending, null)) {
+            return; // Switched again, pick it up next time.
+        }
+        writer.flush();
+        writer.close();
+        writer = pending.writer;
+        bytesSinceFlush = 0;
+        lastFlushNanos = System.nanoTime();
+    }
+
+    /**
+     * A request to change writer once the first 'after' messages have been written.
+     */
+    private static class Switch {
+        final LogWriter writer;
+        final long after;
+
+        Switch(LogWriter writer, long after) {
+            this.writer = writer;
+            this.after = after;
+        }
+    }
+
+    /**
+     * Flush if enough has been written or it has been long enough since the last flush.
+     */
+    private synchronized void maybeFlush() {
+        if (bytesSinceFlush == 0) {
+            return;
+        }
+        if (bytesSinceFlush >= flushBytes
+                || System.nanoTime() - lastFlushNanos >= flushPeriodNanos) {
+            flush();
+        }
+    }
+
+    private synchronized void flush() {
+        writer.flush();
+        bytesSinceFlush = 0;
+        lastFlushNanos = System.nanoTime();
+    }
+}
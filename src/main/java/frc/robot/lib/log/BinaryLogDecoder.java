@@ -0,0 +1,184 @@
+package frc.robot.lib.log;
+
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * Turns a log written by BinaryLogWriter back into the same text that the text log would have
+ * contained, eg "12.345 (Debug) [Drivebase] message".
+ *
+ * Runs on the desktop, either directly or with:
+ *
+ * <pre>
+ * ./gradlew decodeLog --args="log_00123.bin [log_00123.txt]"
+ * </pre>
+ *
+ * If no output file is given the text is written to stdout.
+ */
+public class BinaryLogDecoder {
+    private final DataInputStream in;
+    private final ArrayList<String> strings = new ArrayList<>();
+
+    public BinaryLogDecoder(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        int magic = this.in.readInt();
+        if (magic != BinaryLogWriter.MAGIC) {
+            throw new IOException(String.format("Not a binary log file (magic %08x)", magic));
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != BinaryLogWriter.VERSION) {
+            throw new IOException("Unsupported binary log version " + version);
+        }
+    }
+
+    /**
+     * Decodes the next message.
+     *
+     * @return the formatted line including the trailing newline or null at the end of the file.
+     *         A file that was cut short (eg the robot lost power) ends at the last whole message.
+     */
+    public String readLine() throws IOException {
+        try {
+            while (true) {
+                int type = in.readUnsignedByte();
+                switch (type) {
+                    case BinaryLogWriter.STRING:
+                        readString();
+                        break; // Not a message, keep reading.
+                    case BinaryLogWriter.MESSAGE:
+                        return readMessage();
+                    case BinaryLogWriter.TEXT:
+                        return readText();
+                    default:
+                        throw new IOException("Corrupt binary log, unknown record type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the whole file.
+     */
+    public void decode(Writer out) throws IOException {
+        String line;
+        while ((line = readLine()) != null) {
+            out.write(line);
+        }
+        out.flush();
+    }
+
+    private void readString() throws IOException {
+        int id = in.readUnsignedShort();
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        while (strings.size() <= id) {
+            strings.add("");
+        }
+        strings.set(id, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private String readMessage() throws IOException {
+        double time = in.readDouble();
+        Log.Level level = readLevel();
+        String system = lookup(in.readUnsignedShort());
+        String message = lookup(in.readUnsignedShort());
+        Object[] args = new Object[in.readUnsignedByte()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readArg();
+        }
+        try {
+            return level.format(time, system, message, args);
+        } catch (Exception e) {
+            // Same as when formatting on the robot.
+            return Log.Level.ERROR.format(time, system, "Failed to format log message '%s': %s",
+                    new Object[] {message, e.toString()});
+        }
+    }
+
+    private String readText() throws IOException {
+        double time = in.readDouble();
+        Log.Level level = readLevel();
+        String system = lookup(in.readUnsignedShort());
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        if (system.isEmpty()) {
+            // Already formatted by whoever wrote it.
+            return text;
+        }
+        return level.format(time, system, "%s", new Object[] {text});
+    }
+
+    private Log.Level readLevel() throws IOException {
+        int ordinal = in.readUnsignedByte();
+        Log.Level[] levels = Log.Level.values();
+        if (ordinal >= levels.length) {
+            throw new IOException("Corrupt binary log, unknown level " + ordinal);
+        }
+        return levels[ordinal];
+    }
+
+    private String lookup(int id) throws IOException {
+        if (id >= strings.size()) {
+            throw new IOException("Corrupt binary log, unknown string " + id);
+        }
+        return strings.get(id);
+    }
+
+    private Object readArg() throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case BinaryLogWriter.ARG_NULL:
+                return null;
+            case BinaryLogWriter.ARG_INT:
+                return in.readInt();
+            case BinaryLogWriter.ARG_LONG:
+                return in.readLong();
+            case BinaryLogWriter.ARG_DOUBLE:
+                return in.readDouble();
+            case BinaryLogWriter.ARG_FLOAT:
+                return in.readFloat();
+            case BinaryLogWriter.ARG_BOOLEAN:
+                return in.readBoolean();
+            case BinaryLogWriter.ARG_STRING:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            case BinaryLogWriter.ARG_SHORT:
+                return in.readShort();
+            case BinaryLogWriter.ARG_BYTE:
+                return in.readByte();
+            case BinaryLogWriter.ARG_CHAR:
+                return in.readChar();
+            default:
+                throw new IOException("Corrupt binary log, unknown argument type " + type);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: BinaryLogDecoder <log.bin> [output.txt]");
+            System.exit(1);
+        }
+        try (InputStream in = Files.newInputStream(Paths.get(args[0]));
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        args.length > 1 ? Files.newOutputStream(Paths.get(args[1])) : System.out,
+                        StandardCharsets.UTF_8))) {
+            new BinaryLogDecoder(in).decode(out);
+        }
+    }
+}
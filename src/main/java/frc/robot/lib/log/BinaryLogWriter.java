@@ -0,0 +1,283 @@
+package frc.robot.lib.log;
+
+
+
+import frc.robot.interfaces.LogWriter;
+import frc.robot.lib.FileUtil;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+
+/**
+ * Writes log messages as compact binary records instead of text so that the robot doesn't
+ * spend time formatting messages that are only read after the match.
+ *
+ * Each format string and subsystem name is only written once and then referred to by number.
+ * Each message is the time, the level, the format and system numbers and the raw arguments.
+ * Messages without arguments aren't format strings, they are often built by concatenation, so
+ * they are written out as text rather than filling up the table of strings. The empty string is
+ * always number 0.
+ * Use BinaryLogDecoder to turn the file back into the normal text log.
+ *
+ * <pre>
+ * File:    MAGIC VERSION record*
+ * record:  STRING id:u16 length:u16 utf8-bytes
+ *        | MESSAGE time:f64 level:u8 system:u16 format:u16 count:u8 arg*
+ *        | TEXT time:f64 level:u8 system:u16 length:i32 utf8-bytes
+ * arg:     type:u8 value
+ * </pre>
+ */
+public class BinaryLogWriter implements LogWriter {
+    static final int MAGIC = 0x4C4F4731; // "LOG1"
+    static final int VERSION = 1;
+
+    // Record types.
+    static final int STRING = 1;
+    static final int MESSAGE = 2;
+    static final int TEXT = 3;
+
+    // Argument types.
+    static final int ARG_NULL = 0;
+    static final int ARG_INT = 1;
+    static final int ARG_LONG = 2;
+    static final int ARG_DOUBLE = 3;
+    static final int ARG_FLOAT = 4;
+    static final int ARG_BOOLEAN = 5;
+    static final int ARG_STRING = 6;
+    static final int ARG_SHORT = 7;
+    static final int ARG_BYTE = 8;
+    static final int ARG_CHAR = 9;
+
+    // More strings than this and they are written out in full each time.
+    private static final int kMaxStrings = 0xFFFF;
+    private static final int kNoString = 0xFFFF;
+    private static final int kEmptyString = 0;
+
+    private final String name; // eg log
+    private final String extn; // eg bin
+    private final String baseDir; // All logs are below this directory
+    private final Path filePath;
+    private final DataOutputStream out;
+    // Format strings and system names that have already been written, and their id.
+    private final HashMap<String, Integer> strings = new HashMap<>();
+
+    /**
+     * Creates baseDir/data/name_filenum.extn and the Latest symlink, in the same layout as
+     * TimestampedLogWriter.
+     *
+     * @param baseDir Where on the file system to put the logging directories.
+     * @param name the type of data, eg "log"
+     * @param filenum the number of the file. Incremented every start of the code.
+     * @param extn the file extension
+     * @throws IOException
+     */
+    public BinaryLogWriter(String baseDir, String name, long filenum, String extn)
+            throws IOException {
+        this(baseDir, name, filenum, extn, true);
+    }
+
+    /**
+     * Creates baseDir/data/name_filenum.extn and optionally the Latest symlink.
+     *
+     * @param baseDir Where on the file system to put the logging directories.
+     * @param name the type of data, eg "log"
+     * @param filenum the number of the file. Incremented every start of the code.
+     * @param extn the file extension
+     * @param createLatestLink if false, the file is being created ahead of time and the caller
+     *        will create the Latest symlink when the file starts being used.
+     */
+    public BinaryLogWriter(String baseDir, String name, long filenum, String extn,
+            boolean createLatestLink) throws IOException {
+        this.baseDir = baseDir;
+        this.name = name;
+        this.extn = extn;
+        filePath = Paths.get(baseDir, "data", String.format("%s_%05d.%s", name, filenum, extn));
+        // Ensure the parent directory exists.
+        Files.createDirectories(filePath.getParent());
+        out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(filePath), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        intern(""); // kEmptyString
+        if (createLatestLink) {
+            createSymbolicLink("latest", "Latest");
+        }
+    }
+
+    /**
+     * Stores the arguments without formatting the message.
+     */
+    @Override
+    public int write(Log.Level level, double time, String system, String message,
+            Object[] args) {
+        try {
+            int before = out.size();
+            if (args == null || args.length == 0) {
+                // Not a format string, don't add it to the table of strings.
+                writeFormatted(level, time, system, message, args);
+                return out.size() - before;
+            }
+            int systemId = intern(system);
+            int formatId = intern(message);
+            if (systemId == kNoString || formatId == kNoString) {
+                // Too many different strings, fall back to formatted text.
+                writeFormatted(level, time, system, message, args);
+                return out.size() - before;
+            }
+            out.writeByte(MESSAGE);
+            out.writeDouble(time);
+            out.writeByte(level.ordinal());
+            out.writeShort(systemId);
+            out.writeShort(formatId);
+            int count = args == null ? 0 : Math.min(args.length, 255);
+            out.writeByte(count);
+            for (int i = 0; i < count; i++) {
+                writeArg(args[i]);
+            }
+            return out.size() - before;
+        } catch (Exception e) {
+            // nothing to do. If we can't write to the log file it's not a disaster.
+            return 0;
+        }
+    }
+
+    /**
+     * Writes preformatted text, eg from code that doesn't go through Log.
+     */
+    @Override
+    public void write(String contents) {
+        try {
+            writeText(Log.Level.OUTPUT, Log.currentTime(), "", contents);
+        } catch (Exception e) {
+            // nothing to do. If we can't write to the log file it's not a disaster.
+        }
+    }
+
+    /**
+     * Formats the message now and writes it as text, the same as BinaryLogDecoder would have.
+     */
+    private void writeFormatted(Log.Level level, double time, String system, String message,
+            Object[] args) throws IOException {
+        String text;
+        if (message.indexOf('%') < 0) {
+            text = message; // Nothing to format.
+        } else {
+            try {
+                text = String.format(message, args);
+            } catch (Exception e) {
+                level = Log.Level.ERROR;
+                text = String.format("Failed to format log message '%s': %s", message,
+                        e.toString());
+            }
+        }
+        writeText(level, time, system, text);
+    }
+
+    private void writeText(Log.Level level, double time, String system, String text)
+            throws IOException {
+        int systemId = intern(system);
+        if (systemId == kNoString) {
+            // Too many different strings, write the whole line out as already formatted text.
+            text = level.format(time, system, "%s", new Object[] {text});
+            systemId = kEmptyString;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(TEXT);
+        out.writeDouble(time);
+        out.writeByte(level.ordinal());
+        out.writeShort(systemId);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Returns the id for this string, writing it out the first time it's seen.
+     */
+    private int intern(String value) throws IOException {
+        Integer id = strings.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (strings.size() >= kMaxStrings) {
+            return kNoString;
+        }
+        id = strings.size();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(STRING);
+        out.writeShort(id);
+        out.writeShort(Math.min(bytes.length, 0xFFFF));
+        out.write(bytes, 0, Math.min(bytes.length, 0xFFFF));
+        strings.put(value, id);
+        return id;
+    }
+
+    private void writeArg(Object arg) throws IOException {
+        if (arg == null) {
+            out.writeByte(ARG_NULL);
+        } else if (arg instanceof Integer) {
+            out.writeByte(ARG_INT);
+            out.writeInt((Integer) arg);
+        } else if (arg instanceof Double) {
+            out.writeByte(ARG_DOUBLE);
+            out.writeDouble((Double) arg);
+        } else if (arg instanceof Long) {
+            out.writeByte(ARG_LONG);
+            out.writeLong((Long) arg);
+        } else if (arg instanceof Float) {
+            out.writeByte(ARG_FLOAT);
+            out.writeFloat((Float) arg);
+        } else if (arg instanceof Boolean) {
+            out.writeByte(ARG_BOOLEAN);
+            out.writeBoolean((Boolean) arg);
+        } else if (arg instanceof Short) {
+            out.writeByte(ARG_SHORT);
+            out.writeShort((Short) arg);
+        } else if (arg instanceof Byte) {
+            out.writeByte(ARG_BYTE);
+            out.writeByte((Byte) arg);
+        } else if (arg instanceof Character) {
+            out.writeByte(ARG_CHAR);
+            out.writeChar((Character) arg);
+        } else {
+            // Everything else (enums, poses, exceptions etc) is stored as its text form,
+            // which is what %s would have printed.
+            byte[] bytes = arg.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(ARG_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            // nothing to do. If we can't write to the log file it's not a disaster.
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void createSymbolicLink(String dir, String prefix) {
+        FileUtil.createSymbolicLink(getLinkPath(dir, prefix), filePath);
+    }
+
+    @Override
+    public Path getLinkPath(String dir, String prefix) {
+        return Paths.get(baseDir, dir, String.format("%s_%s.%s", prefix, name, extn));
+    }
+}
@@ -0,0 +1,198 @@
+package frc.robot.lib.log;
+
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Copies everything appended to a file into another file, like 'tail -f source > destination'
+ * but without starting any processes.
+ *
+ * Used to keep a copy of FRC_UserProgram.log (which has the output of the JVM and WPILib) on the
+ * flash drive next to our own logs. The new bytes are copied by the kernel with
+ * FileChannel.transferTo() on a low priority thread.
+ *
+ * If the source file is truncated or replaced (eg the robot code restarted) copying starts again
+ * from the start of the new file.
+ */
+class FileFollower extends Thread {
+    private static final int kBlockSize = 4096;
+
+    private final Path source;
+    private final long pollPeriodMSec;
+    private FileChannel in = null;
+    private Object inKey = null; // Identifies the file that is open, to detect it being replaced.
+    private FileChannel out = null;
+    private long position = 0; // How much of the source has been copied.
+
+    /**
+     * @param source the file to follow.
+     * @param pollPeriodMSec how often to check for new data.
+     */
+    FileFollower(Path source, long pollPeriodMSec) {
+        this.source = source;
+        this.pollPeriodMSec = pollPeriodMSec;
+        setName("FileFollower");
+        setDaemon(true); // Don't stop the JVM from exiting.
+        setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Start copying to a new destination file. The last few lines of the source are copied first
+     * so there is some context, then everything after that as it's written.
+     *
+     * @param destination the file to write the copy to. Overwritten if it exists.
+     * @param tailLines how many existing lines of the source to copy.
+     */
+    synchronized void follow(Path destination, int tailLines) throws IOException {
+        closeOut();
+        Files.createDirectories(destination.getParent());
+        out = FileChannel.open(destination, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (openIn()) {
+            long end = in.size();
+            position = findTailStart(in, end, tailLines);
+        }
+        poll();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                poll();
+            } catch (Exception e) {
+                // Keep going, the file may come back.
+                System.err.printf("Error copying %s: %s\n", source, e);
+                closeIn();
+            }
+            try {
+                Thread.sleep(pollPeriodMSec);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copy anything new in the source to the destination.
+     *
+     * @return the number of bytes copied.
+     */
+    synchronized long poll() throws IOException {
+        if (out == null || !openIn()) {
+            return 0;
+        }
+        long size = in.size();
+        if (size < position) {
+            // Truncated, start again from the beginning.
+            position = 0;
+        }
+        long copied = 0;
+        while (position < size) {
+            long count = in.transferTo(position, size - position, out);
+            if (count <= 0) {
+                break;
+            }
+            position += count;
+            copied += count;
+        }
+        return copied;
+    }
+
+    /**
+     * Make sure the source is open and it's still the same file that is at the source path.
+     *
+     * @return false if the source doesn't exist.
+     */
+    private boolean openIn() throws IOException {
+        if (!Files.exists(source)) {
+            closeIn();
+            return false;
+        }
+        Object key = Files.readAttributes(source, BasicFileAttributes.class).fileKey();
+        if (in != null && (key == null || key.equals(inKey))) {
+            return true;
+        }
+        // Not open yet, or the file has been replaced by a new one.
+        closeIn();
+        in = FileChannel.open(source, StandardOpenOption.READ);
+        inKey = key;
+        position = 0;
+        return true;
+    }
+
+    private void closeIn() {
+        if (in == null) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Nothing more can be done.
+        }
+        in = null;
+        inKey = null;
+    }
+
+    private void closeOut() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            // Nothing more can be done.
+        }
+        out = null;
+    }
+
+    /**
+     * Finds where the last lines of the file start by reading backwards from the end.
+     *
+     * @param channel the file to search.
+     * @param end the size of the file.
+     * @param lines the number of lines wanted.
+     * @return the offset of the start of the first of the last 'lines' lines.
+     */
+    static long findTailStart(FileChannel channel, long end, int lines) throws IOException {
+        if (lines <= 0) {
+            return end;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(kBlockSize);
+        long blockEnd = end;
+        int found = 0;
+        boolean last = true; // The newline ending the last line doesn't start a new line.
+        while (blockEnd > 0) {
+            long blockStart = Math.max(0, blockEnd - kBlockSize);
+            buffer.clear();
+            buffer.limit((int) (blockEnd - blockStart));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, blockStart + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) != '\n') {
+                    last = false;
+                    continue;
+                }
+                if (last) {
+                    last = false;
+                    continue;
+                }
+                if (++found == lines) {
+                    return blockStart + i + 1;
+                }
+            }
+            blockEnd = blockStart;
+        }
+        return 0; // Fewer lines than asked for, copy the whole file.
+    }
+}
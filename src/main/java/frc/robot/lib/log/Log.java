@@ -16,6 +16,10 @@ package frc.robot.lib.log;
  * Each message takes a varargs argument list, and prepends the message with a
  * timestamp and type of message.
  * 
+ * Messages below the level set for their subsystem are thrown away before anything is
+ * queued. For expensive messages use the Supplier versions, or check isEnabled() first, so the
+ * message is only built when it will be logged.
+ * 
  * Static implementation so that it doesn't need to be passed around everywhere.
  */
 
@@ -30,6 +34,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import org.strongback.Strongback;
 
 /**
@@ -49,10 +58,17 @@ public class Log {
      * @param args arguments to the message format string
      */
     public static void debug(String system, String message, final Object... args) {
-        message = String.format(timeString() + " (Debug) " + "[" + system + "] " + message + "\n",
-                args);
-        // Don't print it to the console.
-        writer.write(message);
+        log(Level.DEBUG, system, message, args);
+    }
+
+    /**
+     * Logs to disk only. The message is only built if debug is enabled for this subsystem.
+     * 
+     * @param system Name of the subsystem (used for logging identification)
+     * @param message Supplies the message to log
+     */
+    public static void debug(String system, Supplier<String> message) {
+        log(Level.DEBUG, system, message);
     }
 
     /**
@@ -63,11 +79,18 @@ public class Log {
      * @param args arguments to the message format string
      */
     public static void info(String system, String message, final Object... args) {
-        message = String.format(timeString() + " (Info) " + "[" + system + "] " + message + "\n",
-                args);
-        // Print to the console.
-        System.out.print(message);
-        writer.write(message);
+        log(Level.INFO, system, message, args);
+    }
+
+    /**
+     * Logs to disk and console. The message is only built if info is enabled for this
+     * subsystem.
+     * 
+     * @param system Name of the subsystem (used for logging identification)
+     * @param message Supplies the message to log
+     */
+    public static void info(String system, Supplier<String> message) {
+        log(Level.INFO, system, message);
     }
 
     /**
@@ -78,11 +101,7 @@ public class Log {
      * @param args arguments to the message format string
      */
     public static void warning(String system, String message, final Object... args) {
-        message = String.format(timeString() + " (Warning) " + "[" + system + "] " + message + "\n",
-                args);
-        // Print to the console.
-        System.err.print(message);
-        writer.write(message);
+        log(Level.WARNING, system, message, args);
     }
 
     /**
@@ -93,11 +112,7 @@ public class Log {
      * @param args arguments to the message format string
      */
     public static void error(String system, String message, final Object... args) {
-        message = String.format(timeString() + " (Error) " + "[" + system + "] " + message + "\n",
-                args);
-        // Print to the console.
-        System.err.print(message);
-        writer.write(message);
+        log(Level.ERROR, system, message, args);
     }
 
     /**
@@ -121,24 +136,208 @@ public class Log {
      * @param message Message to Log
      */
     public static void println(String system, String message, final Object... args) {
-        message = String.format(timeString() + " (Output) " + "[" + system + "] " + message + "\n",
-                args);
-        // Print to the console.
-        System.out.print(message);
-        writer.write(message);
+        log(Level.OUTPUT, system, message, args);
+    }
+
+    /**
+     * Would a message at this level be logged for this subsystem? Use to skip building
+     * expensive messages.
+     * 
+     * @param level the type of message.
+     * @param system Name of the subsystem (used for logging identification)
+     */
+    public static boolean isEnabled(Level level, String system) {
+        Level minimum = system == null ? defaultLevel : levels.getOrDefault(system, defaultLevel);
+        return level.ordinal() >= minimum.ordinal();
+    }
+
+    /**
+     * @param system Name of the subsystem (used for logging identification)
+     * @return true if debug messages from this subsystem are logged.
+     */
+    public static boolean isDebugEnabled(String system) {
+        return isEnabled(Level.DEBUG, system);
+    }
+
+    /**
+     * Only log messages at this level or above for this subsystem. Can be changed at any time.
+     * 
+     * @param system Name of the subsystem (used for logging identification)
+     * @param level the lowest type of message to log, or null to use the default level.
+     */
+    public static void setLevel(String system, Level level) {
+        if (level == null) {
+            levels.remove(system);
+        } else {
+            levels.put(system, level);
+        }
+    }
+
+    /**
+     * Only log messages at this level or above for subsystems without their own level.
+     */
+    public static void setDefaultLevel(Level level) {
+        defaultLevel = level;
+    }
+
+    /**
+     * Sets the default level and all of the subsystem levels from a string, eg
+     * "Info,Drivebase=Debug,LED=Warning". Subsystems not listed go back to the default level.
+     * Entries that can't be understood are skipped with a warning.
+     * 
+     * @param spec comma separated list of levels, an entry without a subsystem name is the
+     *        default.
+     */
+    public static void setLevels(String spec) {
+        Level newDefault = Level.DEBUG;
+        Map<String, Level> newLevels = new HashMap<>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            String system = equals < 0 ? null : entry.substring(0, equals).trim();
+            Level level = Level.fromString(equals < 0 ? entry : entry.substring(equals + 1));
+            if (level == null) {
+                warning("Logging", "Unknown log level in '%s'", entry);
+            } else if (system == null) {
+                newDefault = level;
+            } else {
+                newLevels.put(system, level);
+            }
+        }
+        defaultLevel = newDefault;
+        levels.keySet().retainAll(newLevels.keySet());
+        levels.putAll(newLevels);
+        info("Logging", "Log levels set to '%s'", spec);
+    }
+
+    /**
+     * Create the files for the next restart in the background so restartLogs() only has to swap
+     * them in. Call while disabled so they are ready before the robot is enabled. Does nothing
+     * if they have already been prepared.
+     */
+    public static synchronized void prepareRestart() {
+        if (nextWriter != null) {
+            return;
+        }
+        nextWriter = LogFileTasks.submit(() -> createWriter(LogFileNumber.reserveNext(), false));
     }
 
     /**
      * Restart logging. Called each time robot is enabled or initialised.
+     * 
+     * Everything logged before this call is written to the old log file and everything after to
+     * the new one. If prepareRestart() has been called this doesn't touch the file system,
+     * otherwise it waits for the new file to be created.
      */
     public static void restartLogs() {
         System.out.println("########## Restarting robot log ##########");
-        LogFileNumber.increment();
-        writer.flush();
+        Future<LogWriter> prepared;
+        synchronized (Log.class) {
+            prepareRestart();
+            prepared = nextWriter;
+            nextWriter = null;
+        }
+        LogWriter newWriter;
+        try {
+            newWriter = prepared.get();
+        } catch (Exception e) {
+            System.err.println("Failed to create new log file");
+            e.printStackTrace();
+            newWriter = new NullLogWriter();
+        }
+        LogFileNumber.increment(); // Changes to the number that was reserved for the new file.
+        background.switchWriter(newWriter);
+        writer = newWriter;
         // Make the time start at zero within the log file.
         timeOffset = Strongback.timeSystem().currentTime();
-        // Create a new logger to get new files.
-        writer = createWriter();
+
+        // Now logging to the new file, do the slow work that can wait.
+        final LogWriter latestWriter = newWriter;
+        final long logNum = LogFileNumber.get();
+        LogFileTasks.run("create latest log links", () -> {
+            latestWriter.createSymbolicLink(Config.logging.latestExtension, "Latest");
+            if (isOnRobot()) {
+                createFrcLog(RobotName.get(), logNum);
+            }
+        });
+    }
+
+    /**
+     * Write out everything that has been logged so far. Blocks until it has been written.
+     */
+    public static void flush() {
+        background.drain();
+    }
+
+    /**
+     * @return the number of log messages thrown away because they were logged faster than they
+     *         could be written.
+     */
+    public static long getDroppedCount() {
+        return background.getDroppedCount();
+    }
+
+    /**
+     * @return the number of times the log queue has filled up and messages were dropped.
+     */
+    public static long getOverflowCount() {
+        return background.getOverflowCount();
+    }
+
+    /**
+     * @return the recent log lines, for clients (eg websockets) to subscribe to.
+     */
+    public static synchronized LogBroadcast getBroadcast() {
+        if (broadcast.getState() == Thread.State.NEW) {
+            // Only needed once somebody is listening.
+            broadcast.start();
+        }
+        return broadcast;
+    }
+
+    /**
+     * The type of message, included in each line of the log.
+     */
+    public enum Level {
+        DEBUG("Debug"), INFO("Info"), WARNING("Warning"), ERROR("Error"), OUTPUT("Output");
+
+        private final String label;
+
+        private Level(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @param name either the label or the name, eg "Debug" or "DEBUG".
+         * @return the matching level or null if there is no such level.
+         */
+        public static Level fromString(String name) {
+            for (Level level : values()) {
+                if (level.label.equalsIgnoreCase(name.trim())) {
+                    return level;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Formats a single line of the log. Here rather than in Log so that tools like
+         * BinaryLogDecoder can format lines without starting the logging system.
+         * 
+         * @param time seconds since the logs were restarted.
+         * @return the line, eg "12.345 (Debug) [Drivebase] message\n"
+         */
+        public String format(double time, String system, String message, Object[] args) {
+            return String.format("%.3f (%s) [%s] ", time, label, system)
+                    + String.format(message, args) + "\n";
+        }
     }
 
     /**
@@ -151,37 +350,105 @@ public class Log {
     public static void createDateFiles(Calendar timestamp, String matchDescription) {
         String timestampStr = new SimpleDateFormat("yyyyMMdd't'hhmmss").format(timestamp.getTime());
         Log.info("Logging", "Creating timestamp files %s", timestampStr);
-        try {
+        final LogWriter current = writer;
+        // Creating the links is slow, don't make the caller wait.
+        LogFileTasks.run("create logging symlinks", () -> {
             // Create links based on the timestamp.
-            writer.createSymbolicLink(Config.logging.dateExtension, timestampStr);
-            writer.createSymbolicLink(Config.logging.eventExtension, matchDescription);
-        } catch (final Exception e) {
-            System.out.printf("Error creating logging symlinks\n");
-            e.printStackTrace();
-        }
+            current.createSymbolicLink(Config.logging.dateExtension, timestampStr);
+            current.createSymbolicLink(Config.logging.eventExtension, matchDescription);
+        });
     }
 
     // Implementation only from here.
 
     private static double timeOffset = 0;
 
-    // FRC log doesn't get reset when our log does so we only want to tail -2000 on the first
+    // Messages below these levels are thrown away. Per subsystem levels override the default.
+    private static volatile Level defaultLevel = Level.DEBUG;
+    private static final ConcurrentHashMap<String, Level> levels = new ConcurrentHashMap<>();
+
+    // Copies FRC_UserProgram.log to the flash drive. Created by the first createFrcLog().
+    // FRC log doesn't get reset when our log does so we only want a long tail on the first
     // creation of the log.
-    private static boolean firstRun = true;
+    private static FileFollower frcLogFollower = null;
 
-    public static LogWriter writer = createWriter();
+    public static volatile LogWriter writer = createWriter(LogFileNumber.get(), true);
 
-    private static LogWriter createWriter() {
-        if (System.getProperty("user.name").equals("lvuser")) {
-            // Running on the robot. Log for real.
+    // The file for the next restart, being created in the background. Null if not prepared.
+    private static Future<LogWriter> nextWriter = null;
+
+    // The recent lines, for websocket clients.
+    private static final LogBroadcast broadcast = new LogBroadcast(
+            Config.logging.broadcast.lines, Config.logging.broadcast.backlogLines,
+            Config.logging.broadcast.maxLinesPerPoll, Config.logging.broadcast.pollPeriodSec);
+
+    // Does the formatting and writing of messages on its own thread.
+    private static final BackgroundLogWriter background =
+            new BackgroundLogWriter(writer, Config.logging.queue.size,
+                    Config.logging.queue.flushBytes, Config.logging.queue.flushPeriodSec,
+                    Config.logging.queue.pollPeriodSec, broadcast);
+
+    static {
+        if (isOnRobot()) {
             final long logNum = LogFileNumber.get();
-            final String robotName = RobotName.get();
-            final String baseDir = Paths.get(Config.logging.basePath, robotName).toString();
+            LogFileTasks.run("copy FRC log", () -> createFrcLog(RobotName.get(), logNum));
+        }
+        background.start();
+        // Make sure nothing is lost when the robot code exits.
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "LogFlush"));
+    }
+
+    /**
+     * Queue the message to be formatted and written by the background writer. The time is
+     * captured now so it reflects when the message was logged, not when it was written.
+     */
+    private static void log(Level level, String system, String message, Object[] args) {
+        if (!isEnabled(level, system)) {
+            return;
+        }
+        background.add(level, currentTime(), system, message, args);
+    }
+
+    /**
+     * Only calls the supplier if the message will be logged. The supplier is called now rather
+     * than on the writer thread so the message reflects the current state of the robot.
+     */
+    private static void log(Level level, String system, Supplier<String> message) {
+        if (!isEnabled(level, system)) {
+            return;
+        }
+        // The message may contain '%' so it must not be used as the format string.
+        background.add(level, currentTime(), system, "%s", new Object[] {message.get()});
+    }
+
+    /**
+     * Formats a single line of the log.
+     * 
+     * @param time seconds since the logs were restarted.
+     * @return the line, eg "12.345 (Debug) [Drivebase] message\n"
+     */
+    public static String format(Level level, double time, String system, String message,
+            Object[] args) {
+        return level.format(time, system, message, args);
+    }
+
+    /**
+     * @param logNum the number of the new log file.
+     * @param createLatestLink false if the caller will create the Latest link later.
+     */
+    private static LogWriter createWriter(long logNum, boolean createLatestLink) {
+        if (isOnRobot()) {
+            // Running on the robot. Log for real.
+            final String baseDir =
+                    Paths.get(Config.logging.basePath, RobotName.get()).toString();
             try {
-                // Combination of tail flags to make it unique and harder to accidentally kill other
-                // tail processes.
-                createFrcLog(robotName, logNum);
-                return new TimestampedLogWriter(baseDir, "log", logNum, "txt");
+                if (Config.logging.binary) {
+                    // Decode with BinaryLogDecoder.
+                    return new BinaryLogWriter(baseDir, "log", logNum, "bin", createLatestLink);
+                }
+                // The background writer decides when to flush.
+                return new TimestampedLogWriter(baseDir, "log", logNum, "txt", false,
+                        createLatestLink);
             } catch (final IOException e) {
                 System.err.println(
                         "Failed to create logger, maybe usb flash drive isn't plugged in?");
@@ -193,10 +460,14 @@ public class Log {
         return new NullLogWriter();
     }
 
+    private static boolean isOnRobot() {
+        return System.getProperty("user.name").equals("lvuser");
+    }
+
     private static void createFrcLog(String robotName, long logNum) {
         String timestampStr =
                 new SimpleDateFormat("yyyyMMdd't'hhmmss").format(Calendar.getInstance().getTime());
-        final Path frcLogPath = Paths.get("/home/lvuser/FRC_UserProgram.log");
+        final Path frcLogPath = Paths.get(Config.logging.frcLog.path);
         final Path frcLogCopy =
                 Paths.get(Config.logging.flashDrive, robotName, Config.logging.dataExtension,
                         String.format("FRC_UserProgram_%05d.log", logNum));
@@ -206,18 +477,20 @@ public class Log {
                 Paths.get(Config.logging.flashDrive, robotName, Config.logging.dateExtension,
                         String.format("%s_FRC_UserProgram.log", timestampStr));
 
-        // Combination of tail flags to make it unique and harder to accidentally kill other
-        // tail processes.
-        runCommand("kill -9 $(ps | egrep 'tail -20+ -fq' | awk '{print $1}')");
         try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
+            if (frcLogFollower == null) {
+                frcLogFollower =
+                        new FileFollower(frcLogPath, Config.logging.frcLog.pollPeriodMSec);
+                frcLogFollower.start();
+                frcLogFollower.follow(frcLogCopy, Config.logging.frcLog.firstTailLines);
+            } else {
+                frcLogFollower.follow(frcLogCopy, Config.logging.frcLog.tailLines);
+            }
+        } catch (IOException e) {
+            System.err.printf("Failed to copy %s to %s\n", frcLogPath, frcLogCopy);
             e.printStackTrace();
+            return;
         }
-        runCommand(String.format(
-                "tail -%s -fq %s > %s",
-                (firstRun ? "2000" : "20"), frcLogPath.toString(), frcLogCopy.toString()));
-        firstRun = false;
         FileUtil.createSymbolicLink(frcLogLatest, frcLogCopy);
         FileUtil.createSymbolicLink(frcLogTimestamped, frcLogCopy);
     }
@@ -226,18 +499,7 @@ public class Log {
      * Create the timestamp for this message. We use the robot time, so each log
      * entry is time stamped for when it happened during the match.
      */
-    private static String timeString() {
-        return String.format("%.3f", Strongback.timeSystem().currentTime() - timeOffset);
-    }
-
-    private static void runCommand(String command) {
-        try {
-            System.out.println("Running command: " + command);
-            Runtime.getRuntime()
-                    .exec(new String[] {"bash", "-c", command});
-        } catch (IOException e) {
-            System.err.println("Error running command: " + command);
-            e.printStackTrace();
-        }
+    static double currentTime() {
+        return Strongback.timeSystem().currentTime() - timeOffset;
     }
 }
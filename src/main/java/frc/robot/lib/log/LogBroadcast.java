@@ -0,0 +1,246 @@
+package frc.robot.lib.log;
+
+
+
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps the most recent log lines in memory and sends them to clients (eg the LogServer
+ * websockets) as they are written, instead of each client reading the log file back off the
+ * flash drive.
+ *
+ * A new client is first sent the last few lines so it has some context. Each client can ask for
+ * only some levels and subsystems, the filtering is done here.
+ *
+ * A client that still has lines waiting to go out isn't sent any more until it catches up. If it
+ * falls so far behind that its lines have been overwritten it's told how many it missed and
+ * carries on from the oldest line still kept, so a slow client never uses more than a bounded
+ * amount of memory.
+ *
+ * Debug lines aren't formatted when there is no use for the text, so they are only kept while a
+ * client is connected.
+ */
+public class LogBroadcast extends Thread {
+    private final Log.Level[] levels;
+    private final String[] systems;
+    private final double[] times;
+    private final String[] lines;
+    private final int backlogLines;
+    private final int maxLinesPerPoll;
+    private final long pollNanos;
+    private long added = 0; // Sequence number of the next line.
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Where the lines are sent, eg a websocket connection.
+     */
+    public interface Client {
+        /**
+         * @return true if the last lines haven't been sent yet, so no more should be sent yet.
+         */
+        public boolean isBusy();
+
+        /**
+         * Send a line, without the trailing newline, without waiting for it to be sent.
+         */
+        public void send(String line);
+    }
+
+    /**
+     * @param capacity how many lines to keep.
+     * @param backlogLines how many of the kept lines to send to a new client.
+     * @param maxLinesPerPoll the most lines to send to a client at once.
+     * @param pollPeriodSec how long to wait before checking for new lines again.
+     */
+    LogBroadcast(int capacity, int backlogLines, int maxLinesPerPoll, double pollPeriodSec) {
+        levels = new Log.Level[capacity];
+        systems = new String[capacity];
+        times = new double[capacity];
+        lines = new String[capacity];
+        this.backlogLines = Math.min(backlogLines, capacity);
+        this.maxLinesPerPoll = maxLinesPerPoll;
+        this.pollNanos = (long) (pollPeriodSec * 1e9);
+        setName("LogBroadcast");
+        setDaemon(true); // Don't stop the JVM from exiting.
+        setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Start sending lines to a new client, starting with the recent lines.
+     */
+    public Subscription subscribe(Client client) {
+        Subscription subscription;
+        synchronized (this) {
+            subscription = new Subscription(client, Math.max(0, added - backlogLines));
+        }
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * @return true if anybody is listening, so debug lines should be formatted and kept.
+     */
+    boolean hasClients() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Keep a formatted line. Called on the log writer thread.
+     *
+     * @param text the line including the trailing newline.
+     */
+    synchronized void publish(Log.Level level, double time, String system, String text) {
+        int slot = (int) (added % lines.length);
+        levels[slot] = level;
+        times[slot] = time;
+        systems[slot] = system;
+        lines[slot] = text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+        added++;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                sendQueued();
+                LockSupport.parkNanos(pollNanos);
+            } catch (Throwable e) {
+                // Keep going, the clients may still be there.
+                System.err.println("Exception while sending log lines:");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Send the new lines to each client that isn't busy.
+     */
+    void sendQueued() {
+        ArrayList<String> batch = new ArrayList<>();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.client.isBusy()) {
+                continue;
+            }
+            batch.clear();
+            collect(subscription, batch);
+            for (String line : batch) {
+                subscription.client.send(line);
+            }
+        }
+    }
+
+    /**
+     * Copy out the lines this client wants, so they can be sent without holding the lock.
+     */
+    private synchronized void collect(Subscription subscription, ArrayList<String> batch) {
+        long oldest = Math.max(0, added - lines.length);
+        if (subscription.next < oldest) {
+            // Too slow, the lines it hasn't been sent have been overwritten.
+            long missed = oldest - subscription.next;
+            subscription.missedCount += missed;
+            subscription.next = oldest;
+            batch.add(Log.Level.WARNING.format(times[(int) (oldest % lines.length)], "LogServer",
+                    "Client too slow, skipped %d lines", new Object[] {missed}).trim());
+        }
+        Filter filter = subscription.filter;
+        for (; subscription.next < added && batch.size() < maxLinesPerPoll; subscription.next++) {
+            int slot = (int) (subscription.next % lines.length);
+            if (filter.matches(levels[slot], systems[slot])) {
+                batch.add(lines[slot]);
+            }
+        }
+    }
+
+    /**
+     * One client and which lines it wants.
+     */
+    public static class Subscription {
+        private final Client client;
+        private volatile Filter filter = Filter.parse("");
+        // Sequence number of the next line to look at. Protected by the LogBroadcast lock.
+        private long next;
+        private volatile long missedCount = 0;
+
+        Subscription(Client client, long next) {
+            this.client = client;
+            this.next = next;
+        }
+
+        /**
+         * Change which lines are sent.
+         *
+         * @param message the lowest level and subsystems wanted, eg "level=Info Drivebase
+         *        Shooter". Subsystem names ending in '*' match by prefix. No subsystems means all
+         *        of them.
+         * @throws IllegalArgumentException if the level isn't known.
+         */
+        public void request(String message) {
+            filter = Filter.parse(message);
+        }
+
+        /**
+         * @return the number of lines overwritten before they could be sent to this client.
+         */
+        long getMissedCount() {
+            return missedCount;
+        }
+    }
+
+    /**
+     * The lowest level and the subsystems a client wants.
+     */
+    static class Filter {
+        final Log.Level level;
+        final String[] systems;
+
+        Filter(Log.Level level, String[] systems) {
+            this.level = level;
+            this.systems = systems;
+        }
+
+        static Filter parse(String message) {
+            Log.Level level = Log.Level.DEBUG;
+            ArrayList<String> systems = new ArrayList<>();
+            for (String token : message.trim().split("[\\s,]+")) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                if (token.startsWith("level=")) {
+                    String name = token.substring("level=".length());
+                    level = Log.Level.fromString(name);
+                    if (level == null) {
+                        throw new IllegalArgumentException("Unknown log level: " + name);
+                    }
+                    continue;
+                }
+                systems.add(token);
+            }
+            return new Filter(level, systems.toArray(new String[0]));
+        }
+
+        boolean matches(Log.Level lineLevel, String system) {
+            if (lineLevel.ordinal() < level.ordinal()) {
+                return false;
+            }
+            if (systems.length == 0) {
+                return true;
+            }
+            for (String wanted : systems) {
+                if (wanted.endsWith("*")) {
+                    if (system.startsWith(wanted.substring(0, wanted.length() - 1))) {
+                        return true;
+                    }
+                } else if (system.equals(wanted)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -34,9 +34,14 @@ import java.nio.file.Paths;
  * The different log files (chart, etc) all share the same number and they are
  * all recreated with a new number when the robot is enabled so that output of
  * every enable is in a new file.
+ * 
+ * So that the files can be created before the robot is enabled, the next
+ * number can be reserved while the current one is still in use.
  */
 public class LogFileNumber {
-    static long value = 0;
+    static volatile long value = 0;
+    // The number reserved for the next set of files, or 0 if none reserved.
+    private static long reserved = 0;
 
     static {
         // Increment and get the number from disk.
@@ -52,33 +57,58 @@ public class LogFileNumber {
         return value;
     }
 
+    /**
+     * Reserves the number that the next call to increment() will change to, so the
+     * next set of files can be created ahead of time. Calling it again returns the
+     * same number until increment() is called.
+     * 
+     * @return the next log file number.
+     */
+    public static synchronized long reserveNext() {
+        if (reserved == 0) {
+            reserved = next();
+        }
+        return reserved;
+    }
+
+    /**
+     * Changes to the next log file number, using the reserved one if there is
+     * one.
+     */
+    public static synchronized void increment() {
+        value = reserveNext();
+        reserved = 0;
+    }
+
     /**
      * Reads the file and increments (or uses 1 if no such file exists) and writes
      * the log file number back out.
      */
-    public static void increment() {
+    private static long next() {
+        long number;
         var path = Paths.get(Config.logging.basePath, RobotName.get(), "lognumber.txt");
         try {
             BufferedReader br = Files.newBufferedReader(path);
             String s = br.readLine(); // read the line into the buffer.
-            value = Integer.parseInt(s);
+            number = Integer.parseInt(s);
             br.close();
-            value++;
+            number++;
         } catch (IOException | NumberFormatException e) {
             System.err.printf("Cannot read %s. Resetting log number to 1.\n", path.toString());
-            value = 1;
+            number = 1;
         }
         try {
             // Ensure the parent directory exists.
             Files.createDirectories(path.getParent());
             BufferedWriter bw = Files.newBufferedWriter(path);
-            bw.write(value + "\n");
+            bw.write(number + "\n");
             bw.flush();
             bw.close();
-            System.out.printf("Wrote %d to %s\n", value, path);
+            System.out.printf("Wrote %d to %s\n", number, path);
         } catch (IOException e) {
             e.printStackTrace();
             System.out.println("Cannot write log number file. Possible old file overwrite.");
         }
+        return number;
     }
 }
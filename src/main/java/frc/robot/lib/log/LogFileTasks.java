@@ -0,0 +1,46 @@
+package frc.robot.lib.log;
+
+
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs slow file system work for the log and chart files (opening files, creating symbolic links,
+ * closing old files) on a low priority background thread.
+ *
+ * This keeps the work off the mode change path (autonomousInit, teleopInit) so the robot can
+ * start moving as soon as it's enabled. Tasks are run one at a time in the order they were
+ * submitted, so a symbolic link is never created before the file it points to.
+ */
+public class LogFileTasks {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "LogFileTasks");
+        thread.setDaemon(true); // Don't stop the JVM from exiting.
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Run the task in the background.
+     */
+    public static void run(String description, Runnable task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                System.err.printf("Failed to %s: %s\n", description, e);
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Run the task in the background. Use the future to get the result once it's needed.
+     */
+    public static <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+}
@@ -0,0 +1,131 @@
+package frc.robot.lib.log;
+
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed size queue of log records that many threads can add to and a single thread removes from.
+ *
+ * All of the records are allocated up front so queuing a message doesn't allocate or take a lock.
+ * A producer claims a slot with a single compare and set and if the queue is full the message is
+ * rejected so the caller (eg the Strongback executor thread) never has to wait for the flash
+ * drive.
+ *
+ * Each slot has a sequence number that says if it's free for a producer to fill or ready for the
+ * consumer to read. This is the bounded queue design by Dmitry Vyukov.
+ */
+class LogRingBuffer {
+
+    /**
+     * A single queued log message. The message is only formatted when it's written out.
+     */
+    static class Record {
+        private volatile long sequence;
+        Log.Level level;
+        double time; // Seconds since the logs were restarted.
+        String system;
+        String message;
+        Object[] args;
+    }
+
+    private final Record[] records;
+    private final int mask;
+    // Next slot to be claimed by a producer.
+    private final AtomicLong tail = new AtomicLong();
+    // Next slot to be read by the consumer. Only changed by the consumer thread.
+    private volatile long head = 0;
+
+    /**
+     * @param capacity the maximum number of queued messages. Rounded up to a power of two.
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        records = new Record[size];
+        mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            records[i] = new Record();
+            records[i].sequence = i;
+        }
+    }
+
+    /**
+     * Add a message to the queue. Safe to call from any thread.
+     *
+     * @return false if the queue was full and the message was not added.
+     */
+    boolean offer(Log.Level level, double time, String system, String message, Object[] args) {
+        long pos = tail.get();
+        while (true) {
+            Record record = records[(int) (pos & mask)];
+            long diff = record.sequence - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    record.level = level;
+                    record.time = time;
+                    record.system = system;
+                    record.message = message;
+                    record.args = args;
+                    // Publish the record to the consumer.
+                    record.sequence = pos + 1;
+                    return true;
+                }
+                // Another thread claimed this slot first, try the next one.
+                pos = tail.get();
+            } else if (diff < 0) {
+                // The consumer hasn't yet freed this slot, the queue is full.
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Returns the oldest queued record without removing it. Only to be called by the consumer
+     * thread. Call {@link #remove()} once finished with the record.
+     *
+     * @return the oldest record or null if the queue is empty.
+     */
+    Record peek() {
+        Record record = records[(int) (head & mask)];
+        if (record.sequence != head + 1) {
+            return null; // Not yet published.
+        }
+        return record;
+    }
+
+    /**
+     * Frees the record returned by {@link #peek()} so a producer can reuse it.
+     */
+    void remove() {
+        Record record = records[(int) (head & mask)];
+        // Drop references so the arguments can be garbage collected.
+        record.system = null;
+        record.message = null;
+        record.args = null;
+        record.sequence = head + records.length;
+        head = head + 1;
+    }
+
+    /**
+     * @return the total number of messages that have been claimed by producers.
+     */
+    long getAddedCount() {
+        return tail.get();
+    }
+
+    /**
+     * @return the total number of messages that have been removed by the consumer.
+     */
+    long getRemovedCount() {
+        return head;
+    }
+
+    /**
+     * @return the maximum number of messages that can be queued.
+     */
+    int capacity() {
+        return records.length;
+    }
+}
@@ -23,6 +23,7 @@ public class TimestampedLogWriter implements LogWriter {
     private final String baseDir; // All logs are below this directory
     private Path filePath = null;
     private BufferedWriter writer = null;
+    private final boolean flushEveryWrite;
 
     /**
      * Write free form data to a file and create multiple symbolic links to it.
@@ -46,16 +47,53 @@ public class TimestampedLogWriter implements LogWriter {
      */
     public TimestampedLogWriter(String baseDir, String name, long filenum, String extn)
             throws IOException {
+        this(baseDir, name, filenum, extn, true);
+    }
+
+    /**
+     * Write free form data to a file and create multiple symbolic links to it.
+     * 
+     * @param baseDir Where on the file system to put the logging directories.
+     * @param name the type of data, eg "data", "chart"
+     * @param filenum the number of the file. Incremented every start of the code.
+     * @param extn the file extension
+     * @param flushEveryWrite if false, the data is only written to disk when flush() is called
+     *        or the buffer fills.
+     * @throws IOException
+     */
+    public TimestampedLogWriter(String baseDir, String name, long filenum, String extn,
+            boolean flushEveryWrite) throws IOException {
+        this(baseDir, name, filenum, extn, flushEveryWrite, true);
+    }
+
+    /**
+     * Write free form data to a file and optionally create the 'Latest' symlink.
+     * 
+     * @param baseDir Where on the file system to put the logging directories.
+     * @param name the type of data, eg "data", "chart"
+     * @param filenum the number of the file. Incremented every start of the code.
+     * @param extn the file extension
+     * @param flushEveryWrite if false, the data is only written to disk when flush() is called
+     *        or the buffer fills.
+     * @param createLatestLink if false, the file is being created ahead of time and the caller
+     *        will create the 'Latest' symlink when the file starts being used.
+     * @throws IOException
+     */
+    public TimestampedLogWriter(String baseDir, String name, long filenum, String extn,
+            boolean flushEveryWrite, boolean createLatestLink) throws IOException {
         this.baseDir = baseDir;
         this.name = name;
         this.extn = extn;
+        this.flushEveryWrite = flushEveryWrite;
         // The absolute path to the data file so we can write to the file.
         filePath = Paths.get(baseDir, "data", String.format("%s_%05d.%s", name, filenum, extn));
         // Ensure the parent directory exists.
         Files.createDirectories(filePath.getParent());
         // Create the file writer.
         writer = Files.newBufferedWriter(filePath);
-        createSymbolicLink("latest", "Latest");
+        if (createLatestLink) {
+            createSymbolicLink("latest", "Latest");
+        }
     }
 
     /**
@@ -77,7 +115,9 @@ public class TimestampedLogWriter implements LogWriter {
             return; // File logging not enabled.
         try {
             writer.write(contents);
-            writer.flush();
+            if (flushEveryWrite) {
+                writer.flush();
+            }
         } catch (Exception e) {
             // nothing to do. If we can't write to the log file it's not a disaster.
         }
@@ -24,7 +24,7 @@ public class MonitorImpl extends Subsystem implements Monitor {
         systemMemory = osBean.getTotalPhysicalMemorySize() / 1024 / 1024; // Convert bytes to
         // megabytes
         Chart.register(() -> getCpuUsage(), "%s/CPU", name);
-        Chart.register(() -> getMemoryUsed(), "%s/Memory Used Ratio", name);
+        Chart.register(() -> getMemoryUsed(), Chart.Rate.SLOW, "%s/Memory Used Ratio", name);
     }
 
     private double getCpuUsage() {
@@ -32,6 +32,8 @@ import org.strongback.mock.Mock;
 public class Subsystems implements DashboardUpdater, LogHelper {
     // Not really a subsystem, but used by all subsystems.
     public Clock clock;
+    // Gives the time the executor cycle started, for the subsystems the executor runs.
+    public Clock cycleClock;
     public LEDStrip ledStrip;
     public Location location;
     public Drivebase drivebase;
@@ -57,7 +59,12 @@ public class Subsystems implements DashboardUpdater, LogHelper {
     public InputDevice gamepad;
 
     public Subsystems(Clock clock, InputDevice gamepad) {
+        this(clock, clock, gamepad);
+    }
+
+    public Subsystems(Clock clock, Clock cycleClock, InputDevice gamepad) {
         this.clock = clock;
+        this.cycleClock = cycleClock;
         this.gamepad = gamepad;
     }
 
@@ -120,8 +127,8 @@ public class Subsystems implements DashboardUpdater, LogHelper {
             drivebase = new MockDrivebase();
             return;
         }
-        Motor leftMotor = MotorFactory.getDriveMotor(true, clock);
-        Motor rightMotor = MotorFactory.getDriveMotor(false, clock);
+        Motor leftMotor = MotorFactory.getDriveMotor(true, cycleClock);
+        Motor rightMotor = MotorFactory.getDriveMotor(false, cycleClock);
 
         leftMotor.setPosition(0);
         rightMotor.setPosition(0);
@@ -150,8 +157,10 @@ public class Subsystems implements DashboardUpdater, LogHelper {
         Gyroscope gyro = new NavXGyroscope("NavX", Config.navx.present);
         gyro.zero();
         // Encoders must return metres.
-        location = new LocationImpl(drivebase, gyro, clock);
+        location = new LocationImpl(drivebase, gyro, cycleClock);
         Strongback.executor().register(location, Priority.HIGH);
+        // Update the location from the latest encoder values before the drivebase uses it.
+        Strongback.executor().addDependency(drivebase, location);
     }
 
     public void createIntake() {
@@ -229,6 +238,9 @@ public class Subsystems implements DashboardUpdater, LogHelper {
         Motor motor = MotorFactory.getConveyorMotor();
         conveyor = hwConveyor = new ConveyorImpl(motor);
         Strongback.executor().register(conveyor, Priority.LOW);
+        // Only holds the duty cycle it was last given, so can be run less often when the
+        // executor is overrunning.
+        Strongback.executor().setSheddable(conveyor, true);
     }
 
     public void createConveyorOverride() {
@@ -248,7 +260,7 @@ public class Subsystems implements DashboardUpdater, LogHelper {
             return;
         }
 
-        Motor flywheel = MotorFactory.getShooterMotor(clock);
+        Motor flywheel = MotorFactory.getShooterMotor(cycleClock);
         Servo[] hoodServos = new Servo[Config.shooter.hood.channels.length];
         for (int i = 0; i < Config.shooter.hood.channels.length; i++) {
             // Use initial value slightly off middle of safe extension range as this value is near
@@ -0,0 +1,98 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import org.strongback.annotation.ThreadSafe;
+import org.strongback.components.Clock;
+
+/**
+ * A {@link Clock} that gives the same time to everything run during one cycle of the executor:
+ * the time the cycle started. Between cycles, or when the executor isn't running, it gives the
+ * current time of the underlying clock.
+ * <p>
+ * Reading the time once per cycle is cheaper than every executable reading it, and means that
+ * everything run in a cycle is given the same time. The cycle's time is returned to any thread
+ * that asks while the cycle is running, so this is only for code run by the executor; other
+ * threads, and code that needs to know how long something within the cycle took, should use the
+ * {@link #precise() precise clock} instead.
+ */
+@ThreadSafe
+final class CycleClock implements Clock {
+
+    private static final long NOT_IN_CYCLE = Long.MIN_VALUE;
+
+    private final Clock precise;
+    private volatile long cycleTimeInNanos = NOT_IN_CYCLE;
+
+    CycleClock(Clock precise) {
+        this.precise = precise;
+    }
+
+    /**
+     * @return the clock that this reads from, which always gives the current time.
+     */
+    Clock precise() {
+        return precise;
+    }
+
+    /**
+     * Read the time once for the cycle that is starting. Called by the executor thread.
+     */
+    void startCycle() {
+        cycleTimeInNanos = precise.currentTimeInNanos();
+    }
+
+    /**
+     * Go back to giving the current time until the next cycle. Called by the executor thread.
+     */
+    void endCycle() {
+        cycleTimeInNanos = NOT_IN_CYCLE;
+    }
+
+    @Override
+    public long currentTimeInNanos() {
+        long time = cycleTimeInNanos;
+        return time != NOT_IN_CYCLE ? time : precise.currentTimeInNanos();
+    }
+
+    @Override
+    public long currentTimeInMicros() {
+        return currentTimeInNanos() / 1_000;
+    }
+
+    @Override
+    public long currentTimeInMillis() {
+        return currentTimeInNanos() / 1_000_000;
+    }
+
+    @Override
+    public double currentTime() {
+        return currentTimeInNanos() / 1_000_000_000.0;
+    }
+
+    @Override
+    public void sleepMicroseconds(long micros) throws InterruptedException {
+        precise.sleepMicroseconds(micros);
+    }
+
+    @Override
+    public String toString() {
+        return "Cycle time from " + precise;
+    }
+}
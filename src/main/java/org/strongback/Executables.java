@@ -18,8 +18,16 @@ package org.strongback;
 
 
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
 import org.strongback.annotation.ThreadSafe;
 
 /**
@@ -30,41 +38,163 @@ import org.strongback.annotation.ThreadSafe;
 @ThreadSafe
 final class Executables implements Executor {
 
+    // How many cycles apart the MEDIUM and LOW priority executables run.
+    static final int MEDIUM_FREQUENCY = 2;
+    static final int LOW_FREQUENCY = 4;
+
+    // About a second of 20ms cycles. Longer periods go round the wheel more than once.
+    private static final int WHEEL_SLOTS = 64;
+
     private final CopyOnWriteArrayList<Executable> highPriority = new CopyOnWriteArrayList<>();
     private final CopyOnWriteArrayList<Executable> mediumPriority = new CopyOnWriteArrayList<>();
     private final CopyOnWriteArrayList<Executable> lowPriority = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<Periodic> periodic = new CopyOnWriteArrayList<>();
+
+    // The timer for each executable, guarded by lock. Created when it's registered so that the
+    // executor thread never allocates. Timers are kept after unregistering so their history isn't
+    // lost.
+    private final CopyOnWriteArrayList<ExecutionTimer> timers = new CopyOnWriteArrayList<>();
+    private final Map<String, ExecutionTimer> timersByName = new HashMap<>();
+    private final Map<Executable, ExecutionTimer> timersByExecutable = new IdentityHashMap<>();
+    // The lane for each executable and what each waits for, guarded by lock.
+    private final Map<Executable, String> lanes = new IdentityHashMap<>();
+    private final Map<Executable, List<Executable>> dependencies = new IdentityHashMap<>();
+    private final Set<Executable> sheddable = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Object lock = new Object();
+    private final ExecutionTimer cycleTimer = timer("Cycle");
+    // How late each cycle started compared to when it should have.
+    private final ExecutionTimer jitterTimer = timer("Jitter");
+
+    // Everything registered as of the last change, swapped for a new one on each change.
+    private volatile long tickMillis = 20;
+    private volatile Epoch current = null;
 
-    Executables() {}
+    Executables() {
+        publish();
+    }
 
     @Override
     public boolean register(Executable r, Priority priority) {
-        if (priority != null) {
-            unregister(r);
+        return register(r, priority, MAIN_LANE);
+    }
+
+    @Override
+    public boolean register(Executable r, Priority priority, String lane) {
+        if (r != null && priority != null && lane != null) {
+            boolean added = false;
+            remove(r);
+            assignTimer(r);
+            setLane(r, lane);
             switch (priority) {
                 case HIGH:
                     mediumPriority.remove(r);
                     lowPriority.remove(r);
-                    return highPriority.addIfAbsent(r);
+                    added = highPriority.addIfAbsent(r);
+                    break;
                 case MEDIUM:
                     highPriority.remove(r);
                     lowPriority.remove(r);
-                    return mediumPriority.addIfAbsent(r);
+                    added = mediumPriority.addIfAbsent(r);
+                    break;
                 case LOW:
                     highPriority.remove(r);
                     mediumPriority.remove(r);
-                    return lowPriority.addIfAbsent(r);
+                    added = lowPriority.addIfAbsent(r);
+                    break;
             }
+            publish();
+            return added;
         }
         return false;
     }
 
+    @Override
+    public boolean register(Executable r, Duration period) {
+        return register(r, period, MAIN_LANE);
+    }
+
+    @Override
+    public boolean register(Executable r, Duration period, String lane) {
+        if (r == null || period == null || lane == null) {
+            return false;
+        }
+        for (Periodic existing : periodic) {
+            if (existing.executable.equals(r) && existing.period.equals(period)
+                    && lane.equals(laneOf(r))) {
+                return false;
+            }
+        }
+        remove(r);
+        assignTimer(r);
+        setLane(r, lane);
+        periodic.add(new Periodic(r, period));
+        publish();
+        return true;
+    }
+
+    @Override
+    public boolean addDependency(Executable task, Executable dependency) {
+        if (task == null || dependency == null || task == dependency) {
+            return false;
+        }
+        synchronized (lock) {
+            List<Executable> waitsFor = dependencies.computeIfAbsent(task, t -> new ArrayList<>());
+            if (waitsFor.contains(dependency)) {
+                return false;
+            }
+            waitsFor.add(dependency);
+        }
+        publish();
+        return true;
+    }
+
+    @Override
+    public boolean setSheddable(Executable task, boolean canShed) {
+        if (task == null) {
+            return false;
+        }
+        boolean changed;
+        synchronized (lock) {
+            changed = canShed ? sheddable.add(task) : sheddable.remove(task);
+        }
+        if (changed) {
+            publish();
+        }
+        return changed;
+    }
+
+    private void setLane(Executable r, String lane) {
+        synchronized (lock) {
+            lanes.put(r, lane);
+        }
+    }
+
+    private String laneOf(Executable r) {
+        synchronized (lock) {
+            return lanes.getOrDefault(r, MAIN_LANE);
+        }
+    }
+
     @Override
     public boolean unregister(Executable r) {
+        boolean removed = remove(r);
+        if (removed) {
+            publish();
+        }
+        return removed;
+    }
+
+    private boolean remove(Executable r) {
         if (r != null) {
             // Remove from all
             boolean removed = highPriority.remove(r);
+            removed = periodic.removeIf(p -> p.executable.equals(r)) || removed;
             removed = mediumPriority.remove(r) || removed;
             removed = lowPriority.remove(r) || removed;
+            synchronized (lock) {
+                timersByExecutable.remove(r);
+                lanes.remove(r);
+            }
             return removed;
         }
         return false;
@@ -75,6 +205,227 @@ final class Executables implements Executor {
         highPriority.clear();
         mediumPriority.clear();
         lowPriority.clear();
+        periodic.clear();
+        synchronized (lock) {
+            timersByExecutable.clear();
+            lanes.clear();
+            dependencies.clear();
+            sheddable.clear();
+        }
+        publish();
+    }
+
+    /**
+     * Set the time between executor cycles, used to work out how many cycles apart to run the
+     * executables registered with a period.
+     */
+    void useTickMillis(long tickMillis) {
+        this.tickMillis = tickMillis;
+        publish();
+    }
+
+    /**
+     * Get everything registered as of the last change. Cheap enough to call every cycle, it's a
+     * single volatile read and changes only when something is registered or unregistered.
+     */
+    Epoch current() {
+        return current;
+    }
+
+    /**
+     * Build a new epoch from the registered executables and make it the current one. The
+     * arrays are built here, on the registering thread, so the executor thread only has to
+     * notice that the epoch has changed.
+     */
+    private void publish() {
+        synchronized (lock) {
+            Executable[] high = highPriorityExecutablesAsArrays();
+            Executable[] medium = mediumPriorityExecutablesAsArrays();
+            Executable[] low = lowPriorityExecutablesAsArrays();
+            Periodic[] timed = periodic.toArray(new Periodic[0]);
+            // The main lane first, then the others in the order they were first used.
+            List<String> laneNames = new ArrayList<>();
+            laneNames.add(MAIN_LANE);
+            for (Executable[] items : new Executable[][] {high, medium, low}) {
+                for (Executable item : items) {
+                    addIfAbsent(laneNames, laneOf(item));
+                }
+            }
+            for (Periodic item : timed) {
+                addIfAbsent(laneNames, laneOf(item.executable));
+            }
+            // Ids for the executables with a priority, for recording when each has finished.
+            Map<Executable, Integer> ids = new IdentityHashMap<>();
+            Lane[] built = new Lane[laneNames.size()];
+            for (int i = 0; i < built.length; i++) {
+                String name = laneNames.get(i);
+                built[i] = new Lane(name, group(high, name, ids, false),
+                        group(medium, name, ids, true), group(low, name, ids, true),
+                        wheel(timed, name, tickMillis));
+            }
+            // Only wait for executables in other lanes. Earlier ones in the same lane have
+            // already finished, later ones can't be waited for.
+            for (Lane lane : built) {
+                for (Group group : new Group[] {lane.high, lane.medium, lane.low}) {
+                    for (int i = 0; i < group.items.length; i++) {
+                        group.waitFor[i] = waitFor(group.items[i], lane.name, ids);
+                    }
+                }
+            }
+            current = new Epoch(current == null ? 0 : current.number + 1, built, ids.size());
+        }
+    }
+
+    private static void addIfAbsent(List<String> names, String name) {
+        if (!names.contains(name)) {
+            names.add(name);
+        }
+    }
+
+    /**
+     * The items in the lane, in an order where dependencies in the lane come first.
+     *
+     * @param canShed if the items in this group can be shed when tagged as sheddable.
+     */
+    private Group group(Executable[] all, String lane, Map<Executable, Integer> ids,
+            boolean canShed) {
+        List<Executable> inLane = new ArrayList<>();
+        for (Executable item : all) {
+            if (laneOf(item).equals(lane)) {
+                inLane.add(item);
+            }
+        }
+        List<Executable> ordered = new ArrayList<>();
+        while (!inLane.isEmpty()) {
+            // The first one, in registration order, that isn't waiting for another still to go.
+            Executable next = inLane.get(0);
+            for (Executable candidate : inLane) {
+                boolean ready = true;
+                for (Executable dependency : dependencies.getOrDefault(candidate, List.of())) {
+                    if (dependency != candidate && inLane.contains(dependency)) {
+                        ready = false;
+                        break;
+                    }
+                }
+                if (ready) {
+                    next = candidate;
+                    break;
+                }
+            }
+            // If there is a loop, keep registration order for what's left in it.
+            inLane.remove(next);
+            ordered.add(next);
+        }
+        Group group = new Group(ordered.size());
+        for (int i = 0; i < group.items.length; i++) {
+            Executable item = ordered.get(i);
+            group.items[i] = item;
+            group.timers[i] = timerFor(item);
+            group.sheddable[i] = canShed && sheddable.contains(item);
+            group.ids[i] = ids.size();
+            ids.put(item, ids.size());
+        }
+        return group;
+    }
+
+    private int[] waitFor(Executable item, String lane, Map<Executable, Integer> ids) {
+        List<Integer> result = new ArrayList<>();
+        for (Executable dependency : dependencies.getOrDefault(item, List.of())) {
+            Integer id = ids.get(dependency);
+            if (id != null && !laneOf(dependency).equals(lane)) {
+                result.add(id);
+            }
+        }
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private TimingWheel wheel(Periodic[] all, String lane, long tickMillis) {
+        List<Periodic> inLane = new ArrayList<>();
+        for (Periodic item : all) {
+            if (laneOf(item.executable).equals(lane)) {
+                inLane.add(item);
+            }
+        }
+        TimingWheel wheel = new TimingWheel(WHEEL_SLOTS, inLane.size());
+        for (Periodic item : inLane) {
+            long ticks = Math.round((double) item.period.toMillis() / tickMillis);
+            wheel.add(item.executable, timerFor(item.executable), ticks,
+                    sheddable.contains(item.executable));
+        }
+        return wheel;
+    }
+
+    /**
+     * @return the timer for the whole cycle, then the jitter in when each cycle started, followed
+     *         by the timer for each executable.
+     */
+    List<ExecutionTimer> timers() {
+        return timers;
+    }
+
+    ExecutionTimer cycleTimer() {
+        return cycleTimer;
+    }
+
+    ExecutionTimer jitterTimer() {
+        return jitterTimer;
+    }
+
+    /**
+     * Get the timer with this name, creating it if needed. It will be used by the next
+     * executable registered with that name, so charts can be set up before the executable
+     * exists.
+     */
+    ExecutionTimer timer(String name) {
+        synchronized (lock) {
+            ExecutionTimer timer = timersByName.get(name);
+            if (timer == null) {
+                timer = new ExecutionTimer(name);
+                timersByName.put(name, timer);
+                timers.add(timer);
+            }
+            return timer;
+        }
+    }
+
+    /**
+     * @return the timer for the executable, or null if it isn't registered.
+     */
+    ExecutionTimer timerFor(Executable r) {
+        synchronized (lock) {
+            return timersByExecutable.get(r);
+        }
+    }
+
+    private void assignTimer(Executable r) {
+        synchronized (lock) {
+            String base = nameOf(r);
+            for (int n = 1;; n++) {
+                ExecutionTimer timer = timer(n == 1 ? base : base + "#" + n);
+                if (!timersByExecutable.containsValue(timer)) {
+                    timersByExecutable.put(r, timer);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The class name, or the enclosing class name for lambdas and anonymous classes.
+     */
+    static String nameOf(Executable r) {
+        String name = r.getClass().getName();
+        int lambda = name.indexOf("$$Lambda");
+        if (lambda >= 0) {
+            name = name.substring(0, lambda);
+        }
+        name = name.substring(name.lastIndexOf('.') + 1);
+        // Strip anonymous class numbers, but keep named nested classes.
+        while (name.matches(".*\\$\\d+")) {
+            name = name.substring(0, name.lastIndexOf('$'));
+        }
+        int nested = name.lastIndexOf('$');
+        return nested >= 0 ? name.substring(nested + 1) : name;
     }
 
     public List<Executable> lowPriorityExecutables() {
@@ -101,4 +452,104 @@ final class Executables implements Executor {
         return highPriority.toArray(new Executable[0]); // will be reallocated with correct size
     }
 
+    /**
+     * Build a timing wheel with the executables registered with a period in the main lane.
+     *
+     * @param tickMillis the time between executor cycles.
+     */
+    protected TimingWheel periodicExecutablesAsWheel(long tickMillis) {
+        return wheel(periodic.toArray(new Periodic[0]), MAIN_LANE, tickMillis);
+    }
+
+    /**
+     * The executables registered at one point in time, and their timers, in the arrays each lane
+     * loops over. Never changed once published, except for the phases and the wheels, which are
+     * only used by the thread running the lane once it has switched to this epoch, and the
+     * record of which executables have finished.
+     */
+    static final class Epoch {
+        final long number;
+        final Lane[] lanes;
+        // The last cycle, plus one, that each executable with a priority finished on, by id.
+        final AtomicLongArray finished;
+
+        Epoch(long number, Lane[] lanes, int numIds) {
+            this.number = number;
+            this.lanes = lanes;
+            this.finished = new AtomicLongArray(numIds);
+        }
+
+        Lane main() {
+            return lanes[0];
+        }
+
+        /**
+         * @return the lane with this name, or null if nothing is registered in it.
+         */
+        Lane lane(String name) {
+            for (Lane lane : lanes) {
+                if (lane.name.equals(name)) {
+                    return lane;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The executables run by one lane.
+     */
+    static final class Lane {
+        final String name;
+        final Group high;
+        final Group medium;
+        final Group low;
+        final TimingWheel wheel;
+        final PhaseBalancer phases;
+
+        Lane(String name, Group high, Group medium, Group low, TimingWheel wheel) {
+            this.name = name;
+            this.high = high;
+            this.medium = medium;
+            this.low = low;
+            this.wheel = wheel;
+            this.phases = new PhaseBalancer(medium.items.length, low.items.length,
+                    MEDIUM_FREQUENCY, LOW_FREQUENCY);
+        }
+    }
+
+    /**
+     * The executables with one priority in one lane, in the order they run.
+     */
+    static final class Group {
+        final Executable[] items;
+        final ExecutionTimer[] timers;
+        final int[] ids;
+        // The ids of the executables in other lanes that each has to wait for.
+        final int[][] waitFor;
+        // If each can be run less often when the executor is overrunning.
+        final boolean[] sheddable;
+
+        Group(int size) {
+            items = new Executable[size];
+            timers = new ExecutionTimer[size];
+            ids = new int[size];
+            waitFor = new int[size][];
+            sheddable = new boolean[size];
+        }
+    }
+
+    /**
+     * An executable registered with a period rather than a priority.
+     */
+    private static final class Periodic {
+        final Executable executable;
+        final Duration period;
+
+        Periodic(Executable executable, Duration period) {
+            this.executable = executable;
+            this.period = period;
+        }
+    }
+
 }
@@ -0,0 +1,204 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.strongback.annotation.ThreadSafe;
+
+/**
+ * A histogram of how long one {@link Executable} takes each time the executor runs it, so the
+ * cause of an overrunning cycle can be found.
+ * <p>
+ * Durations are kept in nanoseconds in log-linear buckets (16 per power of two, so within about
+ * 6%) like an HDR histogram. Only the executor thread records into it, without locks or
+ * allocating, so it can be left on in competition. Any thread can read it.
+ */
+@ThreadSafe
+public final class ExecutionTimer {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Longer durations are counted as this, about 68 seconds.
+    private static final long MAX_NANOS = (1L << 36) - 1;
+    private static final int BUCKETS = bucketOf(MAX_NANOS) + 1;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    // Only written by the executor thread.
+    private volatile long count = 0;
+    private volatile long totalNanos = 0;
+    private volatile long maxNanos = 0;
+    private volatile long overrunCount = 0;
+    private volatile boolean resetPending = false;
+
+    ExecutionTimer(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name of the executable being timed, normally its class name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Add one duration. Only called from the executor thread.
+     */
+    void record(long nanos) {
+        if (resetPending) {
+            clear();
+        }
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int bucket = bucketOf(Math.min(nanos, MAX_NANOS));
+        // Single writer, so no need for the cost of an atomic increment.
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+        totalNanos = totalNanos + nanos;
+        count = count + 1;
+    }
+
+    /**
+     * Count a cycle that overran while this was the slowest executable in it. Only called from
+     * the executor thread.
+     */
+    void recordOverrun() {
+        if (resetPending) {
+            clear();
+        }
+        overrunCount = overrunCount + 1;
+    }
+
+    /**
+     * Start again, eg at the start of each match period. Takes effect the next time this
+     * executable is run so that only the executor thread changes the counts.
+     */
+    public void reset() {
+        resetPending = true;
+    }
+
+    private void clear() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.lazySet(i, 0);
+        }
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+        overrunCount = 0;
+        resetPending = false;
+    }
+
+    /**
+     * @return the number of durations recorded.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the average duration in nanoseconds, or zero if nothing has been recorded.
+     */
+    public long getMeanNanos() {
+        long n = count;
+        return n == 0 ? 0 : totalNanos / n;
+    }
+
+    /**
+     * @return the longest duration recorded in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return how many overrunning cycles this was the slowest executable in.
+     */
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    /**
+     * @param percentile between 0 and 1, eg 0.99.
+     * @return the duration in nanoseconds that the given fraction of executions took no longer
+     *         than, rounded up to the top of its bucket. Zero if nothing has been recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= wanted) {
+                // The max is exact, so don't report more than it.
+                return Math.min(highestInBucket(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    public double getPercentileMSec(double percentile) {
+        return getPercentileNanos(percentile) / 1e6;
+    }
+
+    public double getMaxMSec() {
+        return getMaxNanos() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: count=%d p50=%.3fms p99=%.3fms max=%.3fms overruns=%d", name,
+                getCount(), getPercentileMSec(0.5), getPercentileMSec(0.99), getMaxMSec(),
+                getOverrunCount());
+    }
+
+    /**
+     * Small values each get their own bucket, after that there are SUB_BUCKETS buckets for each
+     * power of two.
+     */
+    static int bucketOf(long nanos) {
+        if (nanos < 2 * SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        int subBucket = (int) (nanos >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * The inverse of bucketOf().
+     */
+    static long highestInBucket(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -18,6 +18,7 @@ package org.strongback;
 
 
 
+import java.time.Duration;
 import org.strongback.annotation.ThreadSafe;
 
 /**
@@ -30,6 +31,17 @@ public interface Executor {
         HIGH, MEDIUM, LOW;
     }
 
+    /**
+     * The lane that runs on the executor's own thread. Used when no lane is given.
+     */
+    public static final String MAIN_LANE = "main";
+
+    /**
+     * A lane for work that doesn't need to be serialized with the control loop, eg recording and
+     * dashboard updates.
+     */
+    public static final String BACKGROUND_LANE = "background";
+
     /**
      * Register a high priority {@link Executable} task so that it is called repeatedly on
      * Strongback's executor thread.
@@ -66,6 +78,79 @@ public interface Executor {
      */
     public boolean register(Executable task, Priority priority);
 
+    /**
+     * Register an {@link Executable} task to be called on Strongback's executor thread once every
+     * period, instead of at one of the fixed priorities. Use this instead of checking the time
+     * inside {@link Executable#execute(long)}. If the given task is already registered with a
+     * priority or a different period it's moved to this period.
+     * <p>
+     * The period is rounded to a whole number of executor cycles, at least one. Tasks with the
+     * same period are spread over different cycles. If the executor falls behind so that a task
+     * misses one or more periods it's called once and then carries on at its original times,
+     * rather than being called again for each missed period.
+     *
+     * @param task the executable task
+     * @param period how often to call the task; may not be null
+     * @return {@code true} if the executable task was registered for the first time with the
+     *         given period, or {@code false} if {@code task} or {@code period} was null or it
+     *         was already registered with this executor with the given period
+     */
+    public boolean register(Executable task, Duration period);
+
+    /**
+     * Register an {@link Executable} task with the given priority to run in the given lane. Each
+     * lane other than {@link #MAIN_LANE} has its own thread, started on the same cycle as the main
+     * lane, so work in different lanes runs at the same time. Within a lane the tasks run one
+     * after the other like they do in the main lane.
+     *
+     * @param task the executable task
+     * @param priority the priority of the executable; may not be null
+     * @param lane the name of the lane; may not be null
+     * @return {@code true} if the executable task was registered, or {@code false} if
+     *         {@code task}, {@code priority} or {@code lane} was null
+     * @see #addDependency(Executable, Executable)
+     */
+    public boolean register(Executable task, Priority priority, String lane);
+
+    /**
+     * Register an {@link Executable} task to be called once every period in the given lane.
+     *
+     * @param task the executable task
+     * @param period how often to call the task; may not be null
+     * @param lane the name of the lane; may not be null
+     * @return {@code true} if the executable task was registered, or {@code false} if
+     *         {@code task}, {@code period} or {@code lane} was null
+     * @see #register(Executable, Duration)
+     */
+    public boolean register(Executable task, Duration period, String lane);
+
+    /**
+     * Make a task wait for another task to finish on each cycle that they both run. In the same
+     * lane this only changes the order they run in. In different lanes the task waits for the
+     * other lane to finish the dependency, for up to one execution period. Only applies to
+     * tasks registered with a priority, and is kept if either is unregistered and registered
+     * again.
+     *
+     * @param task the executable task that has to wait
+     * @param dependency the executable task that has to finish first
+     * @return {@code true} if the dependency was added, or {@code false} if either was null, they
+     *         are the same or it was already added
+     */
+    public boolean addDependency(Executable task, Executable dependency);
+
+    /**
+     * Allow a {@link Priority#MEDIUM MEDIUM} or {@link Priority#LOW LOW} priority task, or a
+     * task registered with a period, to be run less often, or not at all, while the executor is
+     * overrunning so that the high priority tasks keep to time. Has no effect on high priority
+     * tasks. Is kept if the task is unregistered and registered again.
+     *
+     * @param task the executable task
+     * @param sheddable true if the task can be shed
+     * @return {@code true} if this changed whether the task can be shed, or {@code false} if
+     *         {@code task} was null or it already could or couldn't be shed
+     */
+    public boolean setSheddable(Executable task, boolean sheddable);
+
     /**
      * Unregister an {@link Executable} task to no longer be called.
      *
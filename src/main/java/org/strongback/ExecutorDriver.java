@@ -18,16 +18,21 @@ package org.strongback;
 
 
 
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import org.strongback.Strongback.ExcessiveExecutionHandler;
+import org.strongback.Strongback.WaitStrategy;
 import org.strongback.annotation.ThreadSafe;
 import org.strongback.components.Clock;
 import org.strongback.components.Stoppable;
 
 /**
  * An executor that invokes registered {@link Executable}s on a fixed period.
+ * <p>
+ * The executables in the main lane run on this executor's thread. Each other lane is run by an
+ * {@link ExecutorLane} on its own thread, started at the beginning of each cycle.
  */
 @ThreadSafe
 final class ExecutorDriver implements Stoppable {
@@ -41,13 +46,49 @@ final class ExecutorDriver implements Stoppable {
     private final long executionPeriodInMillis;
     private volatile boolean running = false;
     private volatile CountDownLatch stopped = null;
-    private final int mediumPriorityFrequency = 2;
-    private final int lowPriorityFrequency = 4;
+    private final boolean staggered;
+    private final boolean useLanes;
+    private final WaitStrategy waitStrategy;
+    private final long spinInNanos;
+    private final boolean shedLoad;
+    // Null when each executable reads the time for itself.
+    private final CycleClock cycleClock;
+    // How often to spread the MEDIUM and LOW items out again using their latest times.
+    private final int rebalanceCycles = 500;
 
     ExecutorDriver(String name, Executables executables, Clock timeSystem,
             long executionPeriodInMillis, Logger logger,
             ExcessiveExecutionHandler delayInformer) {
+        this(name, executables, timeSystem, executionPeriodInMillis, logger, delayInformer, false,
+                false, WaitStrategy.SLEEP, 0, false, null);
+    }
+
+    /**
+     * @param staggered run the MEDIUM and LOW priority items on different cycles, balanced by
+     *        how long they take, rather than all of them on the same cycle.
+     * @param useLanes run each lane other than the main lane on its own thread, rather than all
+     *        of them one after the other on the executor's thread.
+     * @param waitStrategy how to wait for the start of each cycle.
+     * @param spinInNanos how long to spin for at the end of the wait when using
+     *        {@link WaitStrategy#PARK_THEN_SPIN}.
+     * @param shedLoad run the {@link Executor#setSheddable sheddable} executables less often
+     *        when cycles keep overrunning.
+     * @param cycleClock set to the time each cycle starts for the executables run in it; may be
+     *        null.
+     */
+    ExecutorDriver(String name, Executables executables, Clock timeSystem,
+            long executionPeriodInMillis, Logger logger,
+            ExcessiveExecutionHandler delayInformer, boolean staggered, boolean useLanes,
+            WaitStrategy waitStrategy, long spinInNanos, boolean shedLoad,
+            CycleClock cycleClock) {
         this.name = name;
+        this.staggered = staggered;
+        this.useLanes = useLanes;
+        this.waitStrategy = waitStrategy;
+        this.spinInNanos = spinInNanos;
+        this.cycleClock = cycleClock;
+        this.shedLoad = shedLoad;
+        executables.useTickMillis(executionPeriodInMillis);
         this.timeSystem = timeSystem;
         this.executionPeriodInMillis = executionPeriodInMillis;
         this.logger = logger;
@@ -106,102 +147,144 @@ final class ExecutorDriver implements Stoppable {
                 Thread.interrupted();
             }
         }
+        for (ExecutorLane lane : lanes) {
+            lane.join(1000);
+            if (lane.getDependencyTimeouts() > 0) {
+                logger.warn("Lane '%s' gave up waiting for other lanes %d times", lane.getName(),
+                        lane.getDependencyTimeouts());
+            }
+        }
+        lanes.clear();
     }
 
     private void run() {
         try {
-            long startTimeInMillis = 0L;
-            long stopTimeInMillis = 0L;
-            long nextTimeInMillis = 0L;
-            int loopsUntilNextMediumPriority = mediumPriorityFrequency;
-            int loopsUntilNextLowPriority = lowPriorityFrequency;
-
-            // Get read-only arrays with the various executable items ...
-            final Executable[] highPriorityItems = executables.highPriorityExecutablesAsArrays();
-            final Executable[] mediumPriorityItems =
-                    executables.mediumPriorityExecutablesAsArrays();
-            final Executable[] lowPriorityItems = executables.lowPriorityExecutablesAsArrays();
-            final int numHighPriorityItems = highPriorityItems.length;
-            final int numMediumPriorityItems = mediumPriorityItems.length;
-            final int numLowPriorityItems = lowPriorityItems.length;
+            long cycle = 0;
+            final long executionPeriodInNanos =
+                    TimeUnit.MILLISECONDS.toNanos(executionPeriodInMillis);
+            final ExecutionTimer cycleTimer = executables.cycleTimer();
+            // Each cycle is due a whole number of periods after the first one ...
+            final Pacer pacer = new Pacer(timeSystem, executionPeriodInNanos, waitStrategy,
+                    spinInNanos, executables.jitterTimer());
+            pacer.start();
+            final ExecutorLane mainLane = newLane(Executor.MAIN_LANE);
+            // What's registered, and the timers for them, so that timing them doesn't need to
+            // look anything up. Replaced when something is registered or unregistered ...
+            Executables.Epoch epoch = null;
 
             while (running) {
                 // Start a new cycle ...
-                --loopsUntilNextMediumPriority;
-                --loopsUntilNextLowPriority;
-                startTimeInMillis = timeSystem.currentTimeInMillis();
-
-                // First execute the HIGH priority items ...
-                for (int i = 0; i != numHighPriorityItems; ++i) {
-                    Executable executable = highPriorityItems[i];
-                    if (!running)
-                        return;
-                    try {
-                        executable.execute(timeSystem.currentTimeInMillis());
-                    } catch (Throwable e) {
-                        logger.error(e);
-                    }
+                long startTimeInNanos = System.nanoTime();
+                long tick = pacer.getTick();
+                if (cycleClock != null) {
+                    // Everything run on this cycle sees the same time ...
+                    cycleClock.startCycle();
                 }
 
-                // Execute the MEDIUM priority items every other time ...
-                if (loopsUntilNextMediumPriority <= 0) {
-                    for (int i = 0; i != numMediumPriorityItems; ++i) {
-                        Executable executable = mediumPriorityItems[i];
-                        if (!running)
-                            return;
-                        try {
-                            executable.execute(timeSystem.currentTimeInMillis());
-                        } catch (Throwable e) {
-                            logger.error(e);
-                        }
+                // Pick up any changes to what's registered. A single volatile read when nothing
+                // has changed ...
+                Executables.Epoch latest = executables.current();
+                if (latest != epoch) {
+                    epoch = latest;
+                    addLanes(epoch);
+                }
+
+                // Start the other lanes on their own threads ...
+                if (useLanes) {
+                    for (int i = 0; i != lanes.size(); ++i) {
+                        lanes.get(i).request(epoch, cycle, tick);
                     }
-                    // Reset the counter ...
-                    loopsUntilNextMediumPriority = mediumPriorityFrequency;
                 }
 
-                // Execute the LOW priority items every `lowPriorityFrequency` times ...
-                if (loopsUntilNextLowPriority <= 0) {
-                    for (int i = 0; i != numLowPriorityItems; ++i) {
-                        Executable executable = lowPriorityItems[i];
-                        if (!running)
+                // Run the main lane on this thread ...
+                if (!mainLane.runCycle(epoch, cycle, tick))
+                    return;
+
+                // ... or the other lanes after it if they don't have their own threads ...
+                if (!useLanes) {
+                    for (int i = 0; i != lanes.size(); ++i) {
+                        if (!lanes.get(i).runCycle(epoch, cycle, tick))
                             return;
-                        try {
-                            executable.execute(timeSystem.currentTimeInMillis());
-                        } catch (Throwable e) {
-                            logger.error(e);
-                        }
                     }
-                    // Reset the counter ...
-                    loopsUntilNextLowPriority = lowPriorityFrequency;
+                }
+                ++cycle;
+                if (cycleClock != null) {
+                    cycleClock.endCycle();
                 }
 
                 // Compute the time it took to run all of these ...
-                stopTimeInMillis = timeSystem.currentTimeInMillis();
-                long durationInMillis = stopTimeInMillis - startTimeInMillis;
-                if (durationInMillis > executionPeriodInMillis) {
-                    // It took too long to run our executables ...
-                    delayInformer.handle(durationInMillis, executionPeriodInMillis);
-                } else {
-                    // Pause until our next period begins ...
-                    nextTimeInMillis = startTimeInMillis + executionPeriodInMillis;
-                    double now = timeSystem.currentTimeInMillis();
-                    while (now < nextTimeInMillis) {
-                        // Don't busy wait here, free up the thread for the camera etc.
-                        timeSystem.sleepMilliseconds(
-                                nextTimeInMillis - now);
-                        now = timeSystem.currentTimeInMillis();
+                long durationInNanos = System.nanoTime() - startTimeInNanos;
+                cycleTimer.record(durationInNanos);
+                if (durationInNanos > executionPeriodInNanos) {
+                    // It took too long to run our executables, blame the slowest ...
+                    cycleTimer.recordOverrun();
+                    ExecutionTimer slowestTimer = mainLane.getSlowestTimer();
+                    if (slowestTimer != null) {
+                        slowestTimer.recordOverrun();
                     }
+                    delayInformer.handle(TimeUnit.NANOSECONDS.toMillis(durationInNanos),
+                            executionPeriodInMillis);
                 }
+                // Keep the HIGH priority items on time, or stop shedding now there's time
+                // again. A lane with its own thread sheds load by its own times ...
+                mainLane.updateShedding(durationInNanos, executionPeriodInNanos);
+                if (!useLanes) {
+                    // ... otherwise all the lanes take up the executor's time.
+                    for (int i = 0; i != lanes.size(); ++i) {
+                        lanes.get(i).updateShedding(durationInNanos, executionPeriodInNanos);
+                    }
+                }
+                // Pause until our next period begins, or start straight away if it already
+                // has. Don't busy wait for long here, free up the thread for the camera etc.
+                pacer.awaitNext();
             }
         } catch (InterruptedException e) {
             // The thread has been told to shut down, give up.
         } finally {
+            if (cycleClock != null) {
+                // Don't leave the time stuck if stopped part way through a cycle.
+                cycleClock.endCycle();
+            }
             CountDownLatch latch = stopped;
             if (latch != null)
                 latch.countDown();
         }
     }
 
+    // The lanes other than the main lane, in the order they were first used.
+    private final CopyOnWriteArrayList<ExecutorLane> lanes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Add any lanes used for the first time in this epoch. Lanes that are no longer used are
+     * kept, with nothing to run.
+     */
+    private void addLanes(Executables.Epoch epoch) {
+        for (Executables.Lane lane : epoch.lanes) {
+            if (lane.name.equals(Executor.MAIN_LANE)) {
+                continue;
+            }
+            boolean found = false;
+            for (ExecutorLane existing : lanes) {
+                found |= existing.getName().equals(lane.name);
+            }
+            if (!found) {
+                lanes.add(newLane(lane.name));
+            }
+        }
+    }
+
+    private ExecutorLane newLane(String laneName) {
+        boolean main = laneName.equals(Executor.MAIN_LANE);
+        // Shed after 3 overruns in a row, recover after a second under 75% of the period.
+        LoadShedder shedder = shedLoad
+                ? new LoadShedder(3, (int) (1000 / executionPeriodInMillis) + 1, 75)
+                : null;
+        return new ExecutorLane(laneName, cycleClock != null ? cycleClock : timeSystem, logger,
+                () -> running, staggered,
+                useLanes ? TimeUnit.MILLISECONDS.toNanos(executionPeriodInMillis) : 0,
+                rebalanceCycles, main ? null : executables.timer("Lane/" + laneName), shedder);
+    }
+
     private static void noDelay(long actual, long desired) {
         // do nothing
     }
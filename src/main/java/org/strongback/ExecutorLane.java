@@ -0,0 +1,412 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import org.strongback.Executor.Priority;
+import org.strongback.LoadShedder.Level;
+import org.strongback.components.Clock;
+
+/**
+ * Runs the executables registered in one lane for each cycle of the {@link ExecutorDriver}.
+ * <p>
+ * The main lane is run by the executor's own thread. Every other lane has its own thread, which
+ * the executor starts on each cycle without waiting for it to finish, so it runs at the same time
+ * as the main lane. A lane that is still busy when the next cycle starts carries on and then
+ * goes straight to the latest cycle, and the missed cycles are counted as overruns of the lane.
+ * <p>
+ * Before running an executable that depends on one in another lane it waits, for up to one
+ * period, until the other lane has finished that executable on this cycle. That is the only
+ * place lanes wait for each other.
+ * <p>
+ * Each lane {@link LoadShedder sheds its own load}: while its cycles keep overrunning, its
+ * sheddable MEDIUM, LOW and periodic items are run less often, or not at all. Skipped MEDIUM and
+ * LOW items count as finished on the cycles they are skipped. A lane with its own thread goes by
+ * how long its own cycles take, otherwise by how long the executor's whole cycle takes.
+ */
+final class ExecutorLane {
+
+    // Spin this many times waiting for a dependency before parking.
+    private static final int SPINS = 100;
+    private static final long PARK_NANOS = 20_000;
+    // Check for the executor stopping at least this often while idle.
+    private static final long PARK_IDLE_NANOS = 100_000_000;
+
+    private final String name;
+    private final Clock timeSystem;
+    private final Logger logger;
+    private final BooleanSupplier running;
+    private final boolean staggered;
+    private final long waitNanos;
+    private final int rebalanceCycles;
+    private final ExecutionTimer laneTimer;
+    // Null when not shedding load.
+    private final LoadShedder shedder;
+
+    // Only used by the thread running this lane.
+    private Executables.Epoch epoch = null;
+    private Executables.Lane lane = null;
+    private ExecutionTimer slowestTimer = null;
+    private long slowestNanos = -1;
+    private long cycleTimeInMillis = 0;
+    private Level shedding = Level.NONE;
+
+    // Set by the executor thread for the lane's own thread.
+    private volatile Thread thread = null;
+    private volatile Executables.Epoch requestedEpoch = null;
+    private volatile long requestedTick = 0;
+    private volatile long requestedCycle = -1;
+
+    private volatile long dependencyTimeouts = 0;
+
+    /**
+     * @param running false when the executor has been stopped.
+     * @param staggered spread the MEDIUM and LOW items over the cycles.
+     * @param waitNanos the longest to wait for a dependency in another lane, zero to not wait
+     *        as all the lanes are run on the same thread.
+     * @param laneTimer records how long each cycle of this lane took when it has its own
+     *        thread.
+     * @param shedder decides when to shed this lane's load; null to not shed load.
+     */
+    ExecutorLane(String name, Clock timeSystem, Logger logger, BooleanSupplier running,
+            boolean staggered, long waitNanos, int rebalanceCycles, ExecutionTimer laneTimer,
+            LoadShedder shedder) {
+        this.name = name;
+        this.timeSystem = timeSystem;
+        this.logger = logger;
+        this.running = running;
+        this.staggered = staggered;
+        this.waitNanos = waitNanos;
+        this.rebalanceCycles = rebalanceCycles;
+        this.laneTimer = laneTimer;
+        this.shedder = shedder;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return how many times an executable gave up waiting for one in another lane.
+     */
+    long getDependencyTimeouts() {
+        return dependencyTimeouts;
+    }
+
+    /**
+     * Take account of how long the last cycle took, running the sheddable executables less
+     * often, or not at all, from the next cycle if it keeps overrunning. Called by the thread
+     * running this lane, between cycles.
+     */
+    void updateShedding(long durationInNanos, long periodInNanos) {
+        if (shedder == null) {
+            return;
+        }
+        Level before = shedding;
+        if (shedder.update(durationInNanos, periodInNanos)) {
+            shedding = shedder.getLevel();
+            logShedding(before, shedding);
+        }
+    }
+
+    /**
+     * @return the timer of the slowest executable on the last cycle, or null if none ran.
+     */
+    ExecutionTimer getSlowestTimer() {
+        return slowestTimer;
+    }
+
+    /**
+     * Run everything in this lane that is due on this cycle, on the calling thread.
+     *
+     * @param latest the current registrations.
+     * @param cycle counts the executor's cycles.
+     * @param tick counts the execution periods since the executor started.
+     * @return false if the executor was stopped part way through.
+     */
+    boolean runCycle(Executables.Epoch latest, long cycle, long tick) {
+        if (latest != epoch) {
+            epoch = latest;
+            lane = latest.lane(name);
+            if (lane != null) {
+                if (staggered) {
+                    lane.phases.balance(0, lane.medium.timers, lane.low.timers);
+                } else {
+                    lane.phases.unstaggered();
+                }
+                lane.wheel.rebase(tick);
+            }
+        }
+        slowestTimer = null;
+        slowestNanos = -1;
+        if (lane == null) {
+            return true;
+        }
+        long startTimeInNanos = System.nanoTime();
+        // Given to every executable run on this cycle.
+        cycleTimeInMillis = timeSystem.currentTimeInMillis();
+        PhaseBalancer phases = lane.phases;
+        AtomicLongArray finished = epoch.finished;
+        // Anything waiting for an item that doesn't run this cycle can go straight away.
+        markNotDue(lane.medium, Priority.MEDIUM, phases, finished, cycle);
+        markNotDue(lane.low, Priority.LOW, phases, finished, cycle);
+
+        // First execute the HIGH priority items ...
+        if (!executeAll(lane.high, Priority.HIGH, phases, finished, cycle, startTimeInNanos))
+            return false;
+        long highPriorityNanos = System.nanoTime() - startTimeInNanos;
+
+        // Execute the MEDIUM priority items every other time, each on its phase ...
+        if (!executeAll(lane.medium, Priority.MEDIUM, phases, finished, cycle, startTimeInNanos))
+            return false;
+
+        // Execute the LOW priority items every fourth time, each on its phase ...
+        if (!executeAll(lane.low, Priority.LOW, phases, finished, cycle, startTimeInNanos))
+            return false;
+
+        // Execute the items registered with a period that are due, by time rather than
+        // by counting cycles so that overrunning cycles don't slow them down ...
+        TimingWheel periodicItems = lane.wheel;
+        int numDue = periodicItems.advance(tick);
+        for (int i = 0; i != numDue; ++i) {
+            if (!running.getAsBoolean())
+                return false;
+            if (isShed(periodicItems.isDueSheddable(i), periodicItems.getDueRuns(i)))
+                continue;
+            executeOne(periodicItems.getDue(i), periodicItems.getDueTimer(i));
+        }
+
+        // Every so often move the items using their latest times to even out the cycles.
+        // An item that moves runs once early or late ...
+        if (staggered && (cycle + 1) % rebalanceCycles == 0) {
+            phases.balance(highPriorityNanos, lane.medium.timers, lane.low.timers);
+        }
+        return true;
+    }
+
+    /**
+     * Start a cycle on this lane's own thread, starting the thread if needed. Doesn't wait.
+     * Called by the executor thread.
+     */
+    void request(Executables.Epoch latest, long cycle, long tick) {
+        requestedEpoch = latest;
+        requestedTick = tick;
+        requestedCycle = cycle; // Written last, it publishes the other two.
+        Thread current = thread;
+        if (current == null) {
+            current = new Thread(this::runThread);
+            current.setName("Strongback Executor " + name);
+            current.setDaemon(true);
+            current.setPriority(Thread.NORM_PRIORITY + 1);
+            thread = current;
+            current.start();
+        } else {
+            LockSupport.unpark(current);
+        }
+    }
+
+    /**
+     * Wait for this lane's thread to stop after the executor has been stopped.
+     */
+    void join(long millis) {
+        Thread current = thread;
+        if (current != null) {
+            LockSupport.unpark(current);
+            try {
+                current.join(millis);
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private void runThread() {
+        long done = -1;
+        while (running.getAsBoolean()) {
+            long cycle = requestedCycle;
+            if (cycle == done) {
+                // Woken by the executor for the next cycle.
+                LockSupport.parkNanos(this, PARK_IDLE_NANOS);
+                continue;
+            }
+            if (done >= 0 && cycle > done + 1) {
+                // Still running an earlier cycle when these started.
+                laneTimer.recordOverrun();
+                if (slowestTimer != null) {
+                    slowestTimer.recordOverrun();
+                }
+            }
+            long startTimeInNanos = System.nanoTime();
+            if (!runCycle(requestedEpoch, cycle, requestedTick))
+                return;
+            long durationInNanos = System.nanoTime() - startTimeInNanos;
+            laneTimer.record(durationInNanos);
+            updateShedding(durationInNanos, waitNanos); // waitNanos is the period here.
+            done = cycle;
+        }
+    }
+
+    private void markNotDue(Executables.Group group, Priority priority, PhaseBalancer phases,
+            AtomicLongArray finished, long cycle) {
+        for (int i = 0; i != group.items.length; ++i) {
+            if (!isDue(group, priority, phases, i, cycle)) {
+                finished.lazySet(group.ids[i], cycle + 1);
+            }
+        }
+    }
+
+    /**
+     * Execute each item due on this cycle in order, recording how long each took.
+     *
+     * @return false if the executor was stopped part way through.
+     */
+    private boolean executeAll(Executables.Group group, Priority priority, PhaseBalancer phases,
+            AtomicLongArray finished, long cycle, long startTimeInNanos) {
+        for (int i = 0; i != group.items.length; ++i) {
+            if (!running.getAsBoolean())
+                return false;
+            if (!isDue(group, priority, phases, i, cycle))
+                continue;
+            waitFor(group.waitFor[i], finished, cycle, startTimeInNanos);
+            executeOne(group.items[i], group.timers[i]);
+            finished.lazySet(group.ids[i], cycle + 1);
+        }
+        return true;
+    }
+
+    /**
+     * Wait until the items in other lanes have finished on this cycle, or until a period after
+     * the cycle started.
+     */
+    private void waitFor(int[] ids, AtomicLongArray finished, long cycle,
+            long startTimeInNanos) {
+        if (waitNanos == 0) {
+            // All the lanes are run one after the other on the same thread.
+            return;
+        }
+        for (int id : ids) {
+            int spins = 0;
+            while (finished.get(id) <= cycle) {
+                if (!running.getAsBoolean()) {
+                    return;
+                }
+                if (System.nanoTime() - startTimeInNanos > waitNanos) {
+                    // The other lane has fallen behind, don't fall behind with it.
+                    dependencyTimeouts = dependencyTimeouts + 1;
+                    return;
+                }
+                if (++spins < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Execute one item, recording how long it took.
+     */
+    private void executeOne(Executable executable, ExecutionTimer timer) {
+        long startTimeInNanos = System.nanoTime();
+        try {
+            executable.execute(cycleTimeInMillis);
+        } catch (Throwable e) {
+            logger.error(e);
+        }
+        long durationInNanos = System.nanoTime() - startTimeInNanos;
+        if (timer != null) {
+            timer.record(durationInNanos);
+            if (durationInNanos > slowestNanos) {
+                slowestNanos = durationInNanos;
+                slowestTimer = timer;
+            }
+        }
+    }
+
+    private boolean isDue(Executables.Group group, Priority priority, PhaseBalancer phases,
+            int i, long cycle) {
+        switch (priority) {
+            case MEDIUM:
+                return phases.runMedium(i, cycle)
+                        && !isShed(group.sheddable[i], cycle / Executables.MEDIUM_FREQUENCY);
+            case LOW:
+                return phases.runLow(i, cycle)
+                        && !isShed(group.sheddable[i], cycle / Executables.LOW_FREQUENCY);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @param runs counts up by one each time the item is due.
+     */
+    private boolean isShed(boolean sheddable, long runs) {
+        if (!sheddable) {
+            return false;
+        }
+        switch (shedding) {
+            case DECIMATE:
+                return runs % LoadShedder.DECIMATION != 0;
+            case SKIP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Say which executables in this lane are now being shed, if any.
+     */
+    private void logShedding(Level before, Level level) {
+        StringJoiner names = new StringJoiner(", ");
+        if (lane != null) {
+            for (Executables.Group group : new Executables.Group[] {lane.medium, lane.low}) {
+                for (int i = 0; i != group.items.length; ++i) {
+                    if (group.sheddable[i]) {
+                        names.add(group.timers[i].getName());
+                    }
+                }
+            }
+            for (int i = 0; i != lane.wheel.size(); ++i) {
+                if (lane.wheel.isSheddable(i)) {
+                    names.add(lane.wheel.getTimer(i).getName());
+                }
+            }
+        }
+        switch (level) {
+            case DECIMATE:
+                logger.warn("Executor lane '%s' is %s, running 1 in %d of: %s", name,
+                        level.compareTo(before) > 0 ? "overrunning" : "catching up",
+                        LoadShedder.DECIMATION, names);
+                break;
+            case SKIP:
+                logger.warn("Executor lane '%s' is still overrunning, skipping: %s", name,
+                        names);
+                break;
+            default:
+                logger.info("Executor lane '%s' has caught up, no longer shedding: %s", name,
+                        names);
+                break;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import org.strongback.annotation.NotThreadSafe;
+
+/**
+ * Decides when the executor should shed load, ie run the {@link Executor#setSheddable sheddable}
+ * {@link Executor.Priority#MEDIUM MEDIUM} and {@link Executor.Priority#LOW LOW} priority
+ * executables less often, so that the HIGH priority ones keep to time during CPU spikes.
+ * <p>
+ * After a number of overrunning cycles in a row it steps up from running them as normal, to only
+ * running them one time in {@link #DECIMATION}, to skipping them. Once enough cycles in a row
+ * have finished with time to spare it steps back down a level at a time.
+ */
+@NotThreadSafe
+final class LoadShedder {
+
+    public static enum Level {
+        /**
+         * Run everything as normal.
+         */
+        NONE,
+        /**
+         * Run sheddable executables one time in {@link LoadShedder#DECIMATION}.
+         */
+        DECIMATE,
+        /**
+         * Don't run sheddable executables at all.
+         */
+        SKIP;
+    }
+
+    /**
+     * How much less often sheddable executables run when decimated.
+     */
+    static final int DECIMATION = 4;
+
+    private final int overrunsToShed;
+    private final int cyclesToRecover;
+    private final int headroomPercent;
+    private Level level = Level.NONE;
+    private int overruns = 0;
+    private int underruns = 0;
+
+    /**
+     * @param overrunsToShed how many overrunning cycles in a row before shedding more.
+     * @param cyclesToRecover how many cycles in a row with headroom before shedding less.
+     * @param headroomPercent the most of the period a cycle can take and still count as having
+     *        headroom.
+     */
+    LoadShedder(int overrunsToShed, int cyclesToRecover, int headroomPercent) {
+        this.overrunsToShed = overrunsToShed;
+        this.cyclesToRecover = cyclesToRecover;
+        this.headroomPercent = headroomPercent;
+    }
+
+    Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Take account of how long the last cycle took.
+     *
+     * @return true if the level changed.
+     */
+    boolean update(long durationInNanos, long periodInNanos) {
+        if (durationInNanos > periodInNanos) {
+            underruns = 0;
+            if (++overruns >= overrunsToShed && level != Level.SKIP) {
+                overruns = 0;
+                level = Level.values()[level.ordinal() + 1];
+                return true;
+            }
+        } else if (durationInNanos * 100 <= periodInNanos * headroomPercent) {
+            overruns = 0;
+            if (++underruns >= cyclesToRecover && level != Level.NONE) {
+                underruns = 0;
+                level = Level.values()[level.ordinal() - 1];
+                return true;
+            }
+        } else {
+            // Close to the limit, neither shed more nor less.
+            overruns = 0;
+            underruns = 0;
+        }
+        return false;
+    }
+}
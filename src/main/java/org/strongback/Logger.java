@@ -91,6 +91,30 @@ public interface Logger {
      */
     public void trace(String message);
 
+    /**
+     * Log a message at the warning level, keeping the format separate from the values that
+     * change so an implementation can store them without formatting the message. The message is
+     * logged only if warning-level (or higher) logging is enabled.
+     *
+     * @param format the message, as for {@link String#format(String, Object...)}
+     * @param args the values for the format
+     */
+    public default void warn(String format, Object... args) {
+        warn(String.format(format, args));
+    }
+
+    /**
+     * Log a message at the information level, keeping the format separate from the values that
+     * change so an implementation can store them without formatting the message. The message is
+     * logged only if information-level (or higher) logging is enabled.
+     *
+     * @param format the message, as for {@link String#format(String, Object...)}
+     * @param args the values for the format
+     */
+    public default void info(String format, Object... args) {
+        info(String.format(format, args));
+    }
+
     /**
      * Get a {@link Logger} implementation that does nothing with log messages.
      * 
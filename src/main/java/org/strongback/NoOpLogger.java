@@ -52,4 +52,10 @@ final class NoOpLogger implements Logger {
     @Override
     public void trace(String message) {}
 
+    @Override
+    public void warn(String format, Object... args) {}
+
+    @Override
+    public void info(String format, Object... args) {}
+
 }
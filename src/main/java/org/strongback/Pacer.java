@@ -0,0 +1,163 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.strongback.Strongback.WaitStrategy;
+import org.strongback.annotation.NotThreadSafe;
+import org.strongback.components.Clock;
+
+/**
+ * Keeps the executor's cycles starting on a fixed grid of absolute deadlines in nanoseconds, so
+ * that small delays in waking up don't add up into drift.
+ * <p>
+ * Cycle {@code n} is due at the first deadline plus {@code n} periods. A cycle that overruns
+ * skips the deadlines it missed rather than running them back to back, so later cycles stay on
+ * the grid. How late each cycle actually started is recorded in a jitter timer.
+ */
+@NotThreadSafe
+final class Pacer {
+
+    private final Clock clock;
+    private final long periodInNanos;
+    private final WaitStrategy strategy;
+    private final long spinInNanos;
+    private final ExecutionTimer jitterTimer;
+    private long firstDeadline;
+    private long deadline;
+    private long skipped = 0;
+
+    /**
+     * @param clock the time to wait on.
+     * @param periodInNanos the time between the start of each cycle.
+     * @param strategy how to wait for the next deadline.
+     * @param spinInNanos how long before the deadline to stop parking and start spinning when
+     *        using {@link WaitStrategy#PARK_THEN_SPIN}.
+     * @param jitterTimer records how late each cycle started.
+     */
+    Pacer(Clock clock, long periodInNanos, WaitStrategy strategy, long spinInNanos,
+            ExecutionTimer jitterTimer) {
+        this.clock = clock;
+        this.periodInNanos = periodInNanos;
+        this.strategy = strategy;
+        this.spinInNanos = spinInNanos;
+        this.jitterTimer = jitterTimer;
+    }
+
+    /**
+     * Start the first cycle now.
+     */
+    void start() {
+        firstDeadline = clock.currentTimeInNanos();
+        deadline = firstDeadline;
+    }
+
+    /**
+     * @return the number of periods between the first cycle and when the current cycle was due.
+     */
+    long getTick() {
+        return (deadline - firstDeadline) / periodInNanos;
+    }
+
+    /**
+     * @return when the current cycle was due, in the clock's nanoseconds.
+     */
+    long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return the total number of cycles that were skipped because an earlier one overran.
+     */
+    long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Wait until the next cycle is due. Returns straight away if it's already late.
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting.
+     */
+    void awaitNext() throws InterruptedException {
+        long next = deadline + periodInNanos;
+        long now = clock.currentTimeInNanos();
+        if (now - next >= periodInNanos) {
+            // Overran by more than a whole period, start on the deadline we're now in.
+            long missed = (now - next) / periodInNanos;
+            next += missed * periodInNanos;
+            skipped += missed;
+        }
+        if (now < next) {
+            now = waitUntil(next, now);
+        }
+        deadline = next;
+        jitterTimer.record(now - next);
+    }
+
+    /**
+     * @return the time once the deadline has passed.
+     */
+    private long waitUntil(long next, long now) throws InterruptedException {
+        switch (strategy) {
+            case SLEEP:
+                while (now < next) {
+                    TimeUnit.NANOSECONDS.sleep(next - now);
+                    now = clock.currentTimeInNanos();
+                }
+                return now;
+            case PARK:
+                return park(next, now, 0);
+            case PARK_THEN_SPIN:
+                now = park(next, now, spinInNanos);
+                return spin(next, now);
+            case BUSY:
+            default:
+                return spin(next, now);
+        }
+    }
+
+    /**
+     * Park until there is no more than margin left before the deadline.
+     */
+    private long park(long next, long now, long margin) throws InterruptedException {
+        while (next - now > margin) {
+            LockSupport.parkNanos(next - now - margin);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            now = clock.currentTimeInNanos();
+        }
+        return now;
+    }
+
+    private long spin(long next, long now) {
+        while (now < next) {
+            Thread.onSpinWait();
+            now = clock.currentTimeInNanos();
+        }
+        return now;
+    }
+
+    @Override
+    public String toString() {
+        return "Pacer (" + strategy + " for " + TimeUnit.NANOSECONDS.toMillis(periodInNanos)
+                + " ms)";
+    }
+}
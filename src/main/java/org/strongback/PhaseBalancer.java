@@ -0,0 +1,171 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import java.util.Arrays;
+
+/**
+ * Chooses which cycle each {@link Executor.Priority#MEDIUM MEDIUM} and
+ * {@link Executor.Priority#LOW LOW} priority executable runs on, so that the work is spread evenly
+ * over the cycles instead of all of it landing on the same cycle.
+ * <p>
+ * MEDIUM items run every {@code mediumFrequency} cycles and LOW items every
+ * {@code lowFrequency} cycles, so the pattern repeats every {@code lowFrequency} cycles. The most
+ * expensive items are placed first, each on the phase whose cycles currently have the least work
+ * (longest processing time first). Items that haven't been timed yet count as equal so they are
+ * spread out by number.
+ * <p>
+ * Everything is preallocated so it can be rerun on the executor thread as the costs change.
+ */
+final class PhaseBalancer {
+
+    private final int mediumFrequency;
+    private final int lowFrequency;
+    private final int[] mediumPhases;
+    private final int[] lowPhases;
+    private final long[] mediumCosts;
+    private final long[] lowCosts;
+    private final int[] order;
+    private final long[] load;
+
+    PhaseBalancer(int numMedium, int numLow, int mediumFrequency, int lowFrequency) {
+        if (lowFrequency % mediumFrequency != 0) {
+            throw new IllegalArgumentException(
+                    "The low frequency must be a multiple of the medium frequency");
+        }
+        this.mediumFrequency = mediumFrequency;
+        this.lowFrequency = lowFrequency;
+        mediumPhases = new int[numMedium];
+        lowPhases = new int[numLow];
+        mediumCosts = new long[numMedium];
+        lowCosts = new long[numLow];
+        order = new int[Math.max(numMedium, numLow)];
+        load = new long[lowFrequency];
+    }
+
+    /**
+     * Put every item on the same phase like the executor always used to, so MEDIUM items run on
+     * every {@code mediumFrequency}th cycle and LOW items on every {@code lowFrequency}th cycle.
+     */
+    void unstaggered() {
+        Arrays.fill(mediumPhases, mediumFrequency - 1);
+        Arrays.fill(lowPhases, lowFrequency - 1);
+    }
+
+    /**
+     * Choose the phases using the average time each item took.
+     *
+     * @param highCost the time taken every cycle by the HIGH priority items.
+     * @return true if any phase changed.
+     */
+    boolean balance(long highCost, ExecutionTimer[] mediumTimers, ExecutionTimer[] lowTimers) {
+        for (int i = 0; i < mediumCosts.length; i++) {
+            mediumCosts[i] = costOf(mediumTimers[i]);
+        }
+        for (int i = 0; i < lowCosts.length; i++) {
+            lowCosts[i] = costOf(lowTimers[i]);
+        }
+        return balance(highCost, mediumCosts, lowCosts);
+    }
+
+    boolean balance(long highCost, long[] mediumCosts, long[] lowCosts) {
+        Arrays.fill(load, highCost);
+        boolean changed = false;
+        // MEDIUM first as each one lands on more than one cycle.
+        sortByCost(mediumCosts);
+        for (int n = 0; n < mediumCosts.length; n++) {
+            int item = order[n];
+            int best = 0;
+            long bestLoad = Long.MAX_VALUE;
+            for (int phase = 0; phase < mediumFrequency; phase++) {
+                long phaseLoad = 0;
+                for (int cycle = phase; cycle < lowFrequency; cycle += mediumFrequency) {
+                    phaseLoad = Math.max(phaseLoad, load[cycle]);
+                }
+                if (phaseLoad < bestLoad) {
+                    bestLoad = phaseLoad;
+                    best = phase;
+                }
+            }
+            for (int cycle = best; cycle < lowFrequency; cycle += mediumFrequency) {
+                load[cycle] += mediumCosts[item];
+            }
+            changed |= mediumPhases[item] != best;
+            mediumPhases[item] = best;
+        }
+        sortByCost(lowCosts);
+        for (int n = 0; n < lowCosts.length; n++) {
+            int item = order[n];
+            int best = 0;
+            for (int cycle = 1; cycle < lowFrequency; cycle++) {
+                if (load[cycle] < load[best]) {
+                    best = cycle;
+                }
+            }
+            load[best] += lowCosts[item];
+            changed |= lowPhases[item] != best;
+            lowPhases[item] = best;
+        }
+        return changed;
+    }
+
+    /**
+     * @return true if the MEDIUM item should run on this cycle.
+     */
+    boolean runMedium(int item, long cycle) {
+        return cycle % mediumFrequency == mediumPhases[item];
+    }
+
+    /**
+     * @return true if the LOW item should run on this cycle.
+     */
+    boolean runLow(int item, long cycle) {
+        return cycle % lowFrequency == lowPhases[item];
+    }
+
+    /**
+     * @return the expected time taken by each cycle in the repeating pattern with the last
+     *         balance.
+     */
+    long[] getLoad() {
+        return load;
+    }
+
+    private static long costOf(ExecutionTimer timer) {
+        return timer == null ? 0 : timer.getMeanNanos();
+    }
+
+    /**
+     * Fill order with the item indexes, most expensive first. Insertion sort as there are only
+     * a few items and it doesn't allocate. Equal items stay in registration order.
+     */
+    private void sortByCost(long[] costs) {
+        for (int i = 0; i < costs.length; i++) {
+            // Untimed items count as the cheapest possible so they are still spread out.
+            costs[i] = Math.max(costs[i], 1);
+            int item = i;
+            int j = i;
+            while (j > 0 && costs[order[j - 1]] < costs[item]) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = item;
+        }
+    }
+}
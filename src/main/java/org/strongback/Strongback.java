@@ -18,6 +18,7 @@ package org.strongback;
 
 
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -386,6 +387,30 @@ public final class Strongback {
         void handle(long actualTimeInMillis, long desiredTimeInMillis);
     }
 
+    /**
+     * How the {@link Strongback#executor() executor} waits for the start of its next cycle.
+     */
+    public static enum WaitStrategy {
+        /**
+         * Sleep the thread. Frees the core but may wake up a millisecond or more late.
+         */
+        SLEEP,
+        /**
+         * Park the thread. Finer than sleeping, but still only as prompt as the operating system
+         * is at waking it.
+         */
+        PARK,
+        /**
+         * Park until just before the cycle is due, then spin until it is. Nearly as precise as
+         * {@link #BUSY} while only keeping the core busy for a short time each cycle.
+         */
+        PARK_THEN_SPIN,
+        /**
+         * Spin the whole time. The most precise, but uses a whole core.
+         */
+        BUSY
+    }
+
     /**
      * An interface for altering the configuration of Strongback.
      */
@@ -795,11 +820,8 @@ public final class Strongback {
      * {@link Configurator#useExecutionPeriod(long, TimeUnit) configured
      * execution interval}. If too much work is added, the executor may fall behind.
      * <p>
-     * <b>Note:</b> As of Strongback 1.2, only register custom {@link Executable}s before
-     * {@link #start() starting} Strongback.
-     * Strongback will not recognize any custom {@link Executable}s registered after Strongback has
-     * been started until it is
-     * {@link #stop() stopped} and restarted.
+     * {@link Executable}s can be registered and unregistered while Strongback is running. The
+     * change takes effect from the next cycle of the executor.
      *
      * @return Strongback's executor; never null
      * @see Configurator#useExecutionPeriod(long, TimeUnit)
@@ -808,6 +830,28 @@ public final class Strongback {
         return ENGINE.getExecutor();
     }
 
+    /**
+     * Get the timers for the {@link #executor() executor}: the whole cycle (named "Cycle") first,
+     * then one for each {@link Executable} registered, named after its class. Use them to find
+     * which executable is making the cycle overrun.
+     *
+     * @return the timers in the order they were created; never null
+     */
+    public static List<ExecutionTimer> executionTimers() {
+        return ENGINE.getExecutables().timers();
+    }
+
+    /**
+     * Get the timer for the {@link Executable} with this class name, creating it if needed so
+     * that it can be charted before the executable is registered, eg "Scheduler".
+     *
+     * @param name the class name of the executable
+     * @return the timer; never null
+     */
+    public static ExecutionTimer executionTimer(String name) {
+        return ENGINE.getExecutables().timer(name);
+    }
+
     /**
      * Get Strongback's global {@link Logger} implementation.
      *
@@ -833,11 +877,27 @@ public final class Strongback {
      * Get Strongback's {@link Clock time system} implementation.
      *
      * @return Strongback's time system instance; never null
+     * @see #cycleTime()
      */
     public static Clock timeSystem() {
         return CLOCK;
     }
 
+    /**
+     * Get a {@link Clock} that, while the {@link #executor() executor} is running a cycle, gives
+     * the time the cycle started, so that everything run in the cycle sees the same time without
+     * each reading the clock. At other times, or if {@link #setCycleTime(boolean) turned off}, it
+     * gives the current time. The cycle's time is given to any thread that asks during the cycle,
+     * so this is only for code run by the executor; everything else should use the
+     * {@link #timeSystem() time system}.
+     *
+     * @return the cycle time clock; never null
+     * @see #timeSystem()
+     */
+    public static Clock cycleTime() {
+        return ENGINE.getCycleClock();
+    }
+
     /**
      * Submit a {@link Command} to be executed by Strongback's internal scheduler.
      *
@@ -1001,6 +1061,75 @@ public final class Strongback {
         return ENGINE.setExecutionPeriod(executionPeriodInMillis);
     }
 
+    /**
+     * Spread the {@link Executor.Priority#MEDIUM MEDIUM} and {@link Executor.Priority#LOW LOW}
+     * priority executables over different cycles, balanced by how long each takes, instead of
+     * running all of them on the same cycle. They still run just as often.
+     * Can only be called when strongback isn't running.
+     *
+     * @param staggered true to spread them out.
+     * @return if it was successful.
+     */
+    public static boolean setStaggered(boolean staggered) {
+        return ENGINE.setStaggered(staggered);
+    }
+
+    /**
+     * Run each {@link Executor} lane other than {@link Executor#MAIN_LANE} on its own thread, so
+     * that work that doesn't need to be serialized with the main lane runs at the same time.
+     * Otherwise the lanes are run one after the other on the executor thread. Strongback's data
+     * and event recorders run in {@link Executor#BACKGROUND_LANE}.
+     * Can only be called when strongback isn't running.
+     *
+     * @param useLanes true to give each lane its own thread.
+     * @return if it was successful.
+     */
+    public static boolean setUseLanes(boolean useLanes) {
+        return ENGINE.setUseLanes(useLanes);
+    }
+
+    /**
+     * Run the {@link Executor#setSheddable sheddable} MEDIUM and LOW priority and periodic
+     * executables less often, and then not at all, while the {@link #executor() executor}'s cycles keep
+     * overrunning, until it has time to spare again. Each change is logged along with the
+     * executables affected. Strongback's data and event recorders are sheddable.
+     * Can only be called when strongback isn't running.
+     *
+     * @param shedLoad true to shed load when overrunning.
+     * @return if it was successful.
+     */
+    public static boolean setLoadShedding(boolean shedLoad) {
+        return ENGINE.setLoadShedding(shedLoad);
+    }
+
+    /**
+     * Read the time once at the start of each {@link #executor() executor} cycle and give that
+     * time to everything that asks the {@link #cycleTime() cycle time} clock during the cycle,
+     * instead of reading the clock each time.
+     * Can only be called when strongback isn't running.
+     *
+     * @param cycleTime true to use the same time for the whole cycle.
+     * @return if it was successful.
+     */
+    public static boolean setCycleTime(boolean cycleTime) {
+        return ENGINE.setCycleTime(cycleTime);
+    }
+
+    /**
+     * Choose how the {@link #executor() executor} waits between cycles. Whichever is used, each
+     * cycle is due a whole number of periods after the first so the rate doesn't drift, and how
+     * late each cycle starts is recorded in the "Jitter" {@link #executionTimer(String) timer}.
+     * Can only be called when strongback isn't running.
+     *
+     * @param strategy how to wait.
+     * @param spinMicros how long before each cycle to stop parking and start spinning when
+     *        using {@link WaitStrategy#PARK_THEN_SPIN}.
+     * @return if it was successful.
+     */
+    public static boolean setWaitStrategy(WaitStrategy strategy, long spinMicros) {
+        return ENGINE.setWaitStrategy(strategy, spinMicros);
+    }
+
     /**
      * Get the number of times the {@link #executor() executor} has been unable to execute all work
      * within the time period
@@ -1047,12 +1176,19 @@ public final class Strongback {
         private final Executables executables = new Executables();
         private final Logger logger;
         private final Clock clock;
+        private final CycleClock cycleClock;
         private final Counter dataWriterFilenameCounter = Counter.unlimited(1);
         private final Counter eventWriterFilenameCounter = Counter.unlimited(1);
         private volatile Scheduler scheduler;
         private volatile EventRecorder eventRecorder;
         private volatile ExcessiveExecutionHandler excessiveHandler;
         private volatile long executionPeriodInMillis = 20;
+        private volatile boolean staggered = false;
+        private volatile boolean useLanes = false;
+        private volatile WaitStrategy waitStrategy = WaitStrategy.SLEEP;
+        private volatile long spinMicros = 0;
+        private volatile boolean shedLoad = false;
+        private volatile boolean cycleTime = false;
         private volatile boolean recordCommands = true;
         private volatile boolean useSwitchReactor = true;
         private volatile EventWriter eventWriter;
@@ -1064,38 +1200,59 @@ public final class Strongback {
 
         public Engine(Clock clock, Logger logger) {
             this.clock = clock;
+            this.cycleClock = new CycleClock(clock);
             this.logger = logger;
             handleExecutionDelays(null);
         }
 
+        public Clock getCycleClock() {
+            return cycleClock;
+        }
+
         public void logConfiguration() {
             logger.info("Strongback configuration:");
-            logger.info("  log level = " + logger);
-            logger.info("  execution period = " + executionPeriodInMillis + " milliseconds");
-            logger.info("  excessive execution period handler = " + excessiveHandler);
-            logger.info("  checking switch states = " + (useSwitchReactor ? "yes" : "no"));
-            logger.info("  recording data = " + dataWriterDescription);
-            logger.info("  recording events = " + eventWriterDescription);
+            logger.info("  log level = %s", logger);
+            logger.info("  execution period = %d milliseconds", executionPeriodInMillis);
+            logger.info("  staggering MEDIUM and LOW priorities = %s", yesNo(staggered));
+            logger.info("  running lanes on their own threads = %s", yesNo(useLanes));
+            logger.info("  shedding load when overrunning = %s", yesNo(shedLoad));
+            logger.info("  same time for the whole cycle = %s", yesNo(cycleTime));
+            if (waitStrategy == WaitStrategy.PARK_THEN_SPIN) {
+                logger.info("  waiting between cycles by = %s (spinning for %d microseconds)",
+                        waitStrategy, spinMicros);
+            } else {
+                logger.info("  waiting between cycles by = %s", waitStrategy);
+            }
+            logger.info("  excessive execution period handler = %s", excessiveHandler);
+            logger.info("  checking switch states = %s", yesNo(useSwitchReactor));
+            logger.info("  recording data = %s", dataWriterDescription);
+            logger.info("  recording events = %s", eventWriterDescription);
             if (eventWriter != null) {
-                logger.info("  recording commands as events = " + (recordCommands ? "yes" : "no"));
+                logger.info("  recording commands as events = %s", yesNo(recordCommands));
             }
             logger.info("");
             logger.info("Strongback priorities during execution:");
-            logger.info("  Commands @ " + SCHEDULER_PRIORITY);
+            logger.info("  Commands @ %s", SCHEDULER_PRIORITY);
             if (useSwitchReactor) {
-                logger.info("  Switch states @ " + SWITCH_REACTOR_PRIORITY);
+                logger.info("  Switch states @ %s", SWITCH_REACTOR_PRIORITY);
             }
             if (dataWriterFactorySupplier != null) {
-                logger.info("  Recording data @ " + DATA_RECORDER_PRIORITY);
+                logger.info("  Recording data @ %s in the %s lane", DATA_RECORDER_PRIORITY,
+                        Executor.BACKGROUND_LANE);
             }
             if (eventWriter != null) {
-                logger.info("  Writing events @ " + EVENT_RECORDER_PRIORITY);
+                logger.info("  Writing events @ %s in the %s lane", EVENT_RECORDER_PRIORITY,
+                        Executor.BACKGROUND_LANE);
             }
             logger.info("");
         }
 
+        private String yesNo(boolean value) {
+            return value ? "yes" : "no";
+        }
+
         public void logRunningState() {
-            logger.info("Strongback is " + (running.get() ? "running" : "not running"));
+            logger.info("Strongback is %s", running.get() ? "running" : "not running");
         }
 
         public EventRecorder getEventRecorder() {
@@ -1114,6 +1271,10 @@ public final class Strongback {
             return executables;
         }
 
+        protected Executables getExecutables() {
+            return executables;
+        }
+
         public long getExcessiveExecutionCount() {
             return executorDelayCounter.get();
         }
@@ -1158,6 +1319,57 @@ public final class Strongback {
             return true;
         }
 
+        public synchronized boolean setStaggered(boolean staggered) {
+            if (isRunning()) {
+                logger.error(
+                        "Strongback is running and is unable to change staggering to " + staggered);
+                return false;
+            }
+            this.staggered = staggered;
+            return true;
+        }
+
+        public synchronized boolean setUseLanes(boolean useLanes) {
+            if (isRunning()) {
+                logger.error(
+                        "Strongback is running and is unable to change lanes to " + useLanes);
+                return false;
+            }
+            this.useLanes = useLanes;
+            return true;
+        }
+
+        public synchronized boolean setCycleTime(boolean cycleTime) {
+            if (isRunning()) {
+                logger.error("Strongback is running and is unable to change cycle time to "
+                        + cycleTime);
+                return false;
+            }
+            this.cycleTime = cycleTime;
+            return true;
+        }
+
+        public synchronized boolean setLoadShedding(boolean shedLoad) {
+            if (isRunning()) {
+                logger.error("Strongback is running and is unable to change load shedding to "
+                        + shedLoad);
+                return false;
+            }
+            this.shedLoad = shedLoad;
+            return true;
+        }
+
+        public synchronized boolean setWaitStrategy(WaitStrategy waitStrategy, long spinMicros) {
+            if (isRunning()) {
+                logger.error("Strongback is running and is unable to change the wait strategy to "
+                        + waitStrategy);
+                return false;
+            }
+            this.waitStrategy = waitStrategy;
+            this.spinMicros = spinMicros;
+            return true;
+        }
+
         public synchronized void useSwitchReactor(boolean enable) {
             if (isRunning()) {
                 logger.error(
@@ -1376,17 +1588,23 @@ public final class Strongback {
                                 dataWriterFactorySupplier.get());
                         dataRecorderDriver.start();
                         dataRecorderDriver.execute(CLOCK.currentTimeInMillis());
-                        executables.register(dataRecorderDriver, DATA_RECORDER_PRIORITY);
+                        executables.register(dataRecorderDriver, DATA_RECORDER_PRIORITY,
+                                Executor.BACKGROUND_LANE);
+                        executables.setSheddable(dataRecorderDriver, true);
                     }
 
                     if (eventRecorder != null) {
-                        executables.register(eventRecorder, EVENT_RECORDER_PRIORITY);
+                        executables.register(eventRecorder, EVENT_RECORDER_PRIORITY,
+                                Executor.BACKGROUND_LANE);
+                        executables.setSheddable(eventRecorder, true);
                     }
 
                     // Now create and start the executor to run all these services ...
                     executor = new ExecutorDriver("Strongback Executor", executables, clock,
                             executionPeriodInMillis, logger,
-                            excessiveHandler);
+                            excessiveHandler, staggered, useLanes, waitStrategy,
+                            TimeUnit.MICROSECONDS.toNanos(spinMicros), shedLoad,
+                            cycleTime ? cycleClock : null);
                     executor.start();
                     return true;
                 } catch (Throwable t) {
@@ -81,6 +81,18 @@ final class SystemLogger implements Logger {
             message("TRACE", message);
     }
 
+    @Override
+    public void warn(String format, Object... args) {
+        if ((level & WARN) == WARN)
+            message("WARN", String.format(format, args));
+    }
+
+    @Override
+    public void info(String format, Object... args) {
+        if ((level & INFO) == INFO)
+            message("INFO", String.format(format, args));
+    }
+
     private void message(String level, String message) {
         System.out.println(level + " " + message);
     }
@@ -0,0 +1,250 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+/**
+ * A hashed timing wheel that says which periodic {@link Executable}s are due on each tick of
+ * the executor, for executables {@link Executor#register(Executable, java.time.Duration)
+ * registered with a period} rather than a priority.
+ * <p>
+ * Each executable is kept in the slot for the tick it's next due on, modulo the number of slots,
+ * so each tick only looks at the executables in one slot instead of checking every one of them.
+ * Executables due further away than one turn of the wheel are passed over until their turn
+ * comes.
+ * <p>
+ * If ticks are missed (eg a cycle overran) the slots for the missed ticks are still looked at.
+ * An executable that missed one or more of its periods is run once, not once for each missed
+ * period, and stays on its original schedule, so it never runs in a burst to catch up.
+ * <p>
+ * Entries are created when the wheel is built and moved between slots by relinking them, so
+ * ticking doesn't allocate. Only used by the executor thread.
+ */
+final class TimingWheel {
+
+    private final Entry[] slots;
+    private final int mask;
+    private final Entry[] entries;
+    private final Entry[] due;
+    private int dueCount = 0;
+    private int size = 0;
+    private long lastTick = -1;
+
+    /**
+     * @param slots the number of slots, rounded up to a power of two.
+     * @param capacity the number of executables that will be added.
+     */
+    TimingWheel(int slots, int capacity) {
+        int n = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.slots = new Entry[n];
+        this.mask = n - 1;
+        this.entries = new Entry[capacity];
+        this.due = new Entry[capacity];
+    }
+
+    /**
+     * Add an executable, first due on firstTick then every periodTicks after that. Call before
+     * the first advance().
+     */
+    void add(Executable executable, ExecutionTimer timer, long periodTicks, long firstTick) {
+        add(executable, timer, periodTicks, firstTick, false);
+    }
+
+    /**
+     * Add an executable, first due on firstTick then every periodTicks after that. Call before
+     * the first advance().
+     *
+     * @param sheddable if it can be run less often when the executor is overrunning.
+     */
+    void add(Executable executable, ExecutionTimer timer, long periodTicks, long firstTick,
+            boolean sheddable) {
+        if (size == due.length) {
+            throw new IllegalStateException("Timing wheel is full");
+        }
+        Entry entry = new Entry(executable, timer, Math.max(1, periodTicks), firstTick,
+                sheddable, size);
+        entry.dueTick = firstTick;
+        link(entry);
+        entries[size++] = entry;
+    }
+
+    /**
+     * Add an executable, spreading executables with the same period over different ticks.
+     */
+    void add(Executable executable, ExecutionTimer timer, long periodTicks) {
+        add(executable, timer, periodTicks, false);
+    }
+
+    /**
+     * Add an executable, spreading executables with the same period over different ticks.
+     *
+     * @param sheddable if it can be run less often when the executor is overrunning.
+     */
+    void add(Executable executable, ExecutionTimer timer, long periodTicks, boolean sheddable) {
+        long period = Math.max(1, periodTicks);
+        add(executable, timer, period, size % period, sheddable);
+    }
+
+    /**
+     * Count the ticks the executables were added with from startTick instead of from zero, for
+     * a wheel built while the executor was already running, or used again after the executor
+     * was restarted. Forgets where the wheel had got to, so call before advancing from
+     * startTick.
+     */
+    void rebase(long startTick) {
+        for (int i = 0; i < size; i++) {
+            Entry entry = entries[i];
+            unlink(entry);
+            entry.dueTick = entry.firstTick + startTick;
+            link(entry);
+        }
+        lastTick = startTick - 1;
+    }
+
+    /**
+     * Move the wheel on to nowTick, collecting the executables that are due. Each due executable
+     * is moved to the first tick on its schedule after nowTick.
+     *
+     * @return the number of executables due, see getDue().
+     */
+    int advance(long nowTick) {
+        dueCount = 0;
+        if (nowTick <= lastTick) {
+            return 0;
+        }
+        // Looking at every slot once finds everything due, however many ticks were missed.
+        long firstTick = Math.max(lastTick + 1, nowTick - mask);
+        for (long tick = firstTick; tick <= nowTick; tick++) {
+            Entry entry = slots[(int) (tick & mask)];
+            while (entry != null) {
+                Entry next = entry.next;
+                if (entry.dueTick <= nowTick) {
+                    unlink(entry);
+                    // Skip any missed periods rather than running them all now.
+                    long missed = (nowTick - entry.dueTick) / entry.periodTicks;
+                    entry.dueTick += (missed + 1) * entry.periodTicks;
+                    link(entry);
+                    entry.runs++;
+                    due[dueCount++] = entry;
+                }
+                entry = next;
+            }
+        }
+        lastTick = nowTick;
+        // Run in the order they were added so the order is the same from tick to tick.
+        sortDue();
+        return dueCount;
+    }
+
+    Executable getDue(int i) {
+        return due[i].executable;
+    }
+
+    ExecutionTimer getDueTimer(int i) {
+        return due[i].timer;
+    }
+
+    boolean isDueSheddable(int i) {
+        return due[i].sheddable;
+    }
+
+    /**
+     * @return how many times the executable has been due, including this time.
+     */
+    long getDueRuns(int i) {
+        return due[i].runs;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the timer of the i'th executable added.
+     */
+    ExecutionTimer getTimer(int i) {
+        return entries[i].timer;
+    }
+
+    /**
+     * @return if the i'th executable added can be run less often when the executor is
+     *         overrunning.
+     */
+    boolean isSheddable(int i) {
+        return entries[i].sheddable;
+    }
+
+    private void link(Entry entry) {
+        int slot = (int) (entry.dueTick & mask);
+        entry.prev = null;
+        entry.next = slots[slot];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        slots[slot] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            slots[(int) (entry.dueTick & mask)] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.next = null;
+        entry.prev = null;
+    }
+
+    private void sortDue() {
+        // Insertion sort, there are only ever a few due at once.
+        for (int i = 1; i < dueCount; i++) {
+            Entry entry = due[i];
+            int j = i;
+            while (j > 0 && due[j - 1].order > entry.order) {
+                due[j] = due[j - 1];
+                j--;
+            }
+            due[j] = entry;
+        }
+    }
+
+    private static final class Entry {
+        final Executable executable;
+        final ExecutionTimer timer;
+        final long periodTicks;
+        final long firstTick; // When it was first due, counting from zero.
+        final boolean sheddable;
+        final int order; // When it was added.
+        long dueTick;
+        long runs; // How many times it has been due.
+        Entry next;
+        Entry prev;
+
+        Entry(Executable executable, ExecutionTimer timer, long periodTicks, long firstTick,
+                boolean sheddable, int order) {
+            this.executable = executable;
+            this.timer = timer;
+            this.periodTicks = periodTicks;
+            this.firstTick = firstTick;
+            this.sheddable = sheddable;
+            this.order = order;
+        }
+    }
+}
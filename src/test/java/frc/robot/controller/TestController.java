@@ -1,5 +1,6 @@
 package frc.robot.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import frc.robot.controller.Sequence.SequenceBuilder;
@@ -156,6 +157,86 @@ public class TestController {
         assertTrue(test.run());
     }
 
+    /**
+     * A sequence should start as soon as it's run, not on the controller's next poll. The
+     * clock isn't moved on here so a controller that only polls would never apply it.
+     */
+    @Test
+    public void testStartsSequenceWithoutWaitingToPoll() throws Exception {
+        SequenceBuilder builder = new SequenceBuilder("start conveyor");
+        builder.then().setConveyorDutyCycle(0.5);
+        exec.run(builder.build());
+        for (int i = 0; i < 1000 && subsystems.conveyor.getDutyCycle() != 0.5; i++) {
+            Thread.sleep(1);
+        }
+        assertEquals(0.5, subsystems.conveyor.getDutyCycle());
+    }
+
+    /**
+     * A sequence that conflicts with a running one should wait for the running one to finish
+     * aborting, so the aborted sequence's end state is applied before, not after, it.
+     */
+    @Test
+    public void testWaitsForConflictingSequenceToAbort() throws Exception {
+        SequenceBuilder builder = new SequenceBuilder("slow conveyor");
+        builder.then().setConveyorDutyCycle(0.5);
+        builder.then().setDelayDelta(1);
+        builder.onInterrupt().setConveyorDutyCycle(0);
+        Sequence slowConveyor = builder.build();
+        builder = new SequenceBuilder("fast conveyor");
+        builder.then().setConveyorDutyCycle(1);
+        Sequence fastConveyor = builder.build();
+
+        test.thenSet(sequence(slowConveyor));
+        test.thenAssert(conveyorMotorDutyCycle(0.5));
+        test.thenSet(sequence(fastConveyor));
+        test.thenWait(1.5);
+        test.thenAssert(conveyorMotorDutyCycle(1));
+        assertTrue(test.run());
+    }
+
+    /**
+     * Running a sequence again while it's being aborted should start it again once the abort
+     * has finished, whichever of its domains the sequence that aborted it took.
+     */
+    @Test
+    public void testRestartsSequenceBeingAborted() throws Exception {
+        SequenceBuilder builder = new SequenceBuilder("conveyor and shooter");
+        builder.then().setConveyorDutyCycle(0.5).setShooterRPS(50);
+        builder.then().setDelayDelta(1);
+        Sequence conveyorAndShooter = builder.build();
+        builder = new SequenceBuilder("shooter");
+        builder.then().setShooterRPS(100);
+        Sequence shooter = builder.build();
+
+        test.thenSet(sequence(conveyorAndShooter));
+        test.thenAssert(conveyorMotorDutyCycle(0.5), shooterMotorRPS(50));
+        // Takes the shooter but not the conveyor, the lower of the two domains.
+        test.thenSet(sequence(shooter), sequence(conveyorAndShooter));
+        test.thenWait(1.5);
+        test.thenAssert(conveyorMotorDutyCycle(0.5), shooterMotorRPS(50));
+        assertTrue(test.run());
+    }
+
+    /**
+     * Disabling queues an abort behind the sequences already run, so a sequence that hasn't
+     * been taken by the controller thread yet is still aborted and its end state applied.
+     */
+    @Test
+    public void testDisableAbortsQueuedSequences() throws Exception {
+        SequenceBuilder builder = new SequenceBuilder("run conveyor");
+        builder.then().setConveyorDutyCycle(0.5);
+        builder.then().setDelayDelta(1);
+        builder.onInterrupt().setConveyorDutyCycle(0);
+        Sequence runConveyor = builder.build();
+
+        test.thenSet(sequence(runConveyor), disableController());
+        test.thenAssert(conveyorMotorDutyCycle(0));
+        test.thenWait(1.5);
+        test.thenAssert(conveyorMotorDutyCycle(0));
+        assertTrue(test.run());
+    }
+
     /**
      * Example test.
      * 
@@ -243,6 +324,31 @@ public class TestController {
         return Sequences.allSequences[generator.nextInt(Sequences.allSequences.length)];
     }
 
+    /**
+     * Disables the Controller, aborting any running sequences. Only makes sense
+     * in a thenSet(), not a thenAssert().
+     * 
+     * @return a setter or asserter object to pass to the TestHelper.
+     */
+    private StateSetterOrAsserter disableController() {
+        return new StateSetterOrAsserter() {
+            @Override
+            public String name() {
+                return "DisableController";
+            }
+
+            @Override
+            public void setState() {
+                exec.disable();
+            }
+
+            @Override
+            public void assertState() throws AssertionError {
+                // Can't be checked directly.
+            }
+        };
+    }
+
     /**
      * Tells the Controller to run the desired sequence. Only makes sense in a
      * thenSet(), not a thenAssert().
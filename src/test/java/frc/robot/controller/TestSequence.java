@@ -1,6 +1,7 @@
 
 package frc.robot.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -39,4 +40,19 @@ public class TestSequence {
         assertTrue(b.doesConflict(c));
         assertTrue(c.doesConflict(b));
     }
+
+    @Test
+    public void testDomainMask() {
+        SequenceBuilder sb = new SequenceBuilder("");
+        assertEquals(0, sb.build().getDomainMask());
+
+        sb.then().setIntakeRPS(1);
+        sb.then().setColour(LEDColour.RED);
+        assertEquals(Domain.INTAKE.bit() | Domain.LED.bit(), sb.build().getDomainMask());
+
+        // Only the states count, not the end state.
+        sb = new SequenceBuilder("");
+        sb.onInterrupt().setIntakeRPS(0);
+        assertEquals(0, sb.build().getDomainMask());
+    }
 }
@@ -227,4 +227,33 @@ public class TestSequenceRunner {
         assertEquals(subsystems.shooter.getTargetRPS(), 100.0);
         assertTrue(subsystems.intake.isExtended());
     }
+
+    /**
+     * The subsystems should only be told about a state once, when it's entered, while the
+     * runner waits for it to finish.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testAppliesStateOnce() throws Exception {
+        SequenceRunner runner = new SequenceRunner(seqWithEndState, clock, subsystems);
+        runner.start();
+        // Sets the shooter to 20 and waits for 0.5 seconds.
+        assertTrue(runner.run());
+        assertEquals(StatePlan.kShooterRPS, runner.getAppliedFields());
+        assertEquals(0, runner.getSuppressedWrites());
+        // Something else changes the shooter speed while the runner is waiting.
+        subsystems.shooter.setTargetRPS(30);
+        assertTrue(runner.run());
+        assertTrue(runner.run());
+        assertEquals(30.0, subsystems.shooter.getTargetRPS());
+        assertEquals(2, runner.getSuppressedWrites());
+        // Fast forward time to finish the step, and then apply the next one.
+        clock.incrementByMilliseconds(600);
+        assertTrue(runner.run());
+        assertEquals(3, runner.getSuppressedWrites());
+        assertTrue(runner.run());
+        assertEquals(40.0, subsystems.shooter.getTargetRPS());
+        assertEquals(3, runner.getSuppressedWrites());
+    }
 }
@@ -0,0 +1,27 @@
+package frc.robot.controller;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.lib.LEDColour;
+import org.junit.jupiter.api.Test;
+
+public class TestSequences {
+    @Test
+    public void testInitBuildsSequences() {
+        // Both climbers, every LED colour and more.
+        assertTrue(Sequences.init() > 6 + LEDColour.values().length);
+    }
+
+    @Test
+    public void testReturnsSameSequence() {
+        assertSame(Sequences.startIntaking(), Sequences.startIntaking());
+        assertSame(Sequences.stopShooting(), Sequences.stopShooting());
+        // Keyed on the parameters.
+        assertSame(Sequences.extendClimber(true), Sequences.extendClimber(true));
+        assertNotSame(Sequences.extendClimber(true), Sequences.extendClimber(false));
+        // Those taking doubles aren't cached.
+        assertNotSame(Sequences.spinUpShooter(10, 20), Sequences.spinUpShooter(10, 20));
+    }
+}
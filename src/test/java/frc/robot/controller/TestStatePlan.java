@@ -0,0 +1,55 @@
+package frc.robot.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import frc.robot.controller.Sequence.SequenceBuilder;
+import frc.robot.lib.LEDColour;
+import org.junit.jupiter.api.Test;
+
+public class TestStatePlan {
+    @Test
+    public void testEmptyState() {
+        StatePlan plan = new StatePlan(new State());
+        assertEquals(0, plan.fields);
+        assertEquals(0, plan.waits);
+    }
+
+    @Test
+    public void testCompilesFields() {
+        State state = new State().setIntakeRPS(12).setShooterRPS(0).setColour(LEDColour.RED)
+                .waitForShooter();
+        StatePlan plan = new StatePlan(state);
+        assertEquals(StatePlan.kIntakeRPS | StatePlan.kShooterRPS | StatePlan.kLEDColour,
+                plan.fields);
+        assertEquals(12.0, plan.target(StatePlan.kIntakeRPS));
+        assertEquals(0.0, plan.target(StatePlan.kShooterRPS));
+        assertEquals(LEDColour.RED, plan.ledColour);
+        assertEquals(StatePlan.kWaitShooter, plan.waits);
+    }
+
+    @Test
+    public void testCompilesDelays() {
+        StatePlan delta = new StatePlan(new State().setDelayDelta(0.5));
+        assertEquals(StatePlan.kWaitTime, delta.waits);
+        assertEquals(10.5, delta.timeAction.calculateEndTime(10));
+
+        StatePlan until = new StatePlan(new State().setDelayUntilTime(20));
+        assertEquals(StatePlan.kWaitTime, until.waits);
+        assertEquals(20.0, until.timeAction.calculateEndTime(10));
+    }
+
+    @Test
+    public void testSequenceCompilesEachState() {
+        SequenceBuilder builder = new SequenceBuilder("test").createInterruptState();
+        builder.then().deployIntake();
+        builder.then().setConveyorDutyCycle(1);
+        Sequence sequence = builder.build();
+        assertEquals(2, sequence.size());
+        assertEquals(StatePlan.kIntakePosition, sequence.getPlan(0).fields);
+        assertEquals(StatePlan.kWaitIntake, sequence.getPlan(0).waits);
+        assertEquals(StatePlan.kConveyorDutyCycle, sequence.getPlan(1).fields);
+        // The interrupt state was filled in before it was compiled.
+        assertEquals(StatePlan.kIntakePosition | StatePlan.kConveyorDutyCycle,
+                sequence.getEndPlan().fields);
+    }
+}
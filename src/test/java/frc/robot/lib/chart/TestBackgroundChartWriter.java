@@ -0,0 +1,113 @@
+package frc.robot.lib.chart;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class TestBackgroundChartWriter {
+
+    /**
+     * Records what was written to it, optionally waiting before writing each row like a slow
+     * flash drive.
+     */
+    private static class MockChartWriter implements ChartWriter {
+        StringBuilder contents = new StringBuilder();
+        CountDownLatch release = new CountDownLatch(0);
+        CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void writeHeader(String[] names, double[] deadbands, ChartSchedule schedule) {
+            contents.append(String.join(",", names)).append('\n');
+        }
+
+        @Override
+        public void writeRow(long cycle, double time, double[] values) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            contents.append(CsvChartWriter.formatRow(new StringBuilder(), time, values, false));
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        @Override
+        public void createSymbolicLink(String dir, String prefix) {}
+    }
+
+    private static ChartSchedule schedule(int columns) {
+        return new ChartSchedule(new int[columns], new int[columns], 0.02);
+    }
+
+    // Rows are written in order after the header, and the last partial block when closed.
+    @Test
+    public void testRowsWritten() throws InterruptedException {
+        MockChartWriter mock = new MockChartWriter();
+        // One full block and one partial block.
+        BackgroundChartWriter writer = new BackgroundChartWriter(mock, 2, 3, 100, 0.001);
+        writer.writeHeader(new String[] {"a", "b"}, new double[2], schedule(2));
+        double[] values = new double[2];
+        for (int i = 0; i < 5; i++) {
+            values[0] = i;
+            values[1] = i * 10;
+            writer.writeRow(i, i, values);
+        }
+        writer.flush();
+        writer.close();
+        assertTrue(mock.closed.await(1, TimeUnit.SECONDS));
+        assertEquals("a,b\n"
+                + "0.000,0.0,0.0\n"
+                + "1.000,1.0,10.0\n"
+                + "2.000,2.0,20.0\n"
+                + "3.000,3.0,30.0\n"
+                + "4.000,4.0,40.0\n", mock.contents.toString());
+        assertEquals(0, writer.getDroppedCount());
+    }
+
+    // If the file can't keep up rows are dropped instead of waiting.
+    @Test
+    public void testOverrun() throws InterruptedException {
+        MockChartWriter mock = new MockChartWriter();
+        mock.release = new CountDownLatch(1);
+        BackgroundChartWriter writer = new BackgroundChartWriter(mock, 2, 2, 100, 0.001);
+        writer.writeHeader(new String[] {"a"}, new double[1], schedule(1));
+        double[] values = new double[1];
+        // Both blocks fill up, the rest are dropped.
+        for (int i = 0; i < 10; i++) {
+            values[0] = i;
+            writer.writeRow(i, i, values);
+        }
+        assertEquals(6, writer.getDroppedCount());
+        assertEquals(1, writer.getOverrunCount());
+        // Caught up, rows are written again.
+        mock.release.countDown();
+        values[0] = 10;
+        long start = System.nanoTime();
+        long dropped;
+        do {
+            // Keep trying until a block has been written and is free again.
+            Thread.sleep(1);
+            dropped = writer.getDroppedCount();
+            writer.writeRow(10, 10, values);
+        } while (writer.getDroppedCount() > dropped && System.nanoTime() - start < 1e9);
+        writer.flush();
+        writer.close();
+        assertTrue(mock.closed.await(1, TimeUnit.SECONDS));
+        assertTrue(mock.contents.toString().startsWith("a\n"
+                + "0.000,0.0\n"
+                + "1.000,1.0\n"
+                + "2.000,2.0\n"
+                + "3.000,3.0\n"));
+        assertTrue(mock.contents.toString().endsWith("10.000,10.0\n"));
+    }
+}
@@ -0,0 +1,131 @@
+package frc.robot.lib.chart;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+
+public class TestBinaryChartWriter {
+
+    private String writeAndConvert(boolean singlePrecision, boolean changesOnly, int blockBytes)
+            throws IOException {
+        Path tempDir = Files.createTempDirectory("binarychart");
+        BinaryChartWriter writer = new BinaryChartWriter(tempDir.toString(), "data", 12, "bin",
+                singlePrecision, changesOnly, blockBytes, 100, true);
+        writer.writeHeader(new String[] {"Drive/speed", "Shooter/rpm"}, new double[] {0, 0},
+                ChartSchedule.spread(new int[] {4, 4}, 4, 0.02));
+        writer.writeRow(0, 0, new double[] {0, 1500});
+        writer.writeRow(4, 0.0804, new double[] {0.25, -1.5});
+        writer.writeRow(8, 0.16, new double[] {1e-3, 3000});
+        writer.close();
+        return convert(tempDir);
+    }
+
+    private String convert(Path tempDir) throws IOException {
+        StringWriter out = new StringWriter();
+        try (InputStream in =
+                Files.newInputStream(Paths.get(tempDir.toString(), "data", "data_00012.bin"))) {
+            ChartConverter.convert(in, out);
+        }
+        return out.toString();
+    }
+
+    // The converted file should match what the csv writer would have written.
+    @Test
+    public void testDoubles() throws IOException {
+        assertEquals("date,Drive/speed,Shooter/rpm\n"
+                + "0.000,0.0,1500.0\n"
+                + "0.080,0.25,-1.5\n"
+                + "0.160,0.001,3000.0\n", writeAndConvert(false, false, 1024));
+    }
+
+    @Test
+    public void testFloats() throws IOException {
+        assertEquals("date,Drive/speed,Shooter/rpm\n"
+                + "0.000,0.0,1500.0\n"
+                + "0.080,0.25,-1.5\n"
+                + "0.160,0.001,3000.0\n", writeAndConvert(true, false, 1024));
+    }
+
+    // Rows that don't fit in the buffer are still written.
+    @Test
+    public void testSmallBuffer() throws IOException {
+        assertEquals("date,Drive/speed,Shooter/rpm\n"
+                + "0.000,0.0,1500.0\n"
+                + "0.080,0.25,-1.5\n"
+                + "0.160,0.001,3000.0\n", writeAndConvert(false, false, 10));
+    }
+
+    // Columns sampled less often are only stored when they are sampled, and hold their last value
+    // in the converted file.
+    @Test
+    public void testSlowColumns() throws IOException {
+        Path tempDir = Files.createTempDirectory("binarychart");
+        BinaryChartWriter writer = new BinaryChartWriter(tempDir.toString(), "data", 12, "bin",
+                false, false, 1024, 100, true);
+        ChartSchedule schedule = new ChartSchedule(new int[] {1, 2, 4}, new int[] {0, 1, 0}, 0.02);
+        writer.writeHeader(new String[] {"fast", "normal", "slow"}, new double[3], schedule);
+        for (int cycle = 0; cycle < 5; cycle++) {
+            writer.writeRow(cycle, cycle * 0.02, new double[] {cycle, cycle * 10, cycle * 100});
+        }
+        writer.close();
+        assertEquals("date,fast,normal,slow\n"
+                + "0.000,0.0,,0.0\n"
+                + "0.020,1.0,10.0,0.0\n"
+                + "0.040,2.0,10.0,0.0\n"
+                + "0.060,3.0,30.0,0.0\n"
+                + "0.080,4.0,30.0,400.0\n", convert(tempDir));
+        // Header is 4 + 1 + 1 + 1 + 8 + 4 bytes, then each name, period, phase and deadband.
+        // Rows are the cycle, time and only the values sampled that cycle.
+        long header = 19 + (2 + 4 + 16) + (2 + 6 + 16) + (2 + 4 + 16);
+        long rows = 5 * 12 + (5 + 2 + 2) * 8;
+        assertEquals(header + rows,
+                Files.size(Paths.get(tempDir.toString(), "data", "data_00012.bin")));
+    }
+
+    // Only writing changes gives the same file once converted.
+    @Test
+    public void testChangesOnly() throws IOException {
+        assertEquals("date,Drive/speed,Shooter/rpm\n"
+                + "0.000,0.0,1500.0\n"
+                + "0.080,0.25,-1.5\n"
+                + "0.160,0.001,3000.0\n", writeAndConvert(false, true, 1024));
+        assertEquals("date,Drive/speed,Shooter/rpm\n"
+                + "0.000,0.0,1500.0\n"
+                + "0.080,0.25,-1.5\n"
+                + "0.160,0.001,3000.0\n", writeAndConvert(true, true, 10));
+    }
+
+    // Values are only written when they move by more than the deadband, but every transition
+    // is kept.
+    @Test
+    public void testDeadband() throws IOException {
+        Path tempDir = Files.createTempDirectory("binarychart");
+        BinaryChartWriter writer = new BinaryChartWriter(tempDir.toString(), "data", 12, "bin",
+                false, true, 1024, 100, true);
+        writer.writeHeader(new String[] {"mode", "voltage"}, new double[] {0, 0.1},
+                new ChartSchedule(new int[] {1, 1}, new int[] {0, 0}, 0.02));
+        double[][] samples = {{0, 12.5}, {0, 12.45}, {1, 12.42}, {1, 12.3}, {1, 12.25}, {0, 12.25}};
+        for (int cycle = 0; cycle < samples.length; cycle++) {
+            writer.writeRow(cycle, cycle * 0.02, samples[cycle]);
+        }
+        writer.close();
+        assertEquals("date,mode,voltage\n"
+                + "0.000,0.0,12.5\n"
+                + "0.020,0.0,12.5\n"
+                + "0.040,1.0,12.5\n"
+                + "0.060,1.0,12.3\n"
+                + "0.080,1.0,12.3\n"
+                + "0.100,0.0,12.3\n", convert(tempDir));
+        // Each row is the cycle, time and count, then only the changed columns.
+        long header = 19 + (2 + 4 + 16) + (2 + 7 + 16);
+        long rows = 6 * 14 + 5 * (2 + 8);
+        assertEquals(header + rows,
+                Files.size(Paths.get(tempDir.toString(), "data", "data_00012.bin")));
+    }
+}
@@ -0,0 +1,50 @@
+package frc.robot.lib.chart;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestChartSchedule {
+
+    private static int[] phases(ChartSchedule schedule) {
+        int[] phases = new int[schedule.size()];
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = schedule.getPhase(i);
+        }
+        return phases;
+    }
+
+    // Columns at or faster than the normal rate are all sampled together.
+    @Test
+    public void testNormalColumns() {
+        ChartSchedule schedule = ChartSchedule.spread(new int[] {1, 4, 2, 4}, 4, 0.02);
+        assertArrayEquals(new int[] {0, 0, 0, 0}, phases(schedule));
+        assertTrue(schedule.anyDue(0));
+        assertTrue(schedule.anyDue(1));
+        assertTrue(schedule.isDue(2, 2));
+        assertFalse(schedule.isDue(1, 2));
+    }
+
+    // Slow columns are spread across the normal cycles so they aren't all read at once.
+    @Test
+    public void testSlowColumnsSpread() {
+        ChartSchedule schedule = ChartSchedule.spread(new int[] {4, 12, 12, 12, 12}, 4, 0.02);
+        assertArrayEquals(new int[] {0, 0, 4, 8, 0}, phases(schedule));
+        for (long cycle = 0; cycle < 24; cycle++) {
+            // Only ever sampled on the normal cycles.
+            assertEquals(cycle % 4 == 0, schedule.anyDue(cycle), "cycle " + cycle);
+        }
+    }
+
+    // A period that isn't a multiple of the normal one can use any phase.
+    @Test
+    public void testOddPeriods() {
+        ChartSchedule schedule = ChartSchedule.spread(new int[] {5, 5, 5}, 4, 0.02);
+        assertArrayEquals(new int[] {0, 1, 2}, phases(schedule));
+        assertTrue(schedule.isDue(1, 6));
+        assertFalse(schedule.anyDue(3));
+    }
+}
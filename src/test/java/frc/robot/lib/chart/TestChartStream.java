@@ -0,0 +1,133 @@
+package frc.robot.lib.chart;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+public class TestChartStream {
+
+    /**
+     * Decodes the frames it's sent into text.
+     */
+    private static class MockClient implements ChartStream.Client {
+        ArrayList<String> frames = new ArrayList<>();
+        boolean busy = false;
+
+        @Override
+        public boolean isBusy() {
+            return busy;
+        }
+
+        @Override
+        public void send(ByteBuffer frame) {
+            frame.order(ByteOrder.LITTLE_ENDIAN);
+            StringBuilder text = new StringBuilder();
+            int type = frame.get();
+            if (type == ChartStream.HEADER) {
+                int count = frame.getShort();
+                for (int i = 0; i < count; i++) {
+                    byte[] name = new byte[frame.getShort()];
+                    frame.get(name);
+                    text.append(i == 0 ? "" : ",").append(new String(name, StandardCharsets.UTF_8));
+                }
+            } else {
+                text.append(String.format("%.2f", frame.getDouble()));
+                while (frame.hasRemaining()) {
+                    text.append(",").append(frame.getFloat());
+                }
+            }
+            frames.add(text.toString());
+        }
+    }
+
+    private static final String[] kNames =
+            {"Drive/speed", "Drive/turn", "Shooter/rpm", "DriveTrain/current"};
+
+    private static void offer(ChartStream stream, double time) {
+        stream.offer(time, new double[] {time, -time, 1000 * time, 5});
+    }
+
+    @Test
+    public void testPrefixes() {
+        ChartStream stream = new ChartStream(8, 1);
+        stream.setColumns(kNames);
+        MockClient drive = new MockClient();
+        stream.subscribe(drive).request("Drive/*, Shooter/rpm");
+        MockClient all = new MockClient();
+        stream.subscribe(all).request("");
+        offer(stream, 0);
+        offer(stream, 1);
+        stream.sendQueued();
+        assertEquals("[Drive/speed,Drive/turn,Shooter/rpm, 0.00,0.0,-0.0,0.0, 1.00,1.0,-1.0,1000.0]",
+                drive.frames.toString());
+        assertEquals("[Drive/speed,Drive/turn,Shooter/rpm,DriveTrain/current, 0.00,0.0,-0.0,0.0,5.0,"
+                + " 1.00,1.0,-1.0,1000.0,5.0]", all.frames.toString());
+    }
+
+    // Only sends at about the rate asked for.
+    @Test
+    public void testDecimation() {
+        ChartStream stream = new ChartStream(64, 1);
+        stream.setColumns(kNames);
+        MockClient client = new MockClient();
+        stream.subscribe(client).request("Shooter/rpm rate=10");
+        for (int i = 0; i < 25; i++) {
+            offer(stream, i * 0.02);
+        }
+        stream.sendQueued();
+        assertEquals("[Shooter/rpm, 0.00,0.0, 0.10,100.0, 0.20,200.0, 0.30,300.0, 0.40,400.0]",
+                client.frames.toString());
+    }
+
+    // A busy client misses samples without holding up the others.
+    @Test
+    public void testSlowClient() {
+        ChartStream stream = new ChartStream(8, 1);
+        stream.setColumns(kNames);
+        MockClient slow = new MockClient();
+        ChartStream.Subscription slowSubscription = stream.subscribe(slow);
+        slowSubscription.request("Drive/speed");
+        MockClient fast = new MockClient();
+        stream.subscribe(fast).request("Drive/speed");
+        stream.sendQueued();
+        slow.busy = true;
+        offer(stream, 0);
+        offer(stream, 1);
+        stream.sendQueued();
+        slow.busy = false;
+        offer(stream, 2);
+        stream.sendQueued();
+        assertEquals("[Drive/speed, 2.00,2.0]", slow.frames.toString());
+        assertEquals("[Drive/speed, 0.00,0.0, 1.00,1.0, 2.00,2.0]", fast.frames.toString());
+        assertEquals(2, slowSubscription.getSkippedCount());
+    }
+
+    // Rows are dropped, not queued, if the stream thread falls behind.
+    @Test
+    public void testFull() {
+        ChartStream stream = new ChartStream(2, 1);
+        stream.setColumns(kNames);
+        // Nothing is queued until somebody subscribes.
+        offer(stream, 0);
+        MockClient client = new MockClient();
+        stream.subscribe(client).request("Drive/speed");
+        offer(stream, 1);
+        offer(stream, 2);
+        offer(stream, 3);
+        assertEquals(1, stream.getDroppedCount());
+        stream.sendQueued();
+        assertEquals("[Drive/speed, 1.00,1.0, 2.00,2.0]", client.frames.toString());
+    }
+
+    @Test
+    public void testBadRate() {
+        ChartStream stream = new ChartStream(2, 1);
+        assertThrows(IllegalArgumentException.class,
+                () -> stream.subscribe(new MockClient()).request("Drive/* rate=0"));
+    }
+}
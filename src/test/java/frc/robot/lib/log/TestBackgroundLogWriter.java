@@ -0,0 +1,78 @@
+package frc.robot.lib.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.interfaces.LogWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+
+public class TestBackgroundLogWriter {
+
+    /**
+     * Records what was written to it.
+     */
+    private static class MockLogWriter implements LogWriter {
+        StringBuilder contents = new StringBuilder();
+        boolean closed = false;
+
+        @Override
+        public void write(String message) {
+            contents.append(message);
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public void createSymbolicLink(String dir, String prefix) {}
+
+        @Override
+        public Path getLinkPath(String dir, String prefix) {
+            return Paths.get("/dev/null");
+        }
+    }
+
+    // Messages queued before the switch go to the old writer, the rest to the new one.
+    @Test
+    public void testSwitchWriter() {
+        MockLogWriter first = new MockLogWriter();
+        MockLogWriter second = new MockLogWriter();
+        // Not started, drain() does the writing on this thread.
+        BackgroundLogWriter background = new BackgroundLogWriter(first, 16, 1024, 1, 1);
+        background.add(Log.Level.DEBUG, 1, "Test", "Before %d", new Object[] {1});
+        background.switchWriter(second);
+        background.add(Log.Level.DEBUG, 2, "Test", "After %d", new Object[] {2});
+        // Nothing is written until the queue is drained.
+        assertEquals("", first.contents.toString());
+        assertFalse(first.closed);
+
+        background.drain();
+        assertEquals("1.000 (Debug) [Test] Before 1\n", first.contents.toString());
+        assertTrue(first.closed);
+        assertEquals("2.000 (Debug) [Test] After 2\n", second.contents.toString());
+        assertFalse(second.closed);
+    }
+
+    // Switching with nothing queued should still switch.
+    @Test
+    public void testSwitchWriterWhenEmpty() {
+        MockLogWriter first = new MockLogWriter();
+        MockLogWriter second = new MockLogWriter();
+        BackgroundLogWriter background = new BackgroundLogWriter(first, 16, 1024, 1, 1);
+        background.switchWriter(second);
+        background.drain();
+        assertTrue(first.closed);
+        background.add(Log.Level.DEBUG, 3, "Test", "Later", new Object[0]);
+        background.drain();
+        assertEquals("", first.contents.toString());
+        assertEquals("3.000 (Debug) [Test] Later\n", second.contents.toString());
+    }
+}
@@ -0,0 +1,89 @@
+package frc.robot.lib.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+
+public class TestBinaryLogWriter {
+
+    // Ensure the decoded file matches what the text log would have contained.
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path tempDir = Files.createTempDirectory("binarylog");
+        BinaryLogWriter writer = new BinaryLogWriter(tempDir.toString(), "test", 123, "bin");
+        writer.write(Log.Level.DEBUG, 1.5, "Drivebase", "Speed %.2f at %d", new Object[] {0.25, 7});
+        writer.write(Log.Level.INFO, 2.25, "Shooter", "Target %s, ready %b, count %d",
+                new Object[] {Log.Level.OUTPUT, true, 123456789012L});
+        writer.write(Log.Level.WARNING, 3, "Drivebase", "Speed %.2f at %d", new Object[] {-1.0, 8});
+        writer.write(Log.Level.ERROR, 4, "Climber", "No args", new Object[0]);
+        writer.write(Log.Level.INFO, 5, "Climber", "Null %s", new Object[] {null});
+        writer.close();
+
+        StringWriter out = new StringWriter();
+        Path file = Paths.get(tempDir.toString(), "data", "test_00123.bin");
+        try (InputStream in = Files.newInputStream(file)) {
+            new BinaryLogDecoder(in).decode(out);
+        }
+        assertEquals("1.500 (Debug) [Drivebase] Speed 0.25 at 7\n"
+                + "2.250 (Info) [Shooter] Target OUTPUT, ready true, count 123456789012\n"
+                + "3.000 (Warning) [Drivebase] Speed -1.00 at 8\n"
+                + "4.000 (Error) [Climber] No args\n"
+                + "5.000 (Info) [Climber] Null null\n", out.toString());
+    }
+
+    // A bad format string shouldn't stop the rest of the log being decoded.
+    @Test
+    public void testBadFormat() throws IOException {
+        Path tempDir = Files.createTempDirectory("binarylog");
+        BinaryLogWriter writer = new BinaryLogWriter(tempDir.toString(), "test", 1, "bin");
+        writer.write(Log.Level.INFO, 1, "Test", "Missing %d", new Object[0]);
+        writer.write(Log.Level.INFO, 2, "Test", "Fine", new Object[0]);
+        writer.flush(); // Not closed, like a robot that lost power.
+
+        Path file = Paths.get(tempDir.toString(), "data", "test_00001.bin");
+        try (InputStream in = Files.newInputStream(file)) {
+            BinaryLogDecoder decoder = new BinaryLogDecoder(in);
+            assertEquals("1.000 (Error) [Test] Failed to format log message 'Missing %d': "
+                    + "java.util.MissingFormatArgumentException: Format specifier '%d'\n",
+                    decoder.readLine());
+            assertEquals("2.000 (Info) [Test] Fine\n", decoder.readLine());
+            assertNull(decoder.readLine());
+        }
+        writer.close();
+    }
+
+    // Once the table of strings is full messages should still be decoded.
+    @Test
+    public void testFullStringTable() throws IOException {
+        Path tempDir = Files.createTempDirectory("binarylog");
+        BinaryLogWriter writer = new BinaryLogWriter(tempDir.toString(), "test", 2, "bin");
+        final int count = 0x10000;
+        for (int i = 0; i < count; i++) {
+            writer.write(Log.Level.INFO, i, "Test", "Format " + i + " %d", new Object[] {i});
+        }
+        // A new system name after the table is full.
+        writer.write(Log.Level.WARNING, count, "Late", "Value %d", new Object[] {1});
+        // Messages without arguments don't use the table.
+        writer.write(Log.Level.INFO, count + 1, "Test", "Value 100%%", new Object[0]);
+        writer.close();
+
+        Path file = Paths.get(tempDir.toString(), "data", "test_00002.bin");
+        try (InputStream in = Files.newInputStream(file)) {
+            BinaryLogDecoder decoder = new BinaryLogDecoder(in);
+            for (int i = 0; i < count; i++) {
+                assertEquals(String.format("%d.000 (Info) [Test] Format %d %d\n", i, i, i),
+                        decoder.readLine());
+            }
+            assertEquals("65536.000 (Warning) [Late] Value 1\n", decoder.readLine());
+            assertEquals("65537.000 (Info) [Test] Value 100%\n", decoder.readLine());
+            assertNull(decoder.readLine());
+        }
+    }
+}
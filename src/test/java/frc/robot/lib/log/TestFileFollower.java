@@ -0,0 +1,71 @@
+package frc.robot.lib.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+
+public class TestFileFollower {
+
+    // Only the last few lines are copied to start with, then everything new.
+    @Test
+    public void testTailAndFollow() throws IOException {
+        Path dir = Files.createTempDirectory("follower");
+        Path source = dir.resolve("source.log");
+        Path copy = dir.resolve("copy").resolve("copy.log");
+        Files.writeString(source, "one\ntwo\nthree\nfour\n");
+        // Not started, poll() does the copying on this thread.
+        FileFollower follower = new FileFollower(source, 10);
+        follower.follow(copy, 2);
+        assertEquals("three\nfour\n", Files.readString(copy));
+
+        Files.writeString(source, "five\n", StandardOpenOption.APPEND);
+        follower.poll();
+        assertEquals("three\nfour\nfive\n", Files.readString(copy));
+
+        // Partial lines are copied as they are written.
+        Files.writeString(source, "si", StandardOpenOption.APPEND);
+        follower.poll();
+        assertEquals("three\nfour\nfive\nsi", Files.readString(copy));
+    }
+
+    // Copying starts again from the start of the file if it's truncated or replaced.
+    @Test
+    public void testTruncateAndReplace() throws IOException {
+        Path dir = Files.createTempDirectory("follower");
+        Path source = dir.resolve("source.log");
+        Path copy = dir.resolve("copy.log");
+        Files.writeString(source, "a long first line\n");
+        FileFollower follower = new FileFollower(source, 10);
+        follower.follow(copy, 10);
+        assertEquals("a long first line\n", Files.readString(copy));
+
+        Files.writeString(source, "short\n", StandardOpenOption.TRUNCATE_EXISTING);
+        follower.poll();
+        assertEquals("a long first line\nshort\n", Files.readString(copy));
+
+        Files.delete(source);
+        follower.poll();
+        Files.writeString(source, "restarted\n");
+        follower.poll();
+        assertEquals("a long first line\nshort\nrestarted\n", Files.readString(copy));
+    }
+
+    // A new destination gets the last lines again.
+    @Test
+    public void testNewDestination() throws IOException {
+        Path dir = Files.createTempDirectory("follower");
+        Path source = dir.resolve("source.log");
+        Files.writeString(source, "one\ntwo\nthree");
+        FileFollower follower = new FileFollower(source, 10);
+        follower.follow(dir.resolve("first.log"), 5);
+        follower.follow(dir.resolve("second.log"), 1);
+        Files.writeString(source, "\nfour\n", StandardOpenOption.APPEND);
+        follower.poll();
+        assertEquals("one\ntwo\nthree", Files.readString(dir.resolve("first.log")));
+        assertEquals("three\nfour\n", Files.readString(dir.resolve("second.log")));
+    }
+}
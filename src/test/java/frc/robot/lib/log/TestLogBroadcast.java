@@ -0,0 +1,105 @@
+package frc.robot.lib.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+public class TestLogBroadcast {
+
+    private static class MockClient implements LogBroadcast.Client {
+        ArrayList<String> lines = new ArrayList<>();
+        boolean busy = false;
+
+        @Override
+        public boolean isBusy() {
+            return busy;
+        }
+
+        @Override
+        public void send(String line) {
+            lines.add(line);
+        }
+    }
+
+    private static void publish(LogBroadcast broadcast, Log.Level level, double time,
+            String system, String message) {
+        broadcast.publish(level, time, system,
+                level.format(time, system, "%s", new Object[] {message}));
+    }
+
+    // New clients get the last few lines, then the new ones as they arrive.
+    @Test
+    public void testBacklog() {
+        LogBroadcast broadcast = new LogBroadcast(10, 2, 100, 1);
+        for (int i = 0; i < 5; i++) {
+            publish(broadcast, Log.Level.INFO, i, "Test", "line " + i);
+        }
+        MockClient client = new MockClient();
+        broadcast.subscribe(client);
+        publish(broadcast, Log.Level.INFO, 5, "Test", "line 5");
+        broadcast.sendQueued();
+        assertEquals("[3.000 (Info) [Test] line 3, 4.000 (Info) [Test] line 4,"
+                + " 5.000 (Info) [Test] line 5]", client.lines.toString());
+        // Nothing is sent twice.
+        broadcast.sendQueued();
+        assertEquals(3, client.lines.size());
+    }
+
+    @Test
+    public void testFilter() {
+        LogBroadcast broadcast = new LogBroadcast(10, 0, 100, 1);
+        MockClient client = new MockClient();
+        broadcast.subscribe(client).request("level=Info Drivebase, Shooter*");
+        publish(broadcast, Log.Level.DEBUG, 1, "Drivebase", "debug");
+        publish(broadcast, Log.Level.INFO, 2, "Drivebase", "info");
+        publish(broadcast, Log.Level.ERROR, 3, "Intake", "other subsystem");
+        publish(broadcast, Log.Level.WARNING, 4, "ShooterHood", "prefix");
+        broadcast.sendQueued();
+        assertEquals("[2.000 (Info) [Drivebase] info, 4.000 (Warning) [ShooterHood] prefix]",
+                client.lines.toString());
+        assertThrows(IllegalArgumentException.class,
+                () -> broadcast.subscribe(client).request("level=Loud"));
+    }
+
+    // A client that falls too far behind is told how many lines it missed, without holding up
+    // the other clients.
+    @Test
+    public void testSlowClient() {
+        LogBroadcast broadcast = new LogBroadcast(4, 0, 100, 1);
+        MockClient slow = new MockClient();
+        LogBroadcast.Subscription slowSubscription = broadcast.subscribe(slow);
+        MockClient fast = new MockClient();
+        broadcast.subscribe(fast);
+        slow.busy = true;
+        for (int i = 0; i < 6; i++) {
+            publish(broadcast, Log.Level.INFO, i, "Test", "line " + i);
+            broadcast.sendQueued();
+        }
+        assertEquals(6, fast.lines.size());
+        assertEquals(0, slow.lines.size());
+        slow.busy = false;
+        broadcast.sendQueued();
+        assertEquals("[2.000 (Warning) [LogServer] Client too slow, skipped 2 lines,"
+                + " 2.000 (Info) [Test] line 2, 3.000 (Info) [Test] line 3,"
+                + " 4.000 (Info) [Test] line 4, 5.000 (Info) [Test] line 5]",
+                slow.lines.toString());
+        assertEquals(2, slowSubscription.getMissedCount());
+    }
+
+    // Only so many lines are sent at once.
+    @Test
+    public void testMaxLinesPerPoll() {
+        LogBroadcast broadcast = new LogBroadcast(10, 0, 2, 1);
+        MockClient client = new MockClient();
+        broadcast.subscribe(client);
+        for (int i = 0; i < 3; i++) {
+            publish(broadcast, Log.Level.INFO, i, "Test", "line " + i);
+        }
+        broadcast.sendQueued();
+        assertEquals(2, client.lines.size());
+        broadcast.sendQueued();
+        assertEquals(3, client.lines.size());
+    }
+}
@@ -0,0 +1,66 @@
+package frc.robot.lib.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class TestLogLevels {
+
+    @AfterEach
+    public void resetLevels() {
+        Log.setLevels("Debug");
+    }
+
+    @Test
+    public void testDefaultLevel() {
+        Log.setDefaultLevel(Log.Level.WARNING);
+        assertFalse(Log.isDebugEnabled("Drivebase"));
+        assertFalse(Log.isEnabled(Log.Level.INFO, "Drivebase"));
+        assertTrue(Log.isEnabled(Log.Level.WARNING, "Drivebase"));
+        assertTrue(Log.isEnabled(Log.Level.ERROR, "Drivebase"));
+        assertTrue(Log.isEnabled(Log.Level.OUTPUT, "Drivebase"));
+    }
+
+    @Test
+    public void testSubsystemLevel() {
+        Log.setLevels("Info, Drivebase=Debug,LED=error");
+        assertTrue(Log.isDebugEnabled("Drivebase"));
+        assertFalse(Log.isDebugEnabled("Shooter"));
+        assertTrue(Log.isEnabled(Log.Level.INFO, "Shooter"));
+        assertFalse(Log.isEnabled(Log.Level.WARNING, "LED"));
+
+        // Subsystems not mentioned go back to the default.
+        Log.setLevels("Warning,Shooter=Debug");
+        assertFalse(Log.isDebugEnabled("Drivebase"));
+        assertTrue(Log.isDebugEnabled("Shooter"));
+        assertTrue(Log.isEnabled(Log.Level.WARNING, "LED"));
+    }
+
+    // The supplier should only be called if the message is going to be logged.
+    @Test
+    public void testSupplierOnlyCalledWhenEnabled() {
+        int[] calls = {0};
+        Log.setLevel("Quiet", Log.Level.INFO);
+        Log.debug("Quiet", () -> {
+            calls[0]++;
+            return "Not logged";
+        });
+        assertEquals(0, calls[0]);
+        Log.debug("Loud", () -> {
+            calls[0]++;
+            return "Logged";
+        });
+        assertEquals(1, calls[0]);
+    }
+
+    @Test
+    public void testLevelFromString() {
+        assertEquals(Log.Level.DEBUG, Log.Level.fromString("Debug"));
+        assertEquals(Log.Level.WARNING, Log.Level.fromString(" WARNING "));
+        assertNull(Log.Level.fromString("Loud"));
+    }
+}
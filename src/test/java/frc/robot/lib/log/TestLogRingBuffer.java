@@ -0,0 +1,83 @@
+package frc.robot.lib.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+public class TestLogRingBuffer {
+
+    // Messages come out in the order they were added.
+    @Test
+    public void testOrder() {
+        LogRingBuffer queue = new LogRingBuffer(4);
+        assertNull(queue.peek());
+        assertTrue(queue.offer(Log.Level.INFO, 1, "test", "first", null));
+        assertTrue(queue.offer(Log.Level.DEBUG, 2, "test", "second %d", new Object[] {2}));
+        assertEquals("first", queue.peek().message);
+        queue.remove();
+        assertEquals("second %d", queue.peek().message);
+        assertEquals(Log.Level.DEBUG, queue.peek().level);
+        assertEquals(2, queue.peek().time);
+        queue.remove();
+        assertNull(queue.peek());
+    }
+
+    // A full queue rejects messages until there is space again.
+    @Test
+    public void testFull() {
+        LogRingBuffer queue = new LogRingBuffer(4);
+        assertEquals(4, queue.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(Log.Level.INFO, i, "test", "message", null));
+        }
+        assertFalse(queue.offer(Log.Level.INFO, 5, "test", "message", null));
+        queue.remove();
+        assertTrue(queue.offer(Log.Level.INFO, 6, "test", "message", null));
+        assertEquals(5, queue.getAddedCount());
+        assertEquals(1, queue.getRemovedCount());
+    }
+
+    // Many threads adding at once shouldn't lose or duplicate messages.
+    @Test
+    public void testMultipleProducers() throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 10000;
+        LogRingBuffer queue = new LogRingBuffer(256);
+        ArrayList<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final String name = "thread" + t;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    while (!queue.offer(Log.Level.DEBUG, i, name, "message", null)) {
+                        Thread.yield(); // Full, wait for the consumer.
+                    }
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        int[] next = new int[threads];
+        int received = 0;
+        while (received < threads * perThread) {
+            LogRingBuffer.Record record = queue.peek();
+            if (record == null) {
+                Thread.yield();
+                continue;
+            }
+            int t = Integer.parseInt(record.system.substring("thread".length()));
+            // Each thread's messages should arrive in order.
+            assertEquals(next[t], (int) record.time);
+            next[t]++;
+            queue.remove();
+            received++;
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertNull(queue.peek());
+    }
+}
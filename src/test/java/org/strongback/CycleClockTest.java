@@ -0,0 +1,49 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.strongback.mock.MockClock;
+
+public class CycleClockTest {
+
+    @Test
+    public void shouldGiveTheSameTimeForTheWholeCycle() {
+        MockClock precise = new MockClock();
+        CycleClock clock = new CycleClock(precise);
+        // Not in a cycle, so the current time.
+        assertEquals(precise.currentTimeInMicros(), clock.currentTimeInMicros());
+        precise.incrementByMilliseconds(5);
+        assertEquals(precise.currentTimeInMillis(), clock.currentTimeInMillis());
+
+        clock.startCycle();
+        long start = precise.currentTimeInNanos();
+        precise.incrementByMicroseconds(3_500);
+        assertEquals(start, clock.currentTimeInNanos());
+        assertEquals(start / 1_000, clock.currentTimeInMicros());
+        assertEquals(start / 1_000_000, clock.currentTimeInMillis());
+        assertEquals(start / 1e9, clock.currentTime(), 1e-9);
+        assertEquals(start + 3_500_000, clock.precise().currentTimeInNanos());
+
+        clock.endCycle();
+        assertEquals(start + 3_500_000, clock.currentTimeInNanos());
+    }
+}
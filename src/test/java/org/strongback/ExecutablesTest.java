@@ -0,0 +1,116 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.strongback.Executor.Priority;
+
+public class ExecutablesTest {
+
+    @Test
+    public void shouldPublishNewEpochOnEachChange() {
+        Executables executables = new Executables();
+        Executable first = time -> {};
+        Executable second = time -> {};
+        Executables.Epoch empty = executables.current();
+        assertEquals(0, empty.main().high.items.length);
+
+        executables.register(first, Priority.HIGH);
+        executables.register(second, Priority.LOW);
+        Executables.Epoch both = executables.current();
+        assertNotSame(empty, both);
+        assertArrayEquals(new Executable[] {first}, both.main().high.items);
+        assertArrayEquals(new Executable[] {second}, both.main().low.items);
+        assertSame(executables.timerFor(first), both.main().high.timers[0]);
+        // The old epoch is left as it was for a loop still using it.
+        assertEquals(0, empty.main().high.items.length);
+
+        // Nothing changed, nothing published.
+        executables.unregister(time -> {});
+        assertSame(both, executables.current());
+
+        executables.register(first, Duration.ofMillis(100));
+        Executables.Epoch moved = executables.current();
+        assertEquals(0, moved.main().high.items.length);
+        assertEquals(1, moved.main().wheel.size());
+
+        executables.unregister(second);
+        assertEquals(0, executables.current().main().low.items.length);
+        assertEquals(both.number + 2, executables.current().number);
+    }
+
+    @Test
+    public void shouldOrderByDependenciesWithinALane() {
+        Executables executables = new Executables();
+        Executable drivebase = time -> {};
+        Executable location = time -> {};
+        executables.register(drivebase, Priority.HIGH);
+        executables.register(location, Priority.HIGH);
+        executables.addDependency(drivebase, location);
+        Executables.Lane main = executables.current().main();
+        assertArrayEquals(new Executable[] {location, drivebase}, main.high.items);
+        // Nothing to wait for, location has already run on the same thread.
+        assertEquals(0, main.high.waitFor[1].length);
+    }
+
+    @Test
+    public void shouldWaitForDependenciesInOtherLanes() {
+        Executables executables = new Executables();
+        Executable drivebase = time -> {};
+        Executable chart = time -> {};
+        Executable dashboard = time -> {};
+        executables.register(drivebase, Priority.HIGH);
+        executables.register(chart, Priority.HIGH, Executor.BACKGROUND_LANE);
+        executables.register(dashboard, Duration.ofMillis(500), Executor.BACKGROUND_LANE);
+        executables.addDependency(chart, drivebase);
+        Executables.Epoch epoch = executables.current();
+        assertEquals(2, epoch.lanes.length);
+        assertArrayEquals(new Executable[] {drivebase}, epoch.main().high.items);
+        Executables.Lane background = epoch.lane(Executor.BACKGROUND_LANE);
+        assertArrayEquals(new Executable[] {chart}, background.high.items);
+        assertEquals(1, background.wheel.size());
+        assertArrayEquals(new int[] {epoch.main().high.ids[0]}, background.high.waitFor[0]);
+    }
+
+    @Test
+    public void shouldOnlyShedMediumAndLowPriorities() {
+        Executables executables = new Executables();
+        Executable drivebase = time -> {};
+        Executable recorder = time -> {};
+        executables.register(drivebase, Priority.HIGH);
+        executables.register(recorder, Priority.MEDIUM);
+        assertTrue(executables.setSheddable(drivebase, true));
+        assertTrue(executables.setSheddable(recorder, true));
+        assertFalse(executables.setSheddable(recorder, true));
+        Executables.Lane main = executables.current().main();
+        assertFalse(main.high.sheddable[0]);
+        assertTrue(main.medium.sheddable[0]);
+        // Kept when it moves to another priority.
+        executables.register(recorder, Priority.LOW);
+        assertTrue(executables.current().main().low.sheddable[0]);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.strongback.Executor.Priority;
+
+public class ExecutionTimerTest {
+
+    @Test
+    public void shouldMapEveryValueToABucketContainingIt() {
+        int previous = -1;
+        for (long nanos = 0; nanos < 1_000_000; nanos += 7) {
+            int bucket = ExecutionTimer.bucketOf(nanos);
+            assertTrue(bucket >= previous);
+            assertTrue(ExecutionTimer.highestInBucket(bucket) >= nanos);
+            assertTrue(bucket == 0 || ExecutionTimer.highestInBucket(bucket - 1) < nanos);
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void shouldReportPercentilesWithinBucketPrecision() {
+        ExecutionTimer timer = new ExecutionTimer("test");
+        // 1..100 microseconds.
+        for (int i = 1; i <= 100; i++) {
+            timer.record(i * 1000L);
+        }
+        assertEquals(100, timer.getCount());
+        assertEquals(100_000, timer.getMaxNanos());
+        assertEquals(50_000, timer.getPercentileNanos(0.5), 50_000 * 0.07);
+        assertEquals(99_000, timer.getPercentileNanos(0.99), 99_000 * 0.07);
+        assertEquals(100_000, timer.getPercentileNanos(1.0));
+    }
+
+    @Test
+    public void shouldResetOnNextRecord() {
+        ExecutionTimer timer = new ExecutionTimer("test");
+        timer.record(5_000_000);
+        timer.recordOverrun();
+        timer.reset();
+        timer.record(1000);
+        assertEquals(1, timer.getCount());
+        assertEquals(1000, timer.getMaxNanos());
+        assertEquals(0, timer.getOverrunCount());
+    }
+
+    @Test
+    public void shouldNameTimersAfterExecutables() {
+        Executables executables = new Executables();
+        ExecutionTimer early = executables.timer("ExecutionTimerTest");
+        Executable first = time -> {};
+        Executable second = time -> {};
+        executables.register(first, Priority.HIGH);
+        executables.register(second, Priority.LOW);
+        assertSame(early, executables.timerFor(first));
+        assertEquals("ExecutionTimerTest#2", executables.timerFor(second).getName());
+        // Re-registering keeps the same timer.
+        executables.register(first, Priority.MEDIUM);
+        assertSame(early, executables.timerFor(first));
+        assertEquals("Cycle", executables.timers().get(0).getName());
+    }
+}
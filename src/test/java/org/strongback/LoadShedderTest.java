@@ -0,0 +1,77 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.strongback.LoadShedder.Level;
+
+public class LoadShedderTest {
+
+    private static final long PERIOD = 20_000_000;
+    private static final long OVERRUN = 25_000_000;
+    private static final long BUSY = 18_000_000;
+    private static final long IDLE = 5_000_000;
+
+    @Test
+    public void shouldShedMoreAfterOverrunsInARow() {
+        LoadShedder shedder = new LoadShedder(3, 10, 75);
+        assertFalse(shedder.update(OVERRUN, PERIOD));
+        assertFalse(shedder.update(OVERRUN, PERIOD));
+        // A cycle that only just made it resets the count.
+        assertFalse(shedder.update(BUSY, PERIOD));
+        assertFalse(shedder.update(OVERRUN, PERIOD));
+        assertFalse(shedder.update(OVERRUN, PERIOD));
+        assertTrue(shedder.update(OVERRUN, PERIOD));
+        assertEquals(Level.DECIMATE, shedder.getLevel());
+        for (int i = 0; i < 3; i++) {
+            shedder.update(OVERRUN, PERIOD);
+        }
+        assertEquals(Level.SKIP, shedder.getLevel());
+        // Can't shed any more.
+        for (int i = 0; i < 3; i++) {
+            assertFalse(shedder.update(OVERRUN, PERIOD));
+        }
+    }
+
+    @Test
+    public void shouldRecoverOneLevelAtATimeWithHeadroom() {
+        LoadShedder shedder = new LoadShedder(1, 10, 75);
+        shedder.update(OVERRUN, PERIOD);
+        shedder.update(OVERRUN, PERIOD);
+        assertEquals(Level.SKIP, shedder.getLevel());
+        for (int i = 0; i < 9; i++) {
+            assertFalse(shedder.update(IDLE, PERIOD));
+        }
+        // Busy but not overrunning doesn't count as headroom.
+        shedder.update(BUSY, PERIOD);
+        for (int i = 0; i < 9; i++) {
+            assertFalse(shedder.update(IDLE, PERIOD));
+        }
+        assertTrue(shedder.update(IDLE, PERIOD));
+        assertEquals(Level.DECIMATE, shedder.getLevel());
+        for (int i = 0; i < 10; i++) {
+            shedder.update(IDLE, PERIOD);
+        }
+        assertEquals(Level.NONE, shedder.getLevel());
+    }
+}
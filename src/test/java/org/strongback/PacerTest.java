@@ -0,0 +1,115 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.strongback.Strongback.WaitStrategy;
+import org.strongback.components.Clock;
+
+public class PacerTest {
+
+    private static final long PERIOD = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /**
+     * A clock that moves on a little every time it's read, as if time passes while waiting.
+     */
+    private static class SteppingClock implements Clock {
+        private long nanos = 1_000_000_000L;
+        private final long step;
+
+        SteppingClock(long step) {
+            this.step = step;
+        }
+
+        void advance(long by) {
+            nanos += by;
+        }
+
+        @Override
+        public long currentTimeInNanos() {
+            nanos += step;
+            return nanos;
+        }
+
+        @Override
+        public long currentTimeInMicros() {
+            return currentTimeInNanos() / 1000;
+        }
+    }
+
+    @Test
+    public void shouldNotDriftWhenEachCycleTakesTime() throws InterruptedException {
+        SteppingClock clock = new SteppingClock(7_000);
+        ExecutionTimer jitter = new ExecutionTimer("Jitter");
+        Pacer pacer = new Pacer(clock, PERIOD, WaitStrategy.BUSY, 0, jitter);
+        pacer.start();
+        long first = pacer.getDeadline();
+        for (int i = 1; i <= 100; i++) {
+            // Do some work each cycle.
+            clock.advance(3_000_000);
+            pacer.awaitNext();
+            assertEquals(i, pacer.getTick());
+            assertEquals(first + i * PERIOD, pacer.getDeadline());
+        }
+        assertEquals(100, jitter.getCount());
+        // Never more than one step of the clock late.
+        assertTrue(jitter.getMaxNanos() < 7_000);
+        assertEquals(0, pacer.getSkipped());
+    }
+
+    @Test
+    public void shouldSkipMissedCyclesAndStayOnTheGrid() throws InterruptedException {
+        SteppingClock clock = new SteppingClock(1_000);
+        ExecutionTimer jitter = new ExecutionTimer("Jitter");
+        Pacer pacer = new Pacer(clock, PERIOD, WaitStrategy.BUSY, 0, jitter);
+        pacer.start();
+        long first = pacer.getDeadline();
+        // Overrun into the third period, so the second is skipped and the third starts late.
+        clock.advance(PERIOD * 5 / 2);
+        pacer.awaitNext();
+        assertEquals(2, pacer.getTick());
+        assertEquals(1, pacer.getSkipped());
+        assertTrue(jitter.getMaxNanos() >= PERIOD / 2);
+        // Then carries on from where it should be.
+        pacer.awaitNext();
+        assertEquals(3, pacer.getTick());
+        assertEquals(first + 3 * PERIOD, pacer.getDeadline());
+    }
+
+    @Test
+    public void shouldKeepTimeWhenParkingThenSpinning() throws InterruptedException {
+        long period = TimeUnit.MILLISECONDS.toNanos(2);
+        ExecutionTimer jitter = new ExecutionTimer("Jitter");
+        Pacer pacer = new Pacer(Clock.system(), period, WaitStrategy.PARK_THEN_SPIN,
+                TimeUnit.MICROSECONDS.toNanos(200), jitter);
+        long start = System.nanoTime();
+        pacer.start();
+        for (int i = 0; i < 20; i++) {
+            pacer.awaitNext();
+        }
+        assertTrue(System.nanoTime() - start >= 20 * period);
+        // Any cycles skipped because this thread wasn't scheduled still count.
+        assertEquals(20 + pacer.getSkipped(), pacer.getTick());
+        assertEquals(20, jitter.getCount());
+    }
+}
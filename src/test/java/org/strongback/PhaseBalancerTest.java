@@ -0,0 +1,78 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class PhaseBalancerTest {
+
+    private static int runsOn(PhaseBalancer balancer, boolean medium, int item) {
+        int runs = 0;
+        int phase = -1;
+        for (int cycle = 0; cycle < 4; cycle++) {
+            if (medium ? balancer.runMedium(item, cycle) : balancer.runLow(item, cycle)) {
+                runs++;
+                phase = cycle;
+            }
+        }
+        assertEquals(medium ? 2 : 1, runs);
+        return phase;
+    }
+
+    @Test
+    public void shouldRunEverythingTogetherWhenUnstaggered() {
+        PhaseBalancer balancer = new PhaseBalancer(2, 3, 2, 4);
+        balancer.unstaggered();
+        for (int i = 0; i < 2; i++) {
+            assertEquals(3, runsOn(balancer, true, i));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(3, runsOn(balancer, false, i));
+        }
+    }
+
+    @Test
+    public void shouldSpreadUntimedItemsByNumber() {
+        PhaseBalancer balancer = new PhaseBalancer(0, 8, 2, 4);
+        balancer.balance(0, new long[0], new long[8]);
+        assertArrayEquals(new long[] {2, 2, 2, 2}, balancer.getLoad());
+    }
+
+    @Test
+    public void shouldBalanceByCost() {
+        PhaseBalancer balancer = new PhaseBalancer(2, 4, 2, 4);
+        // Two medium items of 4 each, low items of 4, 2, 1, 1.
+        assertTrue(balancer.balance(10, new long[] {4, 4}, new long[] {4, 2, 1, 1}));
+        assertTrue(runsOn(balancer, true, 0) != runsOn(balancer, true, 1));
+        // Every cycle would have 10 + 4 and the low items add 8 over four cycles.
+        long[] load = balancer.getLoad();
+        long max = 0;
+        for (long cycleLoad : load) {
+            max = Math.max(max, cycleLoad);
+        }
+        assertEquals(18, max);
+        // Same costs again, nothing moves.
+        assertFalse(balancer.balance(10, new long[] {4, 4}, new long[] {4, 2, 1, 1}));
+    }
+}
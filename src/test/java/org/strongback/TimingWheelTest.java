@@ -0,0 +1,175 @@
+/*
+ * Strongback
+ * Copyright 2015, Strongback and individual contributors by the @authors tag.
+ * See the COPYRIGHT.txt in the distribution for a full listing of individual
+ * contributors.
+ *
+ * Licensed under the MIT License; you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://opensource.org/licenses/MIT
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.strongback;
+
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.strongback.Executor.Priority;
+import org.strongback.mock.MockClock;
+
+public class TimingWheelTest {
+
+    private static List<Executable> advance(TimingWheel wheel, long tick) {
+        List<Executable> due = new ArrayList<>();
+        int n = wheel.advance(tick);
+        for (int i = 0; i < n; i++) {
+            due.add(wheel.getDue(i));
+        }
+        return due;
+    }
+
+    @Test
+    public void shouldRunAtRequestedPeriods() {
+        TimingWheel wheel = new TimingWheel(8, 2);
+        Executable fast = time -> {};
+        Executable slow = time -> {};
+        wheel.add(fast, null, 3, 0);
+        // Longer than the wheel, so it goes round more than once.
+        wheel.add(slow, null, 20, 5);
+        int fastRuns = 0;
+        List<Long> slowTicks = new ArrayList<>();
+        for (long tick = 0; tick < 60; tick++) {
+            List<Executable> due = advance(wheel, tick);
+            if (due.contains(fast)) {
+                assertEquals(0, tick % 3);
+                fastRuns++;
+            }
+            if (due.contains(slow)) {
+                slowTicks.add(tick);
+            }
+        }
+        assertEquals(20, fastRuns);
+        assertEquals(List.of(5L, 25L, 45L), slowTicks);
+    }
+
+    @Test
+    public void shouldRunOnceAndKeepScheduleAfterMissedTicks() {
+        TimingWheel wheel = new TimingWheel(8, 1);
+        Executable task = time -> {};
+        wheel.add(task, null, 4, 0);
+        assertTrue(advance(wheel, 0).contains(task));
+        // Missed ticks 4, 8, 12 and 16.
+        assertEquals(1, advance(wheel, 17).size());
+        // Back on the original schedule, not 17 + 4.
+        assertFalse(advance(wheel, 18).contains(task));
+        assertFalse(advance(wheel, 19).contains(task));
+        assertTrue(advance(wheel, 20).contains(task));
+    }
+
+    @Test
+    public void shouldStartFromRebasedTick() {
+        TimingWheel wheel = new TimingWheel(8, 1);
+        Executable task = time -> {};
+        wheel.add(task, null, 5, 2);
+        wheel.rebase(100);
+        assertFalse(advance(wheel, 100).contains(task));
+        assertFalse(advance(wheel, 101).contains(task));
+        assertTrue(advance(wheel, 102).contains(task));
+        assertTrue(advance(wheel, 107).contains(task));
+    }
+
+    @Test
+    public void shouldStartAgainFromRebasedTick() {
+        TimingWheel wheel = new TimingWheel(8, 1);
+        Executable task = time -> {};
+        wheel.add(task, null, 5, 2);
+        wheel.rebase(0);
+        for (long tick = 0; tick < 1000; tick++) {
+            wheel.advance(tick);
+        }
+        // The executor was restarted, counting ticks from zero again.
+        wheel.rebase(0);
+        assertFalse(advance(wheel, 1).contains(task));
+        assertTrue(advance(wheel, 2).contains(task));
+        assertTrue(advance(wheel, 7).contains(task));
+    }
+
+    @Test
+    public void shouldRunPeriodicTasksAfterRestart() {
+        Executables executables = new Executables();
+        int[] runs = {0};
+        executables.register(time -> runs[0]++, Duration.ofMillis(100));
+        Executables.Epoch epoch = executables.current();
+        for (int run = 0; run < 2; run++) {
+            // Each start of the executor makes new lanes, counting ticks from zero.
+            ExecutorLane lane = new ExecutorLane(Executor.MAIN_LANE, new MockClock(),
+                    NoOpLogger.INSTANCE, () -> true, false, 0, 50, null, null);
+            runs[0] = 0;
+            for (long tick = 0; tick < 500; tick++) {
+                assertTrue(lane.runCycle(epoch, tick, tick));
+            }
+            // Every fifth 20ms tick.
+            assertEquals(100, runs[0]);
+        }
+    }
+
+    @Test
+    public void shouldShedSheddablePeriodicTasks() {
+        Executables executables = new Executables();
+        int[] runs = {0, 0};
+        Executable control = time -> runs[0]++;
+        Executable dashboard = time -> runs[1]++;
+        executables.register(control, Duration.ofMillis(20));
+        executables.register(dashboard, Duration.ofMillis(20));
+        executables.setSheddable(dashboard, true);
+        ExecutorLane lane = new ExecutorLane(Executor.MAIN_LANE, new MockClock(),
+                NoOpLogger.INSTANCE, () -> true, false, 0, 50, null,
+                new LoadShedder(3, 50, 75));
+        // Overrun three times in a row.
+        for (int i = 0; i < 3; i++) {
+            lane.updateShedding(30_000_000, 20_000_000);
+        }
+        for (long tick = 0; tick < 40; tick++) {
+            assertTrue(lane.runCycle(executables.current(), tick, tick));
+        }
+        assertEquals(40, runs[0]);
+        assertEquals(40 / LoadShedder.DECIMATION, runs[1]);
+    }
+
+    @Test
+    public void shouldSpreadTasksWithTheSamePeriod() {
+        TimingWheel wheel = new TimingWheel(8, 4);
+        for (int i = 0; i < 4; i++) {
+            wheel.add(time -> {}, null, 4);
+        }
+        for (long tick = 0; tick < 8; tick++) {
+            assertEquals(1, wheel.advance(tick));
+        }
+    }
+
+    @Test
+    public void shouldMoveBetweenPriorityAndPeriod() {
+        Executables executables = new Executables();
+        Executable task = time -> {};
+        assertTrue(executables.register(task, Duration.ofMillis(100)));
+        assertFalse(executables.register(task, Duration.ofMillis(100)));
+        assertEquals(1, executables.periodicExecutablesAsWheel(20).size());
+        assertTrue(executables.register(task, Priority.LOW));
+        assertEquals(0, executables.periodicExecutablesAsWheel(20).size());
+        assertEquals(1, executables.lowPriorityExecutables().size());
+        assertTrue(executables.register(task, Duration.ofMillis(100)));
+        assertEquals(0, executables.lowPriorityExecutables().size());
+    }
+}